@@ -7,8 +7,6 @@ import org.jetbrains.annotations.Nullable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The abstract class Number represents the numbers of the programming language Racket in a very simplified way.
@@ -19,42 +17,18 @@ import java.util.regex.Pattern;
  */
 public abstract class MyNumber {
 
-    /**
-     * A matcher used to match a string to a {@link h05.math.MyInteger}.
-     */
-    private static final Matcher INTEGER_FORMAT = Pattern.compile("-?\\d+").matcher("");
-
-    /**
-     * A matcher used to match a string to a {@link MyReal}.
-     */
-    private static final Matcher REAL_FORMAT = Pattern.compile("-?\\d+\\.\\d+").matcher("");
-
-    /**
-     * A matcher used to match a string to a {@link MyRational}.
-     */
-    private static final Matcher RATIONAL_FORMAT = Pattern.compile("-?\\d+/\\d+").matcher("");
-
     /**
      * Parses the given token to a {@link MyNumber}.
      *
      * @param token the token to parse
      *
      * @return the parsed {@link MyNumber}
+     *
+     * @throws NumberFormatException if the token does not represent a {@link MyNumber}
+     * @see NumberScanner#parseNumber(CharSequence, int, int)
      */
     public static MyNumber parseNumber(String token) {
-        if (INTEGER_FORMAT.reset(token).matches()) {
-            return new MyInteger(new BigInteger(token));
-        }
-        if (REAL_FORMAT.reset(token).matches()) {
-            return new MyReal(new BigDecimal(token));
-        }
-        if (RATIONAL_FORMAT.reset(token).matches()) {
-            String[] data = token.split("/");
-            return new MyRational(
-                new Rational(new BigInteger(data[0]), new BigInteger(data[1]))
-            );
-        }
-        throw new NumberFormatException(String.format("Invalid number format: %s", token));
+        return NumberScanner.parseNumber(token, 0, token.length());
     }
 
     /**
@@ -63,10 +37,10 @@ public abstract class MyNumber {
      * @param value the value to check
      *
      * @return {@code true} if the given value represents a {@link MyNumber}
+     * @see NumberScanner#isNumber(CharSequence, int, int)
      */
     public static boolean isNumber(String value) {
-        return INTEGER_FORMAT.reset(value).matches() || REAL_FORMAT.reset(value).matches()
-            || RATIONAL_FORMAT.reset(value).matches();
+        return NumberScanner.isNumber(value, 0, value.length());
     }
 
     /**
@@ -360,6 +334,23 @@ public abstract class MyNumber {
      * @return an integer if the rational number can be represented as an integer, otherwise the rational number
      */
     protected MyNumber checkRationalToInt(Rational rational) {
+        return ofRational(rational);
+    }
+
+    /**
+     * Returns the given rational number as an integer if it can be represented as an integer, otherwise as a rational number.
+     *
+     * @param rational the rational number to convert
+     *
+     * @return an integer if the rational number can be represented as an integer, otherwise the rational number
+     */
+    static MyNumber ofRational(Rational rational) {
+        if (rational.isSmall()) {
+            if (rational.getSmallDenominator() == 1) {
+                return new MyInteger(rational.getSmallNumerator());
+            }
+            return new MyRational(rational);
+        }
         if (rational.getDenominator().equals(BigInteger.ONE)) {
             return new MyInteger(rational.getNumerator());
         }
@@ -45,6 +45,9 @@ public final class MyRational extends MyNumber {
 
     @Override
     public BigInteger toInteger() {
+        if (value.isSmall()) {
+            return BigInteger.valueOf(value.getSmallNumerator() / value.getSmallDenominator());
+        }
         return value.getNumerator().divide(value.getDenominator());
     }
 
@@ -55,10 +58,15 @@ public final class MyRational extends MyNumber {
 
     @Override
     public BigDecimal toReal() {
-        BigDecimal numerator = new BigDecimal(value.getNumerator())
-            .setScale(MyReal.SCALE, ROUNDING_MODE);
-        BigDecimal denominator = new BigDecimal(value.getDenominator())
-            .setScale(MyReal.SCALE, ROUNDING_MODE);
+        BigDecimal numerator;
+        BigDecimal denominator;
+        if (value.isSmall()) {
+            numerator = BigDecimal.valueOf(value.getSmallNumerator()).setScale(MyReal.SCALE, ROUNDING_MODE);
+            denominator = BigDecimal.valueOf(value.getSmallDenominator()).setScale(MyReal.SCALE, ROUNDING_MODE);
+        } else {
+            numerator = new BigDecimal(value.getNumerator()).setScale(MyReal.SCALE, ROUNDING_MODE);
+            denominator = new BigDecimal(value.getDenominator()).setScale(MyReal.SCALE, ROUNDING_MODE);
+        }
         return numerator.divide(denominator, ROUNDING_MODE);
     }
 
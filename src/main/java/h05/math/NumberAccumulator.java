@@ -0,0 +1,266 @@
+package h05.math;
+
+import h05.exception.Comparison;
+import h05.exception.WrongOperandException;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Accumulates a left fold of additions, subtractions, multiplications or divisions of {@link MyNumber}s.
+ *
+ * <p>As long as all operands are exact (integers or rational numbers) and at least one of them is not an integer, the
+ * accumulated value is stored as an unnormalized fraction. Sums use the least common multiple of the denominators, so the
+ * expensive greatest common divisor of the numerator and the denominator is only computed if the denominator doubled in size
+ * since the last normalization and once for the final result. The result is the same as folding the operands
+ * with {@link MyNumber#plus(MyNumber)}, {@link MyNumber#minus(MyNumber)}, {@link MyNumber#times(MyNumber)} or
+ * {@link MyNumber#divide(MyNumber)}.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ 1/3 1/7 1/11)</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    NumberAccumulator accumulator = new NumberAccumulator(new MyRational(new Rational(1, 3)));
+ *    accumulator.plus(new MyRational(new Rational(1, 7)));
+ *    accumulator.plus(new MyRational(new Rational(1, 11)));
+ *    MyNumber sum = accumulator.toNumber();
+ * }</pre>
+ */
+public final class NumberAccumulator {
+
+    /**
+     * The minimum bit length of the denominator before the unnormalized fraction is reduced.
+     */
+    private static final int MIN_NORMALIZATION_BIT_LENGTH = 256;
+
+    /**
+     * The accumulated value if it is not stored as an unnormalized fraction.
+     */
+    private @Nullable MyNumber value;
+
+    /**
+     * The numerator of the unnormalized fraction.
+     */
+    private BigInteger numerator = BigInteger.ZERO;
+
+    /**
+     * The positive denominator of the unnormalized fraction.
+     */
+    private BigInteger denominator = BigInteger.ONE;
+
+    /**
+     * The bit length of the denominator at which the unnormalized fraction is reduced next.
+     */
+    private int normalizationBitLength = MIN_NORMALIZATION_BIT_LENGTH;
+
+    /**
+     * Constructs and initializes an accumulator with the given initial value.
+     *
+     * @param initial the initial value
+     *
+     * @throws NullPointerException if the initial value is {@code null}
+     */
+    public NumberAccumulator(MyNumber initial) {
+        this.value = Objects.requireNonNull(initial, "initial null");
+    }
+
+    /**
+     * Adds the given number to the accumulated value.
+     *
+     * @param other the number to add
+     *
+     * @see MyNumber#plus(MyNumber)
+     */
+    public void plus(MyNumber other) {
+        accumulate(Operation.PLUS, other);
+    }
+
+    /**
+     * Subtracts the given number from the accumulated value.
+     *
+     * @param other the number to subtract
+     *
+     * @see MyNumber#minus(MyNumber)
+     */
+    public void minus(MyNumber other) {
+        accumulate(Operation.MINUS, other);
+    }
+
+    /**
+     * Multiplies the accumulated value with the given number.
+     *
+     * @param other the number to multiply
+     *
+     * @see MyNumber#times(MyNumber)
+     */
+    public void times(MyNumber other) {
+        accumulate(Operation.TIMES, other);
+    }
+
+    /**
+     * Divides the accumulated value by the given number.
+     *
+     * @param other the number to divide
+     *
+     * @throws WrongOperandException if the given number is 0
+     * @see MyNumber#divide(MyNumber)
+     */
+    public void divide(MyNumber other) {
+        accumulate(Operation.DIVIDE, other);
+    }
+
+    /**
+     * Returns the accumulated value.
+     *
+     * @return the accumulated value
+     */
+    public MyNumber toNumber() {
+        if (value == null) {
+            value = MyNumber.ofRational(new Rational(numerator, denominator));
+        }
+        return value;
+    }
+
+    /**
+     * Applies the operation with the given number to the accumulated value.
+     *
+     * @param operation the operation to apply
+     * @param other     the right operand of the operation
+     */
+    private void accumulate(Operation operation, MyNumber other) {
+        Objects.requireNonNull(other, "other null");
+
+        if (value != null) {
+            if (!isLazy(operation, value, other)) {
+                value = operation.apply(value, other);
+                return;
+            }
+            Rational rational = value.toRational();
+            numerator = rational.getNumerator();
+            denominator = rational.getDenominator();
+            value = null;
+        } else if (!isExact(other) || operation == Operation.DIVIDE && numerator.signum() == 0) {
+            value = operation.apply(toNumber(), other);
+            return;
+        }
+
+        Rational rational = other.toRational();
+        BigInteger otherNumerator = rational.getNumerator();
+        BigInteger otherDenominator = rational.getDenominator();
+
+        switch (operation) {
+            case PLUS, MINUS -> {
+                if (operation == Operation.MINUS) {
+                    otherNumerator = otherNumerator.negate();
+                }
+                if (denominator.equals(otherDenominator)) {
+                    numerator = numerator.add(otherNumerator);
+                } else {
+                    // Use the least common multiple as the common denominator, the gcd with the (usually small) operand
+                    // denominator is cheap
+                    BigInteger divisor = denominator.gcd(otherDenominator);
+                    BigInteger factor = otherDenominator.divide(divisor);
+                    numerator = numerator.multiply(factor).add(otherNumerator.multiply(denominator.divide(divisor)));
+                    denominator = denominator.multiply(factor);
+                }
+            }
+            case TIMES -> {
+                numerator = numerator.multiply(otherNumerator);
+                denominator = denominator.multiply(otherDenominator);
+            }
+            case DIVIDE -> {
+                if (other.isZero()) {
+                    throw new WrongOperandException(other, Comparison.GREATER_THAN, other.zero());
+                }
+                numerator = numerator.multiply(otherDenominator);
+                denominator = denominator.multiply(otherNumerator);
+                if (denominator.signum() < 0) {
+                    numerator = numerator.negate();
+                    denominator = denominator.negate();
+                }
+            }
+        }
+
+        if (denominator.bitLength() > normalizationBitLength) {
+            BigInteger divisor = numerator.gcd(denominator);
+            numerator = numerator.divide(divisor);
+            denominator = denominator.divide(divisor);
+            normalizationBitLength = Math.max(MIN_NORMALIZATION_BIT_LENGTH, 2 * denominator.bitLength());
+        }
+    }
+
+    /**
+     * Returns {@code true} if the operation should switch to an unnormalized fraction. Integer operations stay on the
+     * {@link MyInteger} fast path, a zero dividend keeps the exact behavior of {@link MyNumber#divide(MyNumber)}.
+     *
+     * @param operation the operation to apply
+     * @param value     the accumulated value
+     * @param other     the right operand of the operation
+     *
+     * @return {@code true} if the operation should switch to an unnormalized fraction
+     */
+    private static boolean isLazy(Operation operation, MyNumber value, MyNumber other) {
+        if (!isExact(value) || !isExact(other)) {
+            return false;
+        }
+        if (operation == Operation.DIVIDE) {
+            return !value.isZero();
+        }
+        return !(value instanceof MyInteger && other instanceof MyInteger);
+    }
+
+    /**
+     * Returns {@code true} if the given number is an exact number with a positive denominator.
+     *
+     * @param number the number to check
+     *
+     * @return {@code true} if the given number is an exact number with a positive denominator
+     */
+    private static boolean isExact(MyNumber number) {
+        return number instanceof MyInteger
+            || number instanceof MyRational && number.toRational().hasPositiveDenominator();
+    }
+
+    /**
+     * The operations which can be accumulated.
+     */
+    private enum Operation {
+
+        /**
+         * The addition.
+         */
+        PLUS,
+        /**
+         * The subtraction.
+         */
+        MINUS,
+        /**
+         * The multiplication.
+         */
+        TIMES,
+        /**
+         * The division.
+         */
+        DIVIDE;
+
+        /**
+         * Applies this operation to the given numbers.
+         *
+         * @param left  the left operand
+         * @param right the right operand
+         *
+         * @return the result of the operation
+         */
+        MyNumber apply(MyNumber left, MyNumber right) {
+            return switch (this) {
+                case PLUS -> left.plus(right);
+                case MINUS -> left.minus(right);
+                case TIMES -> left.times(right);
+                case DIVIDE -> left.divide(right);
+            };
+        }
+    }
+}
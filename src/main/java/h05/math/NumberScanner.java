@@ -0,0 +1,186 @@
+package h05.math;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Scans number tokens of the formats {@code -?\d+} ({@link MyInteger}), {@code -?\d+\.\d+} ({@link MyReal}) and
+ * {@code -?\d+/\d+} ({@link MyRational}) in a single pass over a range of a {@link CharSequence}. The scanner has no state and
+ * can be used by multiple threads concurrently.
+ *
+ * <p>Digit groups with at most {@value MAX_LONG_DIGITS} digits are accumulated into a {@code long} while scanning, only longer
+ * groups are parsed as {@link BigInteger} or {@link BigDecimal}.
+ */
+public final class NumberScanner {
+
+    /**
+     * The maximum number of digits which always fit into a {@code long}.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * The powers of ten which fit into a {@code long}.
+     */
+    private static final long[] POWERS_OF_TEN = new long[MAX_LONG_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private NumberScanner() {
+    }
+
+    /**
+     * Returns {@code true} if the given range of the character sequence represents a {@link MyNumber}.
+     *
+     * @param token the character sequence to check
+     * @param start the start index of the range (inclusive)
+     * @param end   the end index of the range (exclusive)
+     *
+     * @return {@code true} if the given range of the character sequence represents a {@link MyNumber}
+     */
+    public static boolean isNumber(CharSequence token, int start, int end) {
+        int index = start < end && token.charAt(start) == '-' ? start + 1 : start;
+        int integerEnd = skipDigits(token, index, end);
+
+        if (integerEnd == index) {
+            return false;
+        }
+        if (integerEnd == end) {
+            return true;
+        }
+
+        char separator = token.charAt(integerEnd);
+        if (separator != '.' && separator != '/') {
+            return false;
+        }
+        int fractionEnd = skipDigits(token, integerEnd + 1, end);
+        return fractionEnd == end && fractionEnd > integerEnd + 1;
+    }
+
+    /**
+     * Parses the given range of the character sequence to a {@link MyNumber}.
+     *
+     * @param token the character sequence to parse
+     * @param start the start index of the range (inclusive)
+     * @param end   the end index of the range (exclusive)
+     *
+     * @return the parsed {@link MyNumber}
+     *
+     * @throws NumberFormatException if the range does not represent a {@link MyNumber}
+     */
+    public static MyNumber parseNumber(CharSequence token, int start, int end) {
+        MyNumber number = tryParseNumber(token, start, end);
+        if (number == null) {
+            throw new NumberFormatException(String.format("Invalid number format: %s", token.subSequence(start, end)));
+        }
+        return number;
+    }
+
+    /**
+     * Parses the given range of the character sequence to a {@link MyNumber} if it represents one.
+     *
+     * @param token the character sequence to parse
+     * @param start the start index of the range (inclusive)
+     * @param end   the end index of the range (exclusive)
+     *
+     * @return the parsed {@link MyNumber} or {@code null} if the range does not represent a {@link MyNumber}
+     */
+    public static @Nullable MyNumber tryParseNumber(CharSequence token, int start, int end) {
+        boolean negative = start < end && token.charAt(start) == '-';
+        int integerStart = negative ? start + 1 : start;
+
+        // Integer part
+        int index = integerStart;
+        long integer = 0;
+        for (char c; index < end && isDigit(c = token.charAt(index)); index++) {
+            if (index - integerStart < MAX_LONG_DIGITS) {
+                integer = integer * 10 + (c - '0');
+            }
+        }
+        int integerDigits = index - integerStart;
+
+        if (integerDigits == 0) {
+            return null;
+        }
+        if (index == end) {
+            if (integerDigits <= MAX_LONG_DIGITS) {
+                return new MyInteger(negative ? -integer : integer);
+            }
+            return new MyInteger(new BigInteger(token.subSequence(start, end).toString()));
+        }
+
+        char separator = token.charAt(index);
+        if (separator != '.' && separator != '/') {
+            return null;
+        }
+
+        // Fraction part or denominator
+        int fractionStart = ++index;
+        long fraction = 0;
+        for (char c; index < end && isDigit(c = token.charAt(index)); index++) {
+            if (index - fractionStart < MAX_LONG_DIGITS) {
+                fraction = fraction * 10 + (c - '0');
+            }
+        }
+        int fractionDigits = index - fractionStart;
+
+        if (fractionDigits == 0 || index != end) {
+            return null;
+        }
+
+        if (separator == '.') {
+            if (integerDigits + fractionDigits <= MAX_LONG_DIGITS) {
+                long unscaled = integer * POWERS_OF_TEN[fractionDigits] + fraction;
+                return new MyReal(BigDecimal.valueOf(negative ? -unscaled : unscaled, fractionDigits));
+            }
+            return new MyReal(new BigDecimal(token.subSequence(start, end).toString()));
+        }
+
+        if (integerDigits <= MAX_LONG_DIGITS && fractionDigits <= MAX_LONG_DIGITS) {
+            return new MyRational(new Rational(negative ? -integer : integer, fraction));
+        }
+        return new MyRational(
+            new Rational(
+                new BigInteger(token.subSequence(start, fractionStart - 1).toString()),
+                new BigInteger(token.subSequence(fractionStart, end).toString())
+            )
+        );
+    }
+
+    /**
+     * Returns the index of the first non-digit character in the given range.
+     *
+     * @param token the character sequence to scan
+     * @param start the start index of the range (inclusive)
+     * @param end   the end index of the range (exclusive)
+     *
+     * @return the index of the first non-digit character or {@code end} if the range contains only digits
+     */
+    private static int skipDigits(CharSequence token, int start, int end) {
+        int index = start;
+        while (index < end && isDigit(token.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns {@code true} if the given character is an ASCII digit.
+     *
+     * @param c the character to check
+     *
+     * @return {@code true} if the given character is an ASCII digit
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
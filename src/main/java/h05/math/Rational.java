@@ -33,6 +33,22 @@ public final class Rational {
      */
     private final BigInteger denominator;
 
+    /**
+     * The numerator of this rational number if it fits into a {@code long}.
+     */
+    private final long smallNumerator;
+
+    /**
+     * The denominator of this rational number if it fits into a {@code long}.
+     */
+    private final long smallDenominator;
+
+    /**
+     * {@code true} if the numerator and the denominator fit into a {@code long} and are stored in {@link #smallNumerator} and
+     * {@link #smallDenominator}.
+     */
+    private final boolean small;
+
     /**
      * Constructs and initializes a rational number with the specified numerator and denominator.
      *
@@ -60,6 +76,162 @@ public final class Rational {
             this.numerator = numerator.divide(divisor);
             this.denominator = denominator.divide(divisor);
         }
+
+        this.small = this.numerator.bitLength() < Long.SIZE && this.denominator.bitLength() < Long.SIZE;
+        this.smallNumerator = small ? this.numerator.longValue() : 0;
+        this.smallDenominator = small ? this.denominator.longValue() : 0;
+    }
+
+    /**
+     * Constructs and initializes a rational number with the specified numerator and denominator.
+     *
+     * @param numerator   the numerator of the rational number
+     * @param denominator the denominator of the rational number
+     *
+     * @throws ArithmeticException if the denominator is zero
+     */
+    public Rational(long numerator, long denominator) {
+        if (denominator == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+
+        if (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+            // The absolute value of Long.MIN_VALUE cannot be represented as a long
+            Rational rational = new Rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+            this.numerator = rational.numerator;
+            this.denominator = rational.denominator;
+            this.small = rational.small;
+            this.smallNumerator = rational.smallNumerator;
+            this.smallDenominator = rational.smallDenominator;
+            return;
+        }
+
+        long divisor = gcd(Math.abs(numerator), Math.abs(denominator));
+
+        // The numerator contains the sign of the rational number
+        if (numerator != 0 && denominator < 0) {
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+
+        this.small = true;
+        this.smallNumerator = numerator / divisor;
+        this.smallDenominator = denominator / divisor;
+        this.numerator = BigInteger.valueOf(smallNumerator);
+        this.denominator = BigInteger.valueOf(smallDenominator);
+    }
+
+    /**
+     * Constructs and initializes a rational number with the specified representations without reducing it.
+     *
+     * @param numerator        the numerator
+     * @param denominator      the denominator
+     * @param smallNumerator   the numerator as a {@code long}
+     * @param smallDenominator the denominator as a {@code long}
+     * @param small            {@code true} if the numerator and the denominator fit into a {@code long}
+     */
+    private Rational(
+        BigInteger numerator,
+        BigInteger denominator,
+        long smallNumerator,
+        long smallDenominator,
+        boolean small) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.smallNumerator = smallNumerator;
+        this.smallDenominator = smallDenominator;
+        this.small = small;
+    }
+
+    /**
+     * Returns a rational number with the specified numerator and denominator which are already reduced and whose denominator is
+     * positive. No greatest common divisor is computed.
+     *
+     * @param numerator   the reduced numerator
+     * @param denominator the reduced positive denominator
+     *
+     * @return the rational number with the specified numerator and denominator
+     */
+    private static Rational reduced(long numerator, long denominator) {
+        return new Rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator), numerator, denominator, true);
+    }
+
+    /**
+     * Returns a rational number with the specified numerator and denominator which are already reduced and whose denominator is
+     * positive. No greatest common divisor is computed.
+     *
+     * @param numerator   the reduced numerator
+     * @param denominator the reduced positive denominator
+     *
+     * @return the rational number with the specified numerator and denominator
+     */
+    private static Rational reduced(BigInteger numerator, BigInteger denominator) {
+        boolean small = numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE;
+        return small
+            ? new Rational(numerator, denominator, numerator.longValue(), denominator.longValue(), true)
+            : new Rational(numerator, denominator, 0, 0, false);
+    }
+
+    /**
+     * Computes the greatest common divisor of two non-negative {@code long} values using the binary GCD algorithm.
+     *
+     * @param a the first non-negative value
+     * @param b the second non-negative value
+     *
+     * @return the greatest common divisor of both values
+     */
+    static long gcd(long a, long b) {
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+
+        // Common factors of 2
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+
+        while (b != 0) {
+            b >>= Long.numberOfTrailingZeros(b);
+            // Both values are odd, the difference is even
+            if (a > b) {
+                long t = b;
+                b = a;
+                a = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    /**
+     * Returns {@code true} if the numerator and the denominator of this rational number fit into a {@code long}.
+     *
+     * @return {@code true} if the numerator and the denominator of this rational number fit into a {@code long}
+     */
+    boolean isSmall() {
+        return small;
+    }
+
+    /**
+     * Returns the numerator of this rational number as a {@code long}. The value is only valid if {@link #isSmall()} is
+     * {@code true}.
+     *
+     * @return the numerator of this rational number as a {@code long}
+     */
+    long getSmallNumerator() {
+        return smallNumerator;
+    }
+
+    /**
+     * Returns the denominator of this rational number as a {@code long}. The value is only valid if {@link #isSmall()} is
+     * {@code true}.
+     *
+     * @return the denominator of this rational number as a {@code long}
+     */
+    long getSmallDenominator() {
+        return smallDenominator;
     }
 
     /**
@@ -80,13 +252,26 @@ public final class Rational {
         return denominator;
     }
 
+    /**
+     * Returns {@code true} if the denominator of this rational number is positive. The denominator is only negative for the
+     * value zero constructed with a negative denominator, all other values store the sign in the numerator.
+     *
+     * @return {@code true} if the denominator of this rational number is positive
+     */
+    boolean hasPositiveDenominator() {
+        return small ? smallDenominator > 0 : getDenominator().signum() > 0;
+    }
+
     /**
      * Returns a rational whose value is {@code (-this)}.
      *
      * @return {@code -this}
      */
     public Rational negate() {
-        return new Rational(numerator.negate(), denominator);
+        if (small && smallNumerator != Long.MIN_VALUE) {
+            return new Rational(-smallNumerator, smallDenominator);
+        }
+        return new Rational(getNumerator().negate(), getDenominator());
     }
 
     /**
@@ -95,7 +280,10 @@ public final class Rational {
      * @return the inverse of this rational number
      */
     public Rational inverse() {
-        return new Rational(denominator, numerator);
+        if (small) {
+            return new Rational(smallDenominator, smallNumerator);
+        }
+        return new Rational(getDenominator(), getNumerator());
     }
 
     /**
@@ -106,7 +294,12 @@ public final class Rational {
      * @return the sum of this rational number and the integer number
      */
     public Rational plus(BigInteger other) {
-        return new Rational(numerator.add(denominator.multiply(other)), denominator);
+        BigInteger denominator = getDenominator();
+        if (denominator.signum() > 0) {
+            // gcd(a + b * c, b) = gcd(a, b) = 1
+            return reduced(getNumerator().add(denominator.multiply(other)), denominator);
+        }
+        return new Rational(getNumerator().add(denominator.multiply(other)), denominator);
     }
 
     /**
@@ -117,10 +310,7 @@ public final class Rational {
      * @return the sum of this rational number and the rational number
      */
     public Rational plus(Rational other) {
-        return new Rational(
-            numerator.multiply(other.denominator).add(denominator.multiply(other.numerator)),
-            denominator.multiply(other.denominator)
-        );
+        return add(other, false);
     }
 
     /**
@@ -131,7 +321,12 @@ public final class Rational {
      * @return the difference of this rational number and the integer number
      */
     public Rational minus(BigInteger other) {
-        return new Rational(numerator.subtract(denominator.multiply(other)), denominator);
+        BigInteger denominator = getDenominator();
+        if (denominator.signum() > 0) {
+            // gcd(a - b * c, b) = gcd(a, b) = 1
+            return reduced(getNumerator().subtract(denominator.multiply(other)), denominator);
+        }
+        return new Rational(getNumerator().subtract(denominator.multiply(other)), denominator);
     }
 
     /**
@@ -142,10 +337,67 @@ public final class Rational {
      * @return the difference of this rational number and the rational number
      */
     public Rational minus(Rational other) {
-        return new Rational(
-            numerator.multiply(other.denominator).subtract(denominator.multiply(other.numerator)),
-            denominator.multiply(other.denominator)
-        );
+        return add(other, true);
+    }
+
+    /**
+     * Returns the sum or the difference of this rational number and the rational number.
+     *
+     * <p>Both fractions are reduced, therefore only the greatest common divisor {@code g} of both denominators can divide the
+     * result (Knuth, TAOCP Vol. 2, 4.5.1). The result {@code a/b + c/d} is computed as {@code t / (b/g * d/g2)} with
+     * {@code t = a * d/g + c * b/g} and {@code g2 = gcd(t, g)}, so the intermediate values never exceed the least common
+     * multiple of the denominators.
+     *
+     * @param other    the rational number to add or subtract
+     * @param subtract {@code true} if the rational number should be subtracted
+     *
+     * @return the sum or the difference of this rational number and the rational number
+     */
+    private Rational add(Rational other, boolean subtract) {
+        if (!hasPositiveDenominator() || !other.hasPositiveDenominator()) {
+            BigInteger top = getNumerator().multiply(other.getDenominator());
+            BigInteger bottom = getDenominator().multiply(other.getNumerator());
+            return new Rational(
+                subtract ? top.subtract(bottom) : top.add(bottom),
+                getDenominator().multiply(other.getDenominator())
+            );
+        }
+
+        if (small && other.small) {
+            try {
+                long a = smallNumerator;
+                long b = smallDenominator;
+                long c = subtract ? Math.negateExact(other.smallNumerator) : other.smallNumerator;
+                long d = other.smallDenominator;
+                long g = gcd(b, d);
+                if (g == 1) {
+                    return reduced(Math.addExact(Math.multiplyExact(a, d), Math.multiplyExact(c, b)), Math.multiplyExact(b, d));
+                }
+                long t = Math.addExact(Math.multiplyExact(a, d / g), Math.multiplyExact(c, b / g));
+                if (t == 0) {
+                    return reduced(0, 1);
+                }
+                long g2 = gcd(Math.absExact(t), g);
+                return reduced(t / g2, Math.multiplyExact(b / g, d / g2));
+            } catch (ArithmeticException ignored) {
+                // Overflow, fall back to the BigInteger representation
+            }
+        }
+
+        BigInteger a = getNumerator();
+        BigInteger b = getDenominator();
+        BigInteger c = subtract ? other.getNumerator().negate() : other.getNumerator();
+        BigInteger d = other.getDenominator();
+        BigInteger g = b.gcd(d);
+        if (g.equals(BigInteger.ONE)) {
+            return reduced(a.multiply(d).add(c.multiply(b)), b.multiply(d));
+        }
+        BigInteger t = a.multiply(d.divide(g)).add(c.multiply(b.divide(g)));
+        if (t.signum() == 0) {
+            return reduced(0, 1);
+        }
+        BigInteger g2 = t.gcd(g);
+        return reduced(t.divide(g2), b.divide(g).multiply(d.divide(g2)));
     }
 
     /**
@@ -156,20 +408,46 @@ public final class Rational {
      * @return the product of this rational number and the integer number
      */
     public Rational times(BigInteger other) {
-        return new Rational(numerator.multiply(other), denominator);
+        return new Rational(getNumerator().multiply(other), getDenominator());
     }
 
     /**
      * Returns the product of this rational number and the rational number.
      *
+     * <p>Both fractions are reduced, therefore the factors are cross-reduced before multiplying
+     * ({@code a/b * c/d = (a/g1 * c/g2) / (b/g2 * d/g1)} with {@code g1 = gcd(a, d)} and {@code g2 = gcd(c, b)}) and the
+     * result is already reduced.
+     *
      * @param other the rational number to multiply
      *
      * @return the product of this rational number and the rational number
      */
     public Rational times(Rational other) {
-        return new Rational(
-            numerator.multiply(other.numerator),
-            denominator.multiply(other.denominator)
+        if (!hasPositiveDenominator() || !other.hasPositiveDenominator()) {
+            return new Rational(
+                getNumerator().multiply(other.getNumerator()),
+                getDenominator().multiply(other.getDenominator())
+            );
+        }
+
+        if (small && other.small) {
+            try {
+                long g1 = gcd(Math.absExact(smallNumerator), other.smallDenominator);
+                long g2 = gcd(Math.absExact(other.smallNumerator), smallDenominator);
+                return reduced(
+                    Math.multiplyExact(smallNumerator / g1, other.smallNumerator / g2),
+                    Math.multiplyExact(smallDenominator / g2, other.smallDenominator / g1)
+                );
+            } catch (ArithmeticException ignored) {
+                // Overflow, fall back to the BigInteger representation
+            }
+        }
+
+        BigInteger g1 = getNumerator().gcd(other.getDenominator());
+        BigInteger g2 = other.getNumerator().gcd(getDenominator());
+        return reduced(
+            getNumerator().divide(g1).multiply(other.getNumerator().divide(g2)),
+            getDenominator().divide(g2).multiply(other.getDenominator().divide(g1))
         );
     }
 
@@ -181,26 +459,60 @@ public final class Rational {
      * @return the quotient of this rational number and the integer number
      */
     public Rational divide(BigInteger other) {
-        return new Rational(numerator, denominator.multiply(other));
+        return new Rational(getNumerator(), getDenominator().multiply(other));
     }
 
     /**
      * Returns the quotient of this rational number and the rational number.
      *
+     * <p>The quotient is cross-reduced the same way as the {@linkplain #times(Rational) product}.
+     *
      * @param other the rational number to divide
      *
      * @return the quotient of this rational number and the rational number
      */
     public Rational divide(Rational other) {
-        return new Rational(
-            numerator.multiply(other.denominator),
-            denominator.multiply(other.numerator)
-        );
+        // A zero dividend keeps the sign of the divisor in the denominator, see the constructor
+        if (!hasPositiveDenominator() || !other.hasPositiveDenominator() || isZero() || other.isZero()) {
+            return new Rational(
+                getNumerator().multiply(other.getDenominator()),
+                getDenominator().multiply(other.getNumerator())
+            );
+        }
+
+        if (small && other.small) {
+            try {
+                long g1 = gcd(Math.absExact(smallNumerator), Math.absExact(other.smallNumerator));
+                long g2 = gcd(other.smallDenominator, smallDenominator);
+                long numerator = Math.multiplyExact(smallNumerator / g1, other.smallDenominator / g2);
+                long denominator = Math.multiplyExact(smallDenominator / g2, other.smallNumerator / g1);
+                return denominator < 0
+                    ? reduced(Math.negateExact(numerator), Math.negateExact(denominator))
+                    : reduced(numerator, denominator);
+            } catch (ArithmeticException ignored) {
+                // Overflow, fall back to the BigInteger representation
+            }
+        }
+
+        BigInteger g1 = getNumerator().gcd(other.getNumerator());
+        BigInteger g2 = other.getDenominator().gcd(getDenominator());
+        BigInteger numerator = getNumerator().divide(g1).multiply(other.getDenominator().divide(g2));
+        BigInteger denominator = getDenominator().divide(g2).multiply(other.getNumerator().divide(g1));
+        return denominator.signum() < 0 ? reduced(numerator.negate(), denominator.negate()) : reduced(numerator, denominator);
+    }
+
+    /**
+     * Returns {@code true} if this rational number is zero.
+     *
+     * @return {@code true} if this rational number is zero
+     */
+    boolean isZero() {
+        return small ? smallNumerator == 0 : getNumerator().signum() == 0;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(numerator, denominator);
+        return Objects.hash(getNumerator(), getDenominator());
     }
 
     @Override
@@ -211,14 +523,21 @@ public final class Rational {
         if (!(o instanceof Rational number)) {
             return false;
         }
-        return numerator.equals(number.numerator) && denominator.equals(number.denominator);
+        if (small && number.small) {
+            return smallNumerator == number.smallNumerator && smallDenominator == number.smallDenominator;
+        }
+        return getNumerator().equals(number.getNumerator()) && getDenominator().equals(number.getDenominator());
     }
 
     @Override
     public String toString() {
+        if (small) {
+            return smallNumerator + "/" + smallDenominator;
+        }
+        BigInteger numerator = getNumerator();
         if (numerator.signum() == -1) {
-            return String.format("-%s/%s", numerator.negate(), denominator);
+            return String.format("-%s/%s", numerator.negate(), getDenominator());
         }
-        return String.format("%s/%s", numerator, denominator);
+        return String.format("%s/%s", numerator, getDenominator());
     }
 }
@@ -2,10 +2,10 @@ package h05.tree;
 
 import h05.math.MyNumber;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Evaluates an arithmetic expression by replacing the variables (identifiers) of the expression with their values.
@@ -24,6 +24,11 @@ public class ArithmeticExpressionEvaluator {
      */
     private final Map<String, MyNumber> identifiers;
 
+    /**
+     * Performs the evaluation steps on the tree.
+     */
+    private final StepEvaluator stepper;
+
     /**
      * Constructs and initializes an arithmetic expression evaluator.
      *
@@ -35,6 +40,28 @@ public class ArithmeticExpressionEvaluator {
         Map<String, MyNumber> identifiers) {
         this.root = root.clone();
         this.identifiers = identifiers;
+        this.stepper = new StepEvaluator(this.root, identifiers, null);
+    }
+
+    /**
+     * Constructs and initializes an arithmetic expression evaluator which evaluates the innermost expressions of large steps
+     * in parallel on the given pool. Every step reduces all innermost expressions, so the number of steps is the depth of the
+     * tree and a step of a wide tree evaluates many independent expressions. The steps, their tokens and their exceptions are
+     * the same as for the sequential evaluation.
+     *
+     * @param root        the root of the arithmetic expression tree to evaluate
+     * @param identifiers the map of variables and their values
+     * @param pool        the pool evaluating the innermost expressions of a step
+     *
+     * @throws NullPointerException if the pool is {@code null}
+     */
+    public ArithmeticExpressionEvaluator(
+        ArithmeticExpressionNode root,
+        Map<String, MyNumber> identifiers,
+        ForkJoinPool pool) {
+        this.root = root.clone();
+        this.identifiers = identifiers;
+        this.stepper = new StepEvaluator(this.root, identifiers, Objects.requireNonNull(pool, "pool null"));
     }
 
     /**
@@ -60,64 +87,111 @@ public class ArithmeticExpressionEvaluator {
      * evaluates the most inner expressions.
      *
      * @return the list of tokens representing  the evaluation
+     * @see #nextStepTokens()
      */
     public List<String> nextStep() {
-        List<String> expression = ExpressionTreeHandler.reconstruct(root);
+        return nextStepTokens().toList();
+    }
 
-        // No operation needed on a literal expression
-        if (root instanceof LiteralExpressionNode) {
-            return expression;
-        }
+    /**
+     * Evaluates the arithmetic expression tree by replacing the variables (identifiers) of the expression with their values and
+     * evaluates the most inner expressions. The result is the same as {@link #nextStep()}, but the tokens are stored in a
+     * compact {@link TokenBuffer}. The step is performed directly on the tree, so it only costs the evaluation of the innermost
+     * expressions and the reconstruction of the tokens.
+     *
+     * @return the tokens representing the evaluation
+     */
+    public TokenBuffer nextStepTokens() {
+        TokenBuffer tokens = stepper.nextStep();
+        root = stepper.getRoot();
+        return tokens;
+    }
 
-        return nextStep(expression.iterator(), new ArrayList<>(expression.size()));
+    /**
+     * Evaluates the arithmetic expression tree like {@link #nextStep()}, but returns only the changes of the tokens. Applying
+     * the patches to the tokens before the step results in the tokens returned by {@link #nextStep()}.
+     *
+     * @return the patches of the step sorted by their offsets, empty if the expression is already a literal
+     *
+     * @see TokenPatch#apply(TokenBuffer, List)
+     */
+    public List<TokenPatch> nextStepPatches() {
+        List<TokenPatch> patches = stepper.nextStepPatches();
+        root = stepper.getRoot();
+        return patches;
     }
 
     /**
-     * Evaluates the arithmetic expression tree by replacing the variables (identifiers) of the expression with their values and
-     * evaluates the most inner expressions.
+     * Undoes the last performed step, i.e. the tree is restored to the state before the step. The step can be performed again
+     * by {@link #redo()} until a new step is performed. Only the nodes changed by the step are restored, all other nodes are
+     * shared by both states.
+     *
+     * @return {@code true} if a step has been undone, {@code false} if no step has been performed
+     */
+    public boolean undo() {
+        boolean undone = stepper.undo();
+        root = stepper.getRoot();
+        return undone;
+    }
+
+    /**
+     * Redoes the last undone step without evaluating it again.
+     *
+     * @return {@code true} if a step has been redone, {@code false} if no step has been undone since the last performed step
+     */
+    public boolean redo() {
+        boolean redone = stepper.redo();
+        root = stepper.getRoot();
+        return redone;
+    }
+
+    /**
+     * Returns the tokens of the current arithmetic expression tree.
      *
-     * @param tokens     the tokens to evaluate
-     * @param expression the built expression so far
+     * @return the tokens of the current arithmetic expression tree
+     */
+    public TokenBuffer getTokens() {
+        return ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+    }
+
+    /**
+     * Returns the number of steps until the expression is a literal, i.e. the number of further calls of {@link #nextStep()}
+     * changing the expression if no step fails. The steps are counted in a single pass over the tree without performing
+     * them.
      *
-     * @return the list of tokens representing  the evaluation
+     * @return the number of remaining steps
+     */
+    public int countSteps() {
+        return stepper.countSteps();
+    }
+
+    /**
+     * Returns the tokens after the given number of further steps without performing them, i.e. the tree is not changed.
+     *
+     * @param steps the number of further steps
+     *
+     * @return the list of tokens after the steps
+     *
+     * @throws IllegalArgumentException if the number of steps is negative
+     * @see #peekStepTokens(int)
+     */
+    public List<String> peekStep(int steps) {
+        return peekStepTokens(steps).toList();
+    }
+
+    /**
+     * Returns the tokens after the given number of further steps without performing them, i.e. the tree is not changed. The
+     * result is the same as the tokens returned by the last of the given number of calls of {@link #nextStepTokens()}, but the
+     * values of the reduced expressions are computed in a single pass over the tree. If one of the steps fails, its exception
+     * is thrown.
+     *
+     * @param steps the number of further steps
+     *
+     * @return the tokens after the steps, the current tokens if the number of steps is 0
+     *
+     * @throws IllegalArgumentException if the number of steps is negative
      */
-    private List<String> nextStep(Iterator<String> tokens, List<String> expression) {
-        boolean isInner = true;
-        while (tokens.hasNext()) {
-            String token = tokens.next();
-            boolean isRight = token.equals(ArithmeticExpressionNode.RIGHT_BRACKET);
-            if (token.equals(ArithmeticExpressionNode.LEFT_BRACKET)) {
-                // If the iteration contains an open bracket, it cannot be the innermost expression since the open bracket will
-                // be added by the caller
-                List<String> innerExpression = new ArrayList<>();
-                innerExpression.add(token);
-                expression.addAll(nextStep(tokens, innerExpression));
-                isInner = false;
-            } else if (isRight && isInner) {
-                // Evaluate only the innermost expression
-                expression.add(token);
-                ArithmeticExpressionNode node = ExpressionTreeHandler.buildRecursively(expression.iterator());
-                MyNumber number = node.evaluate(identifiers);
-                LiteralExpressionNode newNode = new LiteralExpressionNode(number);
-                expression.clear();
-                expression.addAll(ExpressionTreeHandler.reconstruct(newNode));
-                return expression;
-            } else if (isRight) {
-                expression.add(token);
-                return expression;
-            } else if (Operator.isOperator(token)) {
-                expression.add(token);
-            } else if (IdentifierExpressionNode.isIdentifier(token)) {
-                if (identifiers.containsKey(token)) {
-                    expression.add(identifiers.get(token).toString());
-                } else {
-                    expression.add("<unknown!>");
-                }
-            } else {
-                expression.add(token);
-            }
-        }
-        root = ExpressionTreeHandler.buildRecursively(expression.iterator());
-        return expression;
+    public TokenBuffer peekStepTokens(int steps) {
+        return stepper.peek(steps);
     }
 }
@@ -0,0 +1,632 @@
+package h05.tree;
+
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyNumber;
+import h05.math.NumberAccumulator;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a prepared expression into a hidden class which implements {@link SlotEvaluator}. The generated
+ * {@code evaluate} method calls the {@link MyNumber} operations in straight-line code, so the JIT compiler can inline the whole
+ * expression instead of walking the tree.
+ *
+ * <p>The generated code contains no branches, so the class file needs no stack map frames. Literals and predefined identifiers
+ * are passed to the constructor of the generated class in an array.
+ */
+final class BytecodeCompiler {
+
+    /**
+     * The class file version of Java 17.
+     */
+    private static final int CLASS_FILE_VERSION = 61;
+
+    /**
+     * The maximum length of the code of a method.
+     */
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    /**
+     * The maximum number of entries of the constant pool.
+     */
+    private static final int MAX_CONSTANT_POOL_SIZE = 65535;
+
+    /**
+     * The internal name of the generated class. The JVM appends a suffix to the name of hidden classes.
+     */
+    private static final String CLASS_NAME = "h05/tree/CompiledExpression";
+
+    /**
+     * The descriptor of {@link MyNumber}.
+     */
+    private static final String NUMBER = "Lh05/math/MyNumber;";
+
+    /**
+     * The descriptor of an array of {@link MyNumber}.
+     */
+    private static final String NUMBERS = "[" + NUMBER;
+
+    /**
+     * The internal name of {@link MyNumber}.
+     */
+    private static final String NUMBER_CLASS = "h05/math/MyNumber";
+
+    /**
+     * The internal name of {@link NumberAccumulator}.
+     */
+    private static final String ACCUMULATOR_CLASS = "h05/math/NumberAccumulator";
+
+    // Opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ALOAD_1 = 0x2B;
+    private static final int AALOAD = 0x32;
+    private static final int DUP = 0x59;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int NEW = 0xBB;
+
+    // Constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * The lookup used to define the hidden classes in this package.
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * The serialized constant pool entries.
+     */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    /**
+     * The constant pool entries written to {@link #pool}.
+     */
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+
+    /**
+     * The indices of the constant pool entries by their key.
+     */
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+
+    /**
+     * The next free constant pool index.
+     */
+    private int poolSize = 1;
+
+    /**
+     * The code of the {@code evaluate} method.
+     */
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    /**
+     * The current operand stack depth of the {@code evaluate} method.
+     */
+    private int stack;
+
+    /**
+     * The maximum operand stack depth of the {@code evaluate} method.
+     */
+    private int maxStack;
+
+    /**
+     * The literals and predefined identifiers passed to the constructor of the generated class.
+     */
+    private final List<MyNumber> constants = new ArrayList<>();
+
+    /**
+     * Constructs and initializes a compiler for a single expression.
+     */
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Compiles the given prepared expression tree into a hidden class.
+     *
+     * @param root the root of the prepared expression tree
+     *
+     * @return the compiled evaluator or {@code null} if the expression is too large for a single method
+     */
+    static @Nullable SlotEvaluator compile(SlotEvaluator root) {
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        if (!compiler.emitEvaluate(root)) {
+            return null;
+        }
+        byte[] bytes = compiler.toClassFile();
+        try {
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(
+                lookup.lookupClass(),
+                MethodType.methodType(void.class, MyNumber[].class));
+            return (SlotEvaluator) constructor.invoke(compiler.constants.toArray(MyNumber[]::new));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("cannot define compiled expression", e);
+        }
+    }
+
+    /**
+     * Returns the value of the identifier with the given slot. The generated code calls this method for every identifier
+     * visit.
+     *
+     * @param values the values of the identifiers indexed by slot
+     * @param slot   the slot of the identifier
+     * @param name   the name of the identifier
+     *
+     * @return the value of the identifier
+     *
+     * @throws UndefinedIdentifierException if the value of the identifier is {@code null}
+     */
+    static MyNumber load(MyNumber[] values, int slot, String name) {
+        MyNumber value = values[slot];
+        if (value == null) {
+            throw new UndefinedIdentifierException(name);
+        }
+        return value;
+    }
+
+    /**
+     * Emits the code of the {@code evaluate} method.
+     *
+     * @param root the root of the prepared expression tree
+     *
+     * @return {@code true} if the code fits into a single method
+     */
+    private boolean emitEvaluate(SlotEvaluator root) {
+        try {
+            emit(root);
+        } catch (CodeTooLargeException e) {
+            return false;
+        }
+        code.write(ARETURN);
+        return code.size() <= MAX_CODE_LENGTH && poolSize < MAX_CONSTANT_POOL_SIZE;
+    }
+
+    /**
+     * Emits the code which pushes the value of the given node on the operand stack.
+     *
+     * @param node the node to emit
+     *
+     * @throws CodeTooLargeException if the code does not fit into a single method
+     */
+    private void emit(SlotEvaluator node) {
+        if (code.size() > MAX_CODE_LENGTH || poolSize >= MAX_CONSTANT_POOL_SIZE) {
+            throw new CodeTooLargeException();
+        }
+        if (node instanceof PreparedExpression.ConstantNode constant) {
+            // this.constants[index]
+            op(ALOAD_0, 1);
+            op(GETFIELD, 0);
+            u2(fieldref(CLASS_NAME, "constants", NUMBERS));
+            pushInt(constants.size());
+            op(AALOAD, -1);
+            constants.add(constant.value);
+        } else if (node instanceof PreparedExpression.SlotNode slot) {
+            // BytecodeCompiler.load(values, slot, name)
+            op(ALOAD_1, 1);
+            pushInt(slot.slot);
+            ldc(string(slot.name));
+            invokestatic("h05/tree/BytecodeCompiler", "load", "(" + NUMBERS + "ILjava/lang/String;)" + NUMBER, 3);
+        } else if (node instanceof PreparedExpression.OperationNode operation) {
+            emitOperation(operation.operator, operation.operands);
+        } else {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+    }
+
+    /**
+     * Emits the code of an operation. Unary and binary operations call the {@link MyNumber} operations directly, nary
+     * operations use a {@link NumberAccumulator} like {@link OperationExpressionNode#evaluate(Map)}.
+     *
+     * @param operator the operator of the operation
+     * @param operands the operands of the operation
+     */
+    private void emitOperation(Operator operator, SlotEvaluator[] operands) {
+        String unary = switch (operator) {
+            case ADD -> "plus";
+            case SUB -> "minus";
+            case MUL -> "times";
+            case DIV -> "divide";
+            case EXP -> "exp";
+            case LN -> "ln";
+            case SQRT -> "sqrt";
+            default -> null;
+        };
+        String binary = switch (operator) {
+            case ADD -> "plus";
+            case SUB -> "minus";
+            case MUL -> "times";
+            case DIV -> "divide";
+            case EXPT -> "expt";
+            case LOG -> "log";
+            default -> null;
+        };
+
+        if (operands.length == 1 && unary != null) {
+            emit(operands[0]);
+            invokevirtual(NUMBER_CLASS, unary, "()" + NUMBER, 0, true);
+        } else if (operands.length == 2 && binary != null) {
+            emit(operands[0]);
+            emit(operands[1]);
+            invokevirtual(NUMBER_CLASS, binary, "(" + NUMBER + ")" + NUMBER, 1, true);
+        } else if (operands.length > 2 && unary != null && binary != null) {
+            // new NumberAccumulator(operands[0]), then accumulator.<operation>(operands[i]) for every further operand
+            op(NEW, 1);
+            u2(classref(ACCUMULATOR_CLASS));
+            op(DUP, 1);
+            emit(operands[0]);
+            op(INVOKESPECIAL, -2);
+            u2(methodref(ACCUMULATOR_CLASS, "<init>", "(" + NUMBER + ")V"));
+            for (int i = 1; i < operands.length; i++) {
+                op(DUP, 1);
+                emit(operands[i]);
+                invokevirtual(ACCUMULATOR_CLASS, binary, "(" + NUMBER + ")V", 1, false);
+            }
+            invokevirtual(ACCUMULATOR_CLASS, "toNumber", "()" + NUMBER, 0, true);
+        } else {
+            // Operations which cannot be evaluated throw the same exception as the tree interpreter
+            op(GETSTATIC, 1);
+            u2(fieldref("h05/tree/Operator", operator.name(), "Lh05/tree/Operator;"));
+            String applyDescriptor = "(Lh05/tree/Operator;)" + NUMBER;
+            String name = "applyNullary";
+            if (operands.length == 1) {
+                emit(operands[0]);
+                applyDescriptor = "(Lh05/tree/Operator;" + NUMBER + ")" + NUMBER;
+                name = "applyUnary";
+            } else if (operands.length == 2) {
+                emit(operands[0]);
+                emit(operands[1]);
+                applyDescriptor = "(Lh05/tree/Operator;" + NUMBER + NUMBER + ")" + NUMBER;
+                name = "applyBinary";
+            } else if (operands.length > 2) {
+                throw new IllegalArgumentException("Unsupported nary operator " + operator);
+            }
+            invokestatic("h05/tree/OperationExpressionNode", name, applyDescriptor, operands.length + 1);
+        }
+    }
+
+    /**
+     * Builds the class file of the generated class.
+     *
+     * @return the class file of the generated class
+     */
+    private byte[] toClassFile() {
+        int thisClass = classref(CLASS_NAME);
+        int superClass = classref("java/lang/Object");
+        int evaluatorInterface = classref("h05/tree/SlotEvaluator");
+        int constantsName = utf8("constants");
+        int constantsType = utf8(NUMBERS);
+        int constantsField = fieldref(CLASS_NAME, "constants", NUMBERS);
+        int objectInit = methodref("java/lang/Object", "<init>", "()V");
+        int initName = utf8("<init>");
+        int initType = utf8("(" + NUMBERS + ")V");
+        int evaluateName = utf8("evaluate");
+        int evaluateType = utf8("(" + NUMBERS + ")" + NUMBER);
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(pool.size() + code.size() + 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+            out.writeShort(0x0031);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(evaluatorInterface);
+
+            // private final MyNumber[] constants
+            out.writeShort(1);
+            out.writeShort(0x0012);
+            out.writeShort(constantsName);
+            out.writeShort(constantsType);
+            out.writeShort(0);
+
+            out.writeShort(2);
+            // public <init>(MyNumber[] constants) { super(); this.constants = constants; }
+            byte[] init = {
+                (byte) ALOAD_0,
+                (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                (byte) ALOAD_0,
+                (byte) ALOAD_1,
+                (byte) PUTFIELD, (byte) (constantsField >> 8), (byte) constantsField,
+                (byte) RETURN,
+            };
+            writeMethod(out, initName, initType, codeName, 2, init);
+            // public MyNumber evaluate(MyNumber[] values)
+            writeMethod(out, evaluateName, evaluateType, codeName, maxStack, code.toByteArray());
+
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public method with two local variables ({@code this} and the parameter).
+     *
+     * @param out      the output of the class file
+     * @param name     the constant pool index of the method name
+     * @param type     the constant pool index of the method descriptor
+     * @param codeName the constant pool index of the name of the code attribute
+     * @param maxStack the maximum operand stack depth
+     * @param code     the code of the method
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeMethod(
+        DataOutputStream out,
+        int name,
+        int type,
+        int codeName,
+        int maxStack,
+        byte[] code) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(2);
+        out.writeInt(code.length);
+        out.write(code);
+        // No exception table and no attributes
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Writes an opcode and updates the operand stack depth.
+     *
+     * @param opcode the opcode
+     * @param delta  the change of the operand stack depth
+     */
+    private void op(int opcode, int delta) {
+        code.write(opcode);
+        stack += delta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    /**
+     * Writes an unsigned two byte value to the code.
+     *
+     * @param value the value to write
+     */
+    private void u2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    /**
+     * Writes the code which pushes the given integer on the operand stack.
+     *
+     * @param value the non-negative integer to push
+     */
+    private void pushInt(int value) {
+        if (value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            code.write(value);
+        } else if (value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            ldc(constant("I" + value, CONSTANT_INTEGER, out -> out.writeInt(value)));
+        }
+    }
+
+    /**
+     * Writes the code which pushes the given constant pool entry on the operand stack.
+     *
+     * @param index the index of the constant pool entry
+     */
+    private void ldc(int index) {
+        if (index <= 0xFF) {
+            op(LDC, 1);
+            code.write(index);
+        } else {
+            op(LDC_W, 1);
+            u2(index);
+        }
+    }
+
+    /**
+     * Writes the code of a static method call.
+     *
+     * @param owner      the internal name of the owner class
+     * @param name       the name of the method
+     * @param descriptor the descriptor of the method
+     * @param arguments  the number of arguments
+     */
+    private void invokestatic(String owner, String name, String descriptor, int arguments) {
+        op(INVOKESTATIC, 1 - arguments);
+        u2(methodref(owner, name, descriptor));
+    }
+
+    /**
+     * Writes the code of a virtual method call.
+     *
+     * @param owner      the internal name of the owner class
+     * @param name       the name of the method
+     * @param descriptor the descriptor of the method
+     * @param arguments  the number of arguments without the receiver
+     * @param result     {@code true} if the method returns a value
+     */
+    private void invokevirtual(String owner, String name, String descriptor, int arguments, boolean result) {
+        op(INVOKEVIRTUAL, (result ? 1 : 0) - arguments - 1);
+        u2(methodref(owner, name, descriptor));
+    }
+
+    /**
+     * Returns the index of a UTF-8 constant pool entry.
+     *
+     * @param value the string value
+     *
+     * @return the index of the constant pool entry
+     */
+    private int utf8(String value) {
+        return constant("U" + value, CONSTANT_UTF8, out -> out.writeUTF(value));
+    }
+
+    /**
+     * Returns the index of a string constant pool entry.
+     *
+     * @param value the string value
+     *
+     * @return the index of the constant pool entry
+     */
+    private int string(String value) {
+        int utf8 = utf8(value);
+        return constant("S" + value, CONSTANT_STRING, out -> out.writeShort(utf8));
+    }
+
+    /**
+     * Returns the index of a class constant pool entry.
+     *
+     * @param name the internal name of the class
+     *
+     * @return the index of the constant pool entry
+     */
+    private int classref(String name) {
+        int utf8 = utf8(name);
+        return constant("C" + name, CONSTANT_CLASS, out -> out.writeShort(utf8));
+    }
+
+    /**
+     * Returns the index of a field reference constant pool entry.
+     *
+     * @param owner      the internal name of the owner class
+     * @param name       the name of the field
+     * @param descriptor the descriptor of the field
+     *
+     * @return the index of the constant pool entry
+     */
+    private int fieldref(String owner, String name, String descriptor) {
+        return memberref(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    /**
+     * Returns the index of a method reference constant pool entry.
+     *
+     * @param owner      the internal name of the owner class
+     * @param name       the name of the method
+     * @param descriptor the descriptor of the method
+     *
+     * @return the index of the constant pool entry
+     */
+    private int methodref(String owner, String name, String descriptor) {
+        return memberref(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Returns the index of a member reference constant pool entry.
+     *
+     * @param tag        the tag of the member reference
+     * @param owner      the internal name of the owner class
+     * @param name       the name of the member
+     * @param descriptor the descriptor of the member
+     *
+     * @return the index of the constant pool entry
+     */
+    private int memberref(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classref(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + tag + owner + "." + name + ":" + descriptor, tag, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    /**
+     * Returns the index of a constant pool entry and adds it if it does not exist yet.
+     *
+     * @param key    the key of the entry
+     * @param tag    the tag of the entry
+     * @param writer writes the content of the entry after the tag
+     *
+     * @return the index of the constant pool entry
+     */
+    private int constant(String key, int tag, EntryWriter writer) {
+        Integer index = poolIndices.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(tag);
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        poolIndices.put(key, poolSize);
+        return poolSize++;
+    }
+
+    /**
+     * Writes the content of a constant pool entry.
+     */
+    @FunctionalInterface
+    private interface EntryWriter {
+
+        /**
+         * Writes the content of a constant pool entry.
+         *
+         * @param out the output of the constant pool
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Signals that the generated code does not fit into a single method.
+     */
+    private static final class CodeTooLargeException extends RuntimeException {
+
+        /**
+         * Constructs and initializes the exception without a stack trace.
+         */
+        CodeTooLargeException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package h05.tree;
+
+import h05.exception.BadOperationException;
+import h05.math.MyNumber;
+import h05.math.NumberAccumulator;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Compiles a prepared expression into a tree of pre-specialized lambdas. The operator and arity branch of every operation is
+ * selected once during compilation, so an evaluation makes no decisions besides the identifier checks. Compiling only
+ * allocates one lambda per operation and is therefore cheap enough for expressions which are evaluated only a few times.
+ */
+final class ClosureCompiler {
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private ClosureCompiler() {
+    }
+
+    /**
+     * Compiles the given prepared expression tree into lambdas.
+     *
+     * @param node the root of the prepared expression tree
+     *
+     * @return the compiled evaluator
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     */
+    static SlotEvaluator compile(SlotEvaluator node) {
+        if (node instanceof PreparedExpression.ConstantNode || node instanceof PreparedExpression.SlotNode) {
+            // Leaves make no decisions and are already specialized
+            return node;
+        } else if (node instanceof PreparedExpression.OperationNode operation) {
+            SlotEvaluator[] operands = new SlotEvaluator[operation.operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = compile(operation.operands[i]);
+            }
+            OperationExpressionNode.validateOperator(operation.operator, operands.length);
+            return switch (operands.length) {
+                case 0 -> compileNullary(operation.operator);
+                case 1 -> compileUnary(operation.operator, operands[0]);
+                case 2 -> compileBinary(operation.operator, operands[0], operands[1]);
+                default -> compileNary(operation.operator, operands);
+            };
+        }
+        throw new IllegalArgumentException("Unknown node type");
+    }
+
+    /**
+     * Compiles an operation without operands. The arity of the operator has already been validated.
+     *
+     * @param operator the operator of the operation
+     *
+     * @return the compiled evaluator
+     */
+    private static SlotEvaluator compileNullary(Operator operator) {
+        return switch (operator) {
+            case ADD, MUL -> {
+                // The result is immutable and does not depend on the values
+                MyNumber value = OperationExpressionNode.applyNullary(operator);
+                yield values -> value;
+            }
+            case SUB, DIV, EXP, EXPT, LN, LOG, SQRT -> throw new BadOperationException(operator.toString());
+        };
+    }
+
+    /**
+     * Compiles an operation with a single operand. The arity of the operator has already been validated.
+     *
+     * @param operator the operator of the operation
+     * @param operand  the compiled operand
+     *
+     * @return the compiled evaluator
+     */
+    private static SlotEvaluator compileUnary(Operator operator, SlotEvaluator operand) {
+        return switch (operator) {
+            case ADD -> values -> operand.evaluate(values).plus();
+            case SUB -> values -> operand.evaluate(values).minus();
+            case MUL -> values -> operand.evaluate(values).times();
+            case DIV -> values -> operand.evaluate(values).divide();
+            case EXP -> values -> operand.evaluate(values).exp();
+            case LN -> values -> operand.evaluate(values).ln();
+            case SQRT -> values -> operand.evaluate(values).sqrt();
+            case EXPT, LOG -> throw new BadOperationException(operator.toString());
+        };
+    }
+
+    /**
+     * Compiles an operation with two operands. The arity of the operator has already been validated.
+     *
+     * @param operator the operator of the operation
+     * @param operand1 the first compiled operand
+     * @param operand2 the second compiled operand
+     *
+     * @return the compiled evaluator
+     */
+    private static SlotEvaluator compileBinary(Operator operator, SlotEvaluator operand1, SlotEvaluator operand2) {
+        return switch (operator) {
+            case ADD -> values -> operand1.evaluate(values).plus(operand2.evaluate(values));
+            case SUB -> values -> operand1.evaluate(values).minus(operand2.evaluate(values));
+            case MUL -> values -> operand1.evaluate(values).times(operand2.evaluate(values));
+            case DIV -> values -> operand1.evaluate(values).divide(operand2.evaluate(values));
+            case EXPT -> values -> operand1.evaluate(values).expt(operand2.evaluate(values));
+            case LOG -> values -> operand1.evaluate(values).log(operand2.evaluate(values));
+            case EXP, LN, SQRT -> throw new BadOperationException(operator.toString());
+        };
+    }
+
+    /**
+     * Compiles an operation with more than two operands. The arity of the operator has already been validated.
+     *
+     * @param operator the operator of the operation
+     * @param operands the compiled operands
+     *
+     * @return the compiled evaluator
+     */
+    private static SlotEvaluator compileNary(Operator operator, SlotEvaluator[] operands) {
+        BiConsumer<NumberAccumulator, MyNumber> accumulate = switch (operator) {
+            case ADD -> NumberAccumulator::plus;
+            case SUB -> NumberAccumulator::minus;
+            case MUL -> NumberAccumulator::times;
+            case DIV -> NumberAccumulator::divide;
+            case EXP, EXPT, LN, LOG, SQRT -> throw new BadOperationException(operator.toString());
+        };
+        return values -> {
+            NumberAccumulator accumulator = new NumberAccumulator(operands[0].evaluate(values));
+            for (int i = 1; i < operands.length; i++) {
+                accumulate.accept(accumulator, operands[i].evaluate(values));
+            }
+            return accumulator.toNumber();
+        };
+    }
+}
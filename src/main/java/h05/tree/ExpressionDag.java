@@ -0,0 +1,148 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An arithmetic expression tree whose structurally equal subtrees have been merged into a directed acyclic graph (see
+ * {@link ExpressionInterner}). An evaluation computes every shared node only once and reuses its result for all other
+ * occurrences.
+ *
+ * <p>The result of an evaluation is the same as {@link ArithmeticExpressionNode#evaluate(Map)} on the original tree. The
+ * nodes are evaluated in the same order as in the original tree, so an invalid expression throws the same exception. A DAG
+ * is immutable and can be evaluated by multiple threads concurrently.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ (sqrt (+ (* x x) (* y y))) (* 2 (sqrt (+ (* x x) (* y y)))))</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    ExpressionDag dag = ExpressionDag.of(root);
+ *    MyNumber result = dag.evaluate(Map.of("x", new MyInteger(3), "y", new MyInteger(4)));
+ * }</pre>
+ */
+public final class ExpressionDag {
+
+    /**
+     * The root of the shared graph.
+     */
+    private final ArithmeticExpressionNode root;
+
+    /**
+     * The distinct nodes indexed by id, the operands of a node have smaller ids than the node itself.
+     */
+    private final ArithmeticExpressionNode[] nodes;
+
+    /**
+     * The operand ids of the nodes indexed by id or {@code null} for leaves.
+     */
+    private final int[][] operands;
+
+    /**
+     * The operators of the nodes indexed by id or {@code null} for leaves.
+     */
+    private final Operator[] operators;
+
+    /**
+     * Constructs and initializes a DAG from the given interner which contains exactly the nodes of the given root.
+     *
+     * @param root     the canonical root
+     * @param interner the interner which contains the nodes of the root
+     */
+    private ExpressionDag(ArithmeticExpressionNode root, ExpressionInterner interner) {
+        this.root = root;
+        int size = interner.size();
+        this.nodes = new ArithmeticExpressionNode[size];
+        this.operands = new int[size][];
+        this.operators = new Operator[size];
+        for (int id = 0; id < size; id++) {
+            nodes[id] = interner.getNode(id);
+            if (nodes[id] instanceof OperationExpressionNode operationNode) {
+                operands[id] = interner.getOperands(id);
+                operators[id] = operationNode.getOperator();
+            }
+        }
+    }
+
+    /**
+     * Merges the structurally equal subtrees of the given tree into a DAG. The given tree is not modified.
+     *
+     * @param root the root of the arithmetic expression tree
+     *
+     * @return the DAG of the tree
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public static ExpressionDag of(ArithmeticExpressionNode root) {
+        ExpressionInterner interner = new ExpressionInterner();
+        return new ExpressionDag(interner.intern(root), interner);
+    }
+
+    /**
+     * Returns the root of the shared graph. Shared subtrees are the same node instances, so the graph must not be modified.
+     *
+     * @return the root of the shared graph
+     */
+    public ArithmeticExpressionNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of distinct nodes of the graph.
+     *
+     * @return the number of distinct nodes of the graph
+     */
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Evaluates the graph with the given identifiers. Every distinct node is evaluated at most once.
+     *
+     * @param identifiers a map of identifiers and their values
+     *
+     * @return the result of the evaluation
+     *
+     * @throws NullPointerException if the identifiers are {@code null}
+     * @see ArithmeticExpressionNode#evaluate(Map)
+     */
+    public MyNumber evaluate(Map<String, MyNumber> identifiers) {
+        Objects.requireNonNull(identifiers, "identifiers null");
+        return evaluate(nodes.length - 1, identifiers, new MyNumber[nodes.length]);
+    }
+
+    /**
+     * Evaluates the node with the given id unless its result is already known.
+     *
+     * @param id          the id of the node
+     * @param identifiers a map of identifiers and their values
+     * @param results     the known results indexed by id
+     *
+     * @return the result of the node
+     */
+    private MyNumber evaluate(int id, Map<String, MyNumber> identifiers, MyNumber[] results) {
+        MyNumber result = results[id];
+        // An identifier may be mapped to null, evaluating it again yields the same result
+        if (result != null) {
+            return result;
+        }
+        Operator operator = operators[id];
+        if (operator == null) {
+            result = nodes[id].evaluate(identifiers);
+        } else {
+            int[] ids = operands[id];
+            result = OperationExpressionNode.apply(operator, ids.length, i -> evaluate(ids[i], identifiers, results));
+        }
+        results[id] = result;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Canonicalizes structurally equal arithmetic expression nodes into a single shared node (hash consing). Interning a tree
+ * returns a directed acyclic graph in which every distinct subtree exists exactly once, so repeated subtrees are stored only
+ * once. Literals are only equal if their numbers are equal including their type, for example 2 and 2.0 are kept apart.
+ *
+ * <p>Every interned node is identified by an id. The id of a node is larger than the ids of its operands. The structural hash
+ * of a node is computed once from the ids of its operands, so interning a node never traverses its subtree again. Interned
+ * nodes stay in the interner, so interning multiple trees with the same interner shares the subtrees between them.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ (sqrt (* x x)) (sqrt (* x x)))</li>
+ *     <li>Interned: 4 distinct nodes x, (* x x), (sqrt (* x x)) and the root instead of 7 nodes</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    ExpressionInterner interner = new ExpressionInterner();
+ *    ArithmeticExpressionNode dag = interner.intern(root);
+ * }</pre>
+ *
+ * @see ExpressionDag
+ */
+public final class ExpressionInterner {
+
+    /**
+     * The canonical nodes indexed by their structural keys.
+     */
+    private final Map<NodeKey, ArithmeticExpressionNode> nodes = new HashMap<>();
+
+    /**
+     * The ids of the canonical nodes.
+     */
+    private final Map<ArithmeticExpressionNode, Integer> ids = new IdentityHashMap<>();
+
+    /**
+     * The canonical nodes indexed by their ids.
+     */
+    private final List<ArithmeticExpressionNode> canonical = new ArrayList<>();
+
+    /**
+     * The operand ids of the canonical nodes indexed by their ids.
+     */
+    private final List<int[]> operands = new ArrayList<>();
+
+    /**
+     * Returns the canonical node of the given tree. Subtrees which are already canonical are reused, all other subtrees are
+     * replaced by their canonical nodes. The given tree is not modified.
+     *
+     * @param node the root of the tree to intern
+     *
+     * @return the canonical node of the tree
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the node is {@code null}
+     */
+    public ArithmeticExpressionNode intern(ArithmeticExpressionNode node) {
+        Objects.requireNonNull(node, "node null");
+        return canonical.get(internId(node));
+    }
+
+    /**
+     * Returns the number of distinct nodes interned so far.
+     *
+     * @return the number of distinct nodes interned so far
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    /**
+     * Returns the id of the given canonical node.
+     *
+     * @param node the canonical node
+     *
+     * @return the id of the node or {@code -1} if the node has not been interned by this interner
+     */
+    int getId(ArithmeticExpressionNode node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the canonical node with the given id.
+     *
+     * @param id the id of the node
+     *
+     * @return the canonical node with the given id
+     */
+    ArithmeticExpressionNode getNode(int id) {
+        return canonical.get(id);
+    }
+
+    /**
+     * Returns the operand ids of the canonical node with the given id.
+     *
+     * @param id the id of the node
+     *
+     * @return the operand ids of the node, which must not be modified
+     */
+    int[] getOperands(int id) {
+        return operands.get(id);
+    }
+
+    /**
+     * Interns the given node and returns the id of its canonical node.
+     *
+     * @param node the node to intern
+     *
+     * @return the id of the canonical node
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private int internId(ArithmeticExpressionNode node) {
+        Integer known = ids.get(node);
+        if (known != null) {
+            return known;
+        }
+        if (node instanceof LiteralExpressionNode literalNode) {
+            return add(new NodeKey(null, literalNode.getValue(), NodeKey.NO_OPERANDS), node, NodeKey.NO_OPERANDS);
+        }
+        if (node instanceof IdentifierExpressionNode identifierNode) {
+            return add(new NodeKey(null, identifierNode.getValue(), NodeKey.NO_OPERANDS), node, NodeKey.NO_OPERANDS);
+        }
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+
+        int size = 0;
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            size++;
+        }
+        int[] operandIds = new int[size];
+        boolean canonicalOperands = true;
+        int i = 0;
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            operandIds[i] = internId(operand.key);
+            canonicalOperands &= canonical.get(operandIds[i]) == operand.key;
+            i++;
+        }
+
+        NodeKey key = new NodeKey(operationNode.getOperator(), null, operandIds);
+        ArithmeticExpressionNode existing = nodes.get(key);
+        if (existing != null) {
+            return ids.get(existing);
+        }
+        if (!canonicalOperands) {
+            ListItem<ArithmeticExpressionNode> head = null;
+            for (int j = operandIds.length - 1; j >= 0; j--) {
+                ListItem<ArithmeticExpressionNode> item = new ListItem<>();
+                item.key = canonical.get(operandIds[j]);
+                item.next = head;
+                head = item;
+            }
+            node = new OperationExpressionNode(operationNode.getOperator(), head);
+        }
+        return add(key, node, operandIds);
+    }
+
+    /**
+     * Adds the given node as the canonical node of the given key if there is no canonical node yet.
+     *
+     * @param key        the structural key of the node
+     * @param node       the node
+     * @param operandIds the ids of the operands of the node
+     *
+     * @return the id of the canonical node
+     */
+    private int add(NodeKey key, ArithmeticExpressionNode node, int[] operandIds) {
+        ArithmeticExpressionNode existing = nodes.putIfAbsent(key, node);
+        if (existing != null) {
+            return ids.get(existing);
+        }
+        int id = canonical.size();
+        canonical.add(node);
+        operands.add(operandIds);
+        ids.put(node, id);
+        return id;
+    }
+
+    /**
+     * The structural key of a node. Operations are identified by their operator and the ids of their canonical operands,
+     * literals by their number and identifiers by their name.
+     */
+    private static final class NodeKey {
+
+        /**
+         * The operand ids of a leaf.
+         */
+        static final int[] NO_OPERANDS = new int[0];
+
+        /**
+         * The operator of an operation or {@code null} for a leaf.
+         */
+        private final @Nullable Operator operator;
+
+        /**
+         * The number of a literal, the name of an identifier or {@code null} for an operation.
+         */
+        private final @Nullable Object value;
+
+        /**
+         * The ids of the canonical operands.
+         */
+        private final int[] operands;
+
+        /**
+         * The cached structural hash.
+         */
+        private final int hash;
+
+        /**
+         * Constructs and initializes a structural key.
+         *
+         * @param operator the operator of an operation or {@code null} for a leaf
+         * @param value    the {@link MyNumber} of a literal, the name of an identifier or {@code null} for an operation
+         * @param operands the ids of the canonical operands
+         */
+        NodeKey(@Nullable Operator operator, @Nullable Object value, int[] operands) {
+            this.operator = operator;
+            this.value = value;
+            this.operands = operands;
+            this.hash = 31 * (31 * Objects.hashCode(operator) + Objects.hashCode(value)) + Arrays.hashCode(operands);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof NodeKey key)) {
+                return false;
+            }
+            return hash == key.hash
+                && operator == key.operator
+                && Objects.equals(value, key.value)
+                && Arrays.equals(operands, key.operands);
+        }
+    }
+}
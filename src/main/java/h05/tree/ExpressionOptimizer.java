@@ -0,0 +1,407 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.MyRational;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Optimizes arithmetic expression trees for repeated evaluations. The optimized tree is a new tree which evaluates to the same
+ * results as the original tree. Subtrees which are not changed by the optimization are shared with the original tree.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (* 2 (+ 3 4) x)</li>
+ *     <li>Folded: (* 2 7 x) with 2 nodes eliminated</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    OptimizationResult result = ExpressionOptimizer.foldConstants(root);
+ *    ArithmeticExpressionNode folded = result.getRoot();
+ *    int eliminated = result.getEliminatedNodes();
+ *    ArithmeticExpressionNode simplified = ExpressionOptimizer.simplify(folded).getRoot();
+ * }</pre>
+ */
+public final class ExpressionOptimizer {
+
+    /**
+     * The identifiers whose values are already known while folding.
+     */
+    private final Map<String, MyNumber> identifiers;
+
+    /**
+     * The number of nodes which have been eliminated so far.
+     */
+    private int eliminatedNodes;
+
+    /**
+     * Constructs and initializes an optimizer without eliminated nodes.
+     *
+     * @param identifiers the identifiers whose values are already known while folding
+     */
+    private ExpressionOptimizer(Map<String, MyNumber> identifiers) {
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * Folds every subtree without identifiers into a literal node. The predefined identifiers (see {@link Identifier}) are
+     * replaced by their values and count as constants. A folded literal contains the exact number the subtree evaluates to,
+     * so integers, rationals and reals keep the type the evaluation of the original tree would produce.
+     *
+     * <p>Subtrees whose evaluation fails, for example a division by zero, are not folded, so the optimized tree still throws
+     * the same exception when it is evaluated. Since predefined identifiers are replaced, the optimized tree no longer rejects
+     * identifier maps which redefine them.
+     *
+     * @param root the root of the arithmetic expression tree to fold
+     *
+     * @return the folded tree and the number of eliminated nodes
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public static OptimizationResult foldConstants(ArithmeticExpressionNode root) {
+        return partiallyEvaluate(root, Map.of());
+    }
+
+    /**
+     * Evaluates the given tree as far as possible with the values of a subset of its identifiers. The bound identifiers are
+     * replaced by their values and every subtree which only depends on bound and predefined identifiers is folded into a
+     * literal node like in {@link #foldConstants(ArithmeticExpressionNode)}. The residual tree only contains the unbound
+     * identifiers and evaluating it with their values yields the same result as evaluating the original tree with all values.
+     * Values of the residual tree for bound identifiers are ignored.
+     *
+     * <p>The residual tree is independent of the given map and can be cached, e.g. per set of long living values, and
+     * evaluated or prepared (see {@link PreparedExpression}) for the remaining values. Identifiers which are bound to
+     * {@code null} are not replaced.
+     *
+     * @param root        the root of the arithmetic expression tree to evaluate
+     * @param identifiers the values of the bound identifiers
+     *
+     * @return the residual tree and the number of eliminated nodes
+     *
+     * @throws IllegalArgumentException    if the tree contains an unknown node type
+     * @throws IllegalIdentifierExceptions if a predefined identifier of the tree is bound
+     * @throws NullPointerException        if the root or the identifiers are {@code null}
+     */
+    public static OptimizationResult partiallyEvaluate(ArithmeticExpressionNode root, Map<String, MyNumber> identifiers) {
+        Objects.requireNonNull(root, "root null");
+        Objects.requireNonNull(identifiers, "identifiers null");
+        ExpressionOptimizer optimizer = new ExpressionOptimizer(identifiers);
+        ArithmeticExpressionNode folded = optimizer.fold(root);
+        return new OptimizationResult(folded, optimizer.eliminatedNodes);
+    }
+
+    /**
+     * Folds the constant subtrees of the given node.
+     *
+     * @param node the node to fold
+     *
+     * @return the folded node or the node itself if nothing could be folded
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private ArithmeticExpressionNode fold(ArithmeticExpressionNode node) {
+        if (node instanceof LiteralExpressionNode) {
+            return node;
+        }
+        if (node instanceof IdentifierExpressionNode identifierNode) {
+            String name = identifierNode.getValue();
+            Identifier identifier = Identifier.findIdentifier(name);
+            if (identifier != null) {
+                if (identifiers.containsKey(name)) {
+                    throw new IllegalIdentifierExceptions(name);
+                }
+                return new LiteralExpressionNode(identifier.getValue());
+            }
+            MyNumber value = identifiers.get(name);
+            return value == null ? node : new LiteralExpressionNode(value);
+        }
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+
+        ListItem<ArithmeticExpressionNode> head = null;
+        ListItem<ArithmeticExpressionNode> tail = null;
+        boolean changed = false;
+        boolean constant = true;
+        int size = 0;
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            ArithmeticExpressionNode folded = fold(operand.key);
+            changed |= folded != operand.key;
+            constant &= folded instanceof LiteralExpressionNode;
+            size++;
+
+            ListItem<ArithmeticExpressionNode> item = new ListItem<>();
+            item.key = folded;
+            if (head == null) {
+                head = item;
+            } else {
+                tail.next = item;
+            }
+            tail = item;
+        }
+
+        OperationExpressionNode result = changed ? new OperationExpressionNode(operationNode.getOperator(), head)
+            : operationNode;
+        if (!constant) {
+            return result;
+        }
+
+        MyNumber value;
+        try {
+            // The operands are literals, so no identifiers are looked up
+            value = result.evaluate(Map.of());
+        } catch (RuntimeException e) {
+            // Keep the subtree, so the evaluation reports the error
+            return result;
+        }
+        eliminatedNodes += size;
+        return new LiteralExpressionNode(value);
+    }
+
+    /**
+     * Simplifies additions and multiplications:
+     * <ul>
+     *     <li>Left nested additions and multiplications are flattened into a single node, e.g. (+ (+ (+ a b) c) d) becomes
+     *     (+ a b c d).</li>
+     *     <li>Additions and multiplications with a single operand are replaced by the operand, e.g. (* x) becomes x.</li>
+     *     <li>Multiplications with a literal zero and at least one other operand without divisions are replaced by the integer
+     *     0.</li>
+     *     <li>Identity operands (integer 0 for additions and integer 1 for multiplications) are removed if the result stays
+     *     the same.</li>
+     * </ul>
+     *
+     * <p>The operations of {@link MyNumber} are not associative for reals and normalize their results, for example
+     * {@code (* 1 x)} is the integer 2 for the real 2.0 and a real operand changes the scale and therefore the precision of
+     * later divisions. Thus, only left nested nodes are flattened since they are folded in the same order, and an identity
+     * operand is only removed if the value it is applied to is an exact normalized number, i.e. an integer or a rational
+     * number which does not depend on identifiers. Multiplications with zero are the integer 0 for any normalized operand,
+     * but the other operands are no longer evaluated, so their errors, for example undefined identifiers, are not reported.
+     *
+     * @param root the root of the arithmetic expression tree to simplify
+     *
+     * @return the simplified tree and the number of eliminated nodes
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public static OptimizationResult simplify(ArithmeticExpressionNode root) {
+        Objects.requireNonNull(root, "root null");
+        ExpressionOptimizer optimizer = new ExpressionOptimizer(Map.of());
+        ArithmeticExpressionNode simplified = optimizer.simplifyNode(root);
+        return new OptimizationResult(simplified, optimizer.eliminatedNodes);
+    }
+
+    /**
+     * Simplifies the given node and its children.
+     *
+     * @param node the node to simplify
+     *
+     * @return the simplified node or the node itself if nothing could be simplified
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private ArithmeticExpressionNode simplifyNode(ArithmeticExpressionNode node) {
+        if (node instanceof OperandExpressionNode) {
+            return node;
+        }
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+
+        Operator operator = operationNode.getOperator();
+        List<ArithmeticExpressionNode> operands = new ArrayList<>();
+        boolean changed = false;
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            ArithmeticExpressionNode simplified = simplifyNode(operand.key);
+            changed |= simplified != operand.key;
+            operands.add(simplified);
+        }
+        if (operator != Operator.ADD && operator != Operator.MUL) {
+            return changed ? newOperation(operator, operands) : node;
+        }
+
+        if (operator == Operator.MUL && operands.size() > 1 && isZeroProduct(operands)) {
+            // The node and all operands are replaced by a single literal
+            for (ArithmeticExpressionNode operand : operands) {
+                eliminatedNodes += countNodes(operand);
+            }
+            return new LiteralExpressionNode(new MyInteger(0));
+        }
+
+        // The left fold of the inner node continues with the remaining operands of the outer node
+        while (!operands.isEmpty() && operands.get(0) instanceof OperationExpressionNode first
+            && first.getOperator() == operator && first.getOperands() != null) {
+            operands.remove(0);
+            int i = 0;
+            for (ListItem<ArithmeticExpressionNode> operand = first.getOperands(); operand != null; operand = operand.next) {
+                operands.add(i++, operand.key);
+            }
+            eliminatedNodes++;
+            changed = true;
+        }
+
+        BigInteger identity = operator == Operator.ADD ? BigInteger.ZERO : BigInteger.ONE;
+        List<ArithmeticExpressionNode> kept = new ArrayList<>();
+        boolean exact = true;
+        for (int i = 0; i < operands.size(); i++) {
+            ArithmeticExpressionNode operand = operands.get(i);
+            // The identity is applied to the accumulated value or to the next operand if it is the first one
+            boolean removable = kept.isEmpty()
+                ? i + 1 < operands.size() && isExact(operands.get(i + 1))
+                : exact;
+            if (removable && isLiteral(operand, identity)) {
+                eliminatedNodes++;
+                changed = true;
+                continue;
+            }
+            kept.add(operand);
+            exact &= isExact(operand);
+        }
+
+        if (kept.size() == 1) {
+            // The unary addition and multiplication return the operand itself
+            eliminatedNodes++;
+            return kept.get(0);
+        }
+        return changed ? newOperation(operator, kept) : node;
+    }
+
+    /**
+     * Returns {@code true} if the product of the given operands is always the integer 0. A single operand is returned as it
+     * is, so there must be at least two operands. A division can produce a rational zero with a negative denominator, e.g.
+     * (/ 0 -3), which stays a rational number when it is multiplied by 0.
+     *
+     * @param operands the operands of the multiplication
+     *
+     * @return {@code true} if the product of the given operands is always the integer 0
+     */
+    private static boolean isZeroProduct(List<ArithmeticExpressionNode> operands) {
+        boolean zero = false;
+        for (ArithmeticExpressionNode operand : operands) {
+            if (operand instanceof LiteralExpressionNode literal && literal.getValue().isZero()) {
+                zero = true;
+            } else if (containsDivision(operand)) {
+                return false;
+            }
+        }
+        return zero;
+    }
+
+    /**
+     * Returns {@code true} if the given tree contains a division.
+     *
+     * @param node the root of the tree
+     *
+     * @return {@code true} if the given tree contains a division
+     */
+    private static boolean containsDivision(ArithmeticExpressionNode node) {
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            return false;
+        }
+        if (operationNode.getOperator() == Operator.DIV) {
+            return true;
+        }
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            if (containsDivision(operand.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if the given node evaluates to an exact normalized number regardless of the identifiers, i.e. an
+     * integer or a rational number which cannot be represented as an integer.
+     *
+     * @param node the node to check
+     *
+     * @return {@code true} if the given node evaluates to an exact normalized number
+     */
+    private static boolean isExact(ArithmeticExpressionNode node) {
+        if (node instanceof LiteralExpressionNode literal) {
+            MyNumber value = literal.getValue();
+            return value instanceof MyInteger
+                || value instanceof MyRational && !value.toRational().getDenominator().equals(BigInteger.ONE);
+        }
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            return false;
+        }
+        Operator operator = operationNode.getOperator();
+        int size = 0;
+        for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+             operand = operand.next) {
+            if (!isExact(operand.key)) {
+                return false;
+            }
+            size++;
+        }
+        return switch (operator) {
+            case ADD, MUL -> true;
+            // The unary division of an integer is an unnormalized rational number, e.g. 1/1
+            case SUB -> size > 0;
+            case DIV -> size > 1;
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns {@code true} if the given node is an integer literal with the given value.
+     *
+     * @param node  the node to check
+     * @param value the expected value
+     *
+     * @return {@code true} if the given node is an integer literal with the given value
+     */
+    private static boolean isLiteral(ArithmeticExpressionNode node, BigInteger value) {
+        return node instanceof LiteralExpressionNode literal
+            && literal.getValue() instanceof MyInteger integer
+            && integer.toInteger().equals(value);
+    }
+
+    /**
+     * Returns the number of nodes of the given tree.
+     *
+     * @param node the root of the tree
+     *
+     * @return the number of nodes of the tree
+     */
+    private static int countNodes(ArithmeticExpressionNode node) {
+        int count = 1;
+        if (node instanceof OperationExpressionNode operationNode) {
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                count += countNodes(operand.key);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates an operation node with the given operator and operands.
+     *
+     * @param operator the operator of the node
+     * @param operands the operands of the node
+     *
+     * @return the created operation node
+     */
+    private static OperationExpressionNode newOperation(Operator operator, List<ArithmeticExpressionNode> operands) {
+        ListItem<ArithmeticExpressionNode> head = null;
+        for (int i = operands.size() - 1; i >= 0; i--) {
+            ListItem<ArithmeticExpressionNode> item = new ListItem<>();
+            item.key = operands.get(i);
+            item.next = head;
+            head = item;
+        }
+        return new OperationExpressionNode(operator, head);
+    }
+}
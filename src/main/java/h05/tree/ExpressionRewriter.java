@@ -0,0 +1,273 @@
+package h05.tree;
+
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.MyRational;
+import h05.math.MyReal;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rewrites arithmetic expression trees with a list of {@link RewriteRule}s. Every pass visits the tree bottom-up and replaces
+ * each node by the replacement of the first rule it matches. The passes are repeated until no rule matches anymore (fixpoint)
+ * or the maximum number of passes is reached. The given tree is not modified.
+ *
+ * <p>Unlike {@link ExpressionOptimizer}, the rewritten tree computes the mathematically equal value, but not necessarily the
+ * same {@link MyNumber}: the built-in rules replace approximations like {@link MyNumber#expt(MyNumber)} by exact operations,
+ * so results may differ in the last digits or stay exact where the original expression produced a real.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (exp (* 2 (ln 5)))</li>
+ *     <li>Rewritten: (* 5 5) after two passes</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    ExpressionRewriter rewriter = new ExpressionRewriter(ExpressionRewriter.STRENGTH_REDUCTION);
+ *    ArithmeticExpressionNode rewritten = rewriter.rewrite(root).getRoot();
+ * }</pre>
+ */
+public final class ExpressionRewriter {
+
+    /**
+     * The default maximum number of passes over a tree.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 16;
+
+    /**
+     * Rules replacing expensive operations by cheaper ones:
+     * <ul>
+     *     <li>(expt x 2) becomes (* x x) if x is known to be an integer or a positive real, i.e. an integer literal, a positive
+     *     real literal, a square root or an exponential function, avoiding the logarithm and power approximation. Other numbers
+     *     are raised to a power by their logarithm, which rejects non-positive numbers and turns rational numbers into reals</li>
+     *     <li>(exp (* k (ln x))) and (exp (* (ln x) k)) become (expt x k) if x is known to be positive, i.e. a positive
+     *     literal, an exponential function or the square root of a positive value, and k is a literal which is not a negative
+     *     integer, since the logarithm rejects non-positive numbers and integer powers reject negative integer exponents</li>
+     *     <li>(/ x c) becomes (* x 1/c) if c is a positive integer or rational literal, since dividing 0 by a negative number
+     *     results in a rational number instead of the integer 0</li>
+     *     <li>(sqrt (* x x)) becomes x if x is known to be non-negative, i.e. a non-negative literal, a square root or an
+     *     exponential function, and (sqrt (expt x 2)) becomes x if x is additionally known to be an integer or a positive
+     *     real</li>
+     * </ul>
+     */
+    public static final List<RewriteRule> STRENGTH_REDUCTION = List.of(
+        RewriteRule.of("square", "(expt x 2)", "(* x x)",
+            bindings -> hasSquare(bindings.get("x"))),
+        RewriteRule.of("exp-ln", "(exp (* k (ln x)))", "(expt x k)",
+            ExpressionRewriter::isPower),
+        RewriteRule.of("exp-ln-commuted", "(exp (* (ln x) k))", "(expt x k)",
+            ExpressionRewriter::isPower),
+        RewriteRule.of("divide-by-literal", "(/ x c)", ExpressionRewriter::multiplyByInverse),
+        RewriteRule.of("sqrt-square", "(sqrt (* x x))", "x",
+            bindings -> isNonNegative(bindings.get("x"))),
+        RewriteRule.of("sqrt-expt", "(sqrt (expt x 2))", "x",
+            bindings -> hasSquare(bindings.get("x")) && isNonNegative(bindings.get("x")))
+    );
+
+    /**
+     * The rules in the order they are tried.
+     */
+    private final List<RewriteRule> rules;
+
+    /**
+     * The maximum number of passes over a tree.
+     */
+    private final int maxIterations;
+
+    /**
+     * Constructs and initializes a rewriter with the given rules and {@link #DEFAULT_MAX_ITERATIONS}.
+     *
+     * @param rules the rules in the order they are tried
+     *
+     * @throws NullPointerException if the rules are {@code null}
+     */
+    public ExpressionRewriter(List<RewriteRule> rules) {
+        this(rules, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Constructs and initializes a rewriter with the given rules and maximum number of passes.
+     *
+     * @param rules         the rules in the order they are tried
+     * @param maxIterations the maximum number of passes over a tree
+     *
+     * @throws IllegalArgumentException if the maximum number of passes is not positive
+     * @throws NullPointerException     if the rules are {@code null}
+     */
+    public ExpressionRewriter(List<RewriteRule> rules, int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("maxIterations <= 0");
+        }
+        this.rules = List.copyOf(Objects.requireNonNull(rules, "rules null"));
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Rewrites the given tree until no rule matches anymore or the maximum number of passes is reached. The number of
+     * eliminated nodes is negative if the rules enlarged the tree.
+     *
+     * @param root the root of the arithmetic expression tree to rewrite
+     *
+     * @return the rewritten tree and the number of eliminated nodes
+     *
+     * @throws NullPointerException if the root is {@code null}
+     */
+    public OptimizationResult rewrite(ArithmeticExpressionNode root) {
+        Objects.requireNonNull(root, "root null");
+        ArithmeticExpressionNode current = root;
+        for (int i = 0; i < maxIterations; i++) {
+            ArithmeticExpressionNode rewritten = rewriteNode(current);
+            if (rewritten == current) {
+                break;
+            }
+            current = rewritten;
+        }
+        return new OptimizationResult(current, countNodes(root) - countNodes(current));
+    }
+
+    /**
+     * Rewrites the children of the given node and then the node itself with the first matching rule.
+     *
+     * @param node the node to rewrite
+     *
+     * @return the rewritten node or the node itself if no rule matched
+     */
+    private ArithmeticExpressionNode rewriteNode(ArithmeticExpressionNode node) {
+        if (node instanceof OperationExpressionNode operationNode) {
+            ListItem<ArithmeticExpressionNode> head = null;
+            ListItem<ArithmeticExpressionNode> tail = null;
+            boolean changed = false;
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                ListItem<ArithmeticExpressionNode> item = new ListItem<>();
+                item.key = rewriteNode(operand.key);
+                changed |= item.key != operand.key;
+                if (head == null) {
+                    head = item;
+                } else {
+                    tail.next = item;
+                }
+                tail = item;
+            }
+            if (changed) {
+                node = new OperationExpressionNode(operationNode.getOperator(), head);
+            }
+        }
+        for (RewriteRule rule : rules) {
+            ArithmeticExpressionNode replacement = rule.apply(node);
+            if (replacement != null) {
+                return replacement;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Replaces a division by an exact literal with a multiplication by its inverse.
+     *
+     * @param bindings the variable bindings of the pattern (/ x c)
+     *
+     * @return the multiplication or {@code null} if c is not a positive exact literal
+     */
+    private static @Nullable ArithmeticExpressionNode multiplyByInverse(Map<String, ArithmeticExpressionNode> bindings) {
+        if (!(bindings.get("c") instanceof LiteralExpressionNode literal)) {
+            return null;
+        }
+        MyNumber divisor = literal.getValue();
+        if (!(divisor instanceof MyInteger || divisor instanceof MyRational) || divisor.toReal().signum() <= 0) {
+            return null;
+        }
+        ListItem<ArithmeticExpressionNode> operands = new ListItem<>();
+        operands.key = bindings.get("x");
+        operands.next = new ListItem<>();
+        operands.next.key = new LiteralExpressionNode(new MyInteger(1).divide(divisor));
+        return new OperationExpressionNode(Operator.MUL, operands);
+    }
+
+    /**
+     * Returns {@code true} if (exp (* k (ln x))) has the same value as (expt x k), i.e. x is known to be positive and k is a
+     * literal which is not a negative integer.
+     *
+     * @param bindings the variable bindings of the pattern
+     *
+     * @return {@code true} if the power has the same value as the exponential function
+     */
+    private static boolean isPower(Map<String, ArithmeticExpressionNode> bindings) {
+        return isPositive(bindings.get("x"))
+            && bindings.get("k") instanceof LiteralExpressionNode literal
+            && !(literal.getValue() instanceof MyInteger exponent && exponent.toReal().signum() < 0);
+    }
+
+    /**
+     * Returns {@code true} if the given node is known to evaluate to a positive number.
+     *
+     * @param node the node to check
+     *
+     * @return {@code true} if the given node is known to evaluate to a positive number
+     */
+    private static boolean isPositive(ArithmeticExpressionNode node) {
+        if (node instanceof LiteralExpressionNode literal) {
+            return literal.getValue().toReal().signum() > 0;
+        }
+        if (!(node instanceof OperationExpressionNode operationNode)) {
+            return false;
+        }
+        return operationNode.getOperator() == Operator.EXP
+            || operationNode.getOperator() == Operator.SQRT && isPositive(operationNode.getOperands().key);
+    }
+
+    /**
+     * Returns {@code true} if (expt x 2) is known to have the same value as (* x x) up to its last digits, i.e. the given node is
+     * known to evaluate to an integer or a positive real. Only integers are raised to a power exactly, other numbers are raised
+     * to a power by their logarithm, which rejects non-positive numbers and results in a real. A square root or an exponential
+     * function evaluates to an integer or a positive real.
+     *
+     * @param node the node to check
+     *
+     * @return {@code true} if the square of the given node has the same value as its product with itself
+     */
+    private static boolean hasSquare(ArithmeticExpressionNode node) {
+        if (node instanceof LiteralExpressionNode literal) {
+            MyNumber value = literal.getValue();
+            return value instanceof MyInteger || value instanceof MyReal && value.toReal().signum() > 0;
+        }
+        return node instanceof OperationExpressionNode operationNode
+            && (operationNode.getOperator() == Operator.SQRT || operationNode.getOperator() == Operator.EXP);
+    }
+
+    /**
+     * Returns {@code true} if the given node is known to evaluate to a non-negative number.
+     *
+     * @param node the node to check
+     *
+     * @return {@code true} if the given node is known to evaluate to a non-negative number
+     */
+    private static boolean isNonNegative(ArithmeticExpressionNode node) {
+        if (node instanceof LiteralExpressionNode literal) {
+            return literal.getValue().toReal().signum() >= 0;
+        }
+        return node instanceof OperationExpressionNode operationNode
+            && (operationNode.getOperator() == Operator.SQRT || operationNode.getOperator() == Operator.EXP);
+    }
+
+    /**
+     * Returns the number of nodes of the given tree.
+     *
+     * @param node the root of the tree
+     *
+     * @return the number of nodes of the tree
+     */
+    private static int countNodes(ArithmeticExpressionNode node) {
+        int count = 1;
+        if (node instanceof OperationExpressionNode operationNode) {
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                count += countNodes(operand.key);
+            }
+        }
+        return count;
+    }
+}
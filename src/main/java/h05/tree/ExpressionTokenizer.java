@@ -0,0 +1,147 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A tokenizer which splits an arithmetic expression into typed tokens. Brackets and operators are recognized without creating
+ * a string for them and numbers are parsed directly from the input when they are requested.
+ *
+ * <p>The accessors {@link #getOperator()}, {@link #getNumber()} and {@link #getText()} refer to the token returned by the last
+ * call of {@link #next()}.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ 1 (* 2 a))</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    ExpressionTokenizer tokens = ExpressionTokenizer.of("(+ 1 (* 2 a))");
+ *    ArithmeticExpressionNode root = ExpressionTreeHandler.buildIteratively(tokens);
+ * }</pre>
+ */
+public interface ExpressionTokenizer extends Iterator<ExpressionTokenizer.Token> {
+
+    /**
+     * The default number of characters which are read from the input at once.
+     */
+    int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Returns a tokenizer which reads the expression from the given reader. Brackets and whitespace separate tokens, the
+     * tokenizer only buffers the characters of the current token and never the whole expression.
+     *
+     * @param expression the reader to read the expression from
+     *
+     * @return a tokenizer which reads the expression from the given reader
+     */
+    static ExpressionTokenizer of(Reader expression) {
+        return new ReadableTokenizer(expression, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a tokenizer which reads the expression from the given character sequence. Brackets and whitespace separate
+     * tokens. A {@link CharBuffer} is read from its position to its limit without modifying it.
+     *
+     * @param expression the character sequence to read the expression from
+     *
+     * @return a tokenizer which reads the expression from the given character sequence
+     */
+    static ExpressionTokenizer of(CharSequence expression) {
+        return new ReadableTokenizer(CharBuffer.wrap(expression), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a tokenizer which decodes the expression from the remaining bytes of the given buffer. Brackets and whitespace
+     * separate tokens. The bytes are decoded incrementally without modifying the position of the buffer, malformed input is
+     * replaced like in {@link String#String(byte[], Charset)}.
+     *
+     * @param expression the buffer to decode the expression from
+     * @param charset    the charset of the bytes
+     *
+     * @return a tokenizer which decodes the expression from the given buffer
+     */
+    static ExpressionTokenizer of(ByteBuffer expression, Charset charset) {
+        return new ReadableTokenizer(ReadableTokenizer.decode(expression, charset), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a tokenizer which classifies the given pre-split tokens.
+     *
+     * @param expression the tokens of the expression
+     *
+     * @return a tokenizer which classifies the given pre-split tokens
+     */
+    static ExpressionTokenizer of(Iterator<String> expression) {
+        return new IteratorTokenizer(expression);
+    }
+
+    /**
+     * Returns the type of the next token.
+     *
+     * @return the type of the next token
+     *
+     * @throws NoSuchElementException if there are no more tokens
+     */
+    @Override
+    Token next();
+
+    /**
+     * Returns the operator of the current token.
+     *
+     * @return the operator of the current token or {@code null} if the current token is not an operator
+     */
+    @Nullable Operator getOperator();
+
+    /**
+     * Returns the number of the current token.
+     *
+     * @return the number of the current token or {@code null} if the current token is not a number
+     *
+     * @throws ArithmeticException if the current token is a ratio with the denominator 0
+     */
+    @Nullable MyNumber getNumber();
+
+    /**
+     * Returns the string representation of the current token.
+     *
+     * @return the string representation of the current token
+     *
+     * @throws IllegalStateException if {@link #next()} has not been called yet
+     */
+    String getText();
+
+    /**
+     * The types of tokens of an arithmetic expression.
+     */
+    enum Token {
+
+        /**
+         * The left bracket {@value ArithmeticExpressionNode#LEFT_BRACKET}.
+         */
+        LEFT_BRACKET,
+        /**
+         * The right bracket {@value ArithmeticExpressionNode#RIGHT_BRACKET}.
+         */
+        RIGHT_BRACKET,
+        /**
+         * An {@link Operator}.
+         */
+        OPERATOR,
+        /**
+         * A {@link MyNumber}.
+         */
+        NUMBER,
+        /**
+         * Any other token, which should be an identifier.
+         */
+        IDENTIFIER
+    }
+}
@@ -3,16 +3,17 @@ package h05.tree;
 import h05.exception.BadOperationException;
 import h05.exception.ParenthesesMismatchException;
 import h05.exception.UndefinedOperatorException;
-import h05.math.MyNumber;
+import h05.tree.ExpressionTokenizer.Token;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Stack;
 
 /**
- * This class is used to parse an expression and build a tree out of it.
+ * This class is used to parse an expression and build a tree out of it. The methods of this class have no shared state and can
+ * be used by multiple threads concurrently.
  *
  * @author Nhan Huynh
  */
@@ -34,9 +35,25 @@ public final class ExpressionTreeHandler {
      * @throws BadOperationException        if the iterator has no more tokens
      * @throws ParenthesesMismatchException if the parentheses are mismatched
      * @throws UndefinedOperatorException   if the operator is not defined
-     * @see #buildExpression(Iterator)
+     * @see #buildRecursively(ExpressionTokenizer)
      */
     public static ArithmeticExpressionNode buildRecursively(Iterator<String> expression) {
+        return buildRecursively(ExpressionTokenizer.of(expression));
+    }
+
+    /**
+     * Builds an arithmetic expression tree from a token stream recursively.
+     *
+     * @param expression the tokens of the arithmetic expression to parse
+     *
+     * @return the root node of the arithmetic expression tree
+     *
+     * @throws BadOperationException        if the tokenizer has no more tokens
+     * @throws ParenthesesMismatchException if the parentheses are mismatched
+     * @throws UndefinedOperatorException   if the operator is not defined
+     * @see #buildExpression(ExpressionTokenizer)
+     */
+    public static ArithmeticExpressionNode buildRecursively(ExpressionTokenizer expression) {
         ArithmeticExpressionNode root = buildExpression(expression);
         // All tokens should be consumed
         // Otherwise we returned before the recursion anchor - probably read too many )
@@ -56,45 +73,44 @@ public final class ExpressionTreeHandler {
      * @throws BadOperationException        if the iterator has no more tokens
      * @throws ParenthesesMismatchException if the parentheses are mismatched
      * @throws UndefinedOperatorException   if the operator is not defined
-     * @see #buildExpression(Iterator, ListItem, ListItem)
+     * @see #buildExpression(ExpressionTokenizer, ListItem, ListItem)
      */
-    private static ArithmeticExpressionNode buildExpression(Iterator<String> expression) {
+    private static ArithmeticExpressionNode buildExpression(ExpressionTokenizer expression) {
         // This cannot happen, the recursion anchor is defined in the helper method
         if (!expression.hasNext()) {
             throw new BadOperationException("No expression");
         }
-        String token = expression.next();
-        boolean isLeft = token.equals(ArithmeticExpressionNode.LEFT_BRACKET);
-        boolean isRight = token.equals(ArithmeticExpressionNode.RIGHT_BRACKET);
+        Token token = expression.next();
+        boolean isLeft = token == Token.LEFT_BRACKET;
+        boolean isRight = token == Token.RIGHT_BRACKET;
 
-        if (isLeft && !expression.hasNext() || Operator.isOperator(token)) {
+        if (isLeft && !expression.hasNext() || token == Token.OPERATOR) {
             // Validate parentheses
             throw new ParenthesesMismatchException();
         } else if (isLeft) {
-            token = expression.next();
-
             // Validate operator
             // Operator and operands validation occurs in the constructor
-            return new OperationExpressionNode(Operator.getOperator(token), buildExpression(expression, null, null));
+            return new OperationExpressionNode(nextOperator(expression), buildExpression(expression, null, null));
         } else if (isRight) {
             // No tail
             return null;
-        } else if (MyNumber.isNumber(token)) {
-            MyNumber number = MyNumber.parseNumber(token);
-            return new LiteralExpressionNode(number);
+        } else if (token == Token.NUMBER) {
+            return new LiteralExpressionNode(Objects.requireNonNull(expression.getNumber()));
         }
-        return new IdentifierExpressionNode(token);
+        return new IdentifierExpressionNode(expression.getText());
     }
 
     /**
      * Builds a sequence of arithmetic expression node from a string.
      *
-     * @param expression the string representation of the arithmetic expression to parse
+     * @param expression the tokens of the arithmetic expression to parse
+     * @param head       the head of the sequence built so far
+     * @param tail       the tail of the sequence built so far
      *
      * @return the sequence of arithmetic expression node
      */
     private static ListItem<ArithmeticExpressionNode> buildExpression(
-        Iterator<String> expression,
+        ExpressionTokenizer expression,
         ListItem<ArithmeticExpressionNode> head,
         ListItem<ArithmeticExpressionNode> tail) {
         // Recursion anchor - no tokens left
@@ -133,8 +149,24 @@ public final class ExpressionTreeHandler {
      * @throws BadOperationException        if the iterator has no more tokens
      * @throws ParenthesesMismatchException if the parentheses are mismatched
      * @throws UndefinedOperatorException   if the operator is not defined
+     * @see #buildIteratively(ExpressionTokenizer)
      */
     public static ArithmeticExpressionNode buildIteratively(Iterator<String> expression) {
+        return buildIteratively(ExpressionTokenizer.of(expression));
+    }
+
+    /**
+     * Builds an arithmetic expression tree from a token stream iteratively.
+     *
+     * @param expression the tokens of the arithmetic expression to parse
+     *
+     * @return the root node of the arithmetic expression tree
+     *
+     * @throws BadOperationException        if the tokenizer has no more tokens
+     * @throws ParenthesesMismatchException if the parentheses are mismatched
+     * @throws UndefinedOperatorException   if the operator is not defined
+     */
+    public static ArithmeticExpressionNode buildIteratively(ExpressionTokenizer expression) {
         if (!expression.hasNext()) {
             throw new BadOperationException("No expression");
         }
@@ -146,18 +178,17 @@ public final class ExpressionTreeHandler {
         Stack<ListItem<ArithmeticExpressionNode>> tails = new Stack<>();
 
         while (expression.hasNext()) {
-            String token = expression.next();
+            Token token = expression.next();
 
-            boolean isLeft = token.equals(ArithmeticExpressionNode.LEFT_BRACKET);
-            boolean isRight = token.equals(ArithmeticExpressionNode.RIGHT_BRACKET);
+            boolean isLeft = token == Token.LEFT_BRACKET;
+            boolean isRight = token == Token.RIGHT_BRACKET;
 
-            if (isLeft && !expression.hasNext() || Operator.isOperator(token)) {
+            if (isLeft && !expression.hasNext() || token == Token.OPERATOR) {
                 // Validate parentheses
                 throw new ParenthesesMismatchException();
             } else if (isLeft) {
-                token = expression.next();
                 // Validate operator
-                Operator operator = Operator.getOperator(token);
+                Operator operator = nextOperator(expression);
 
                 operators.push(operator);
                 // Marker node
@@ -195,10 +226,9 @@ public final class ExpressionTreeHandler {
             } else if (!operands.isEmpty() && operators.isEmpty()) {
                 // Cannot parse token if there is no operator
                 throw new ParenthesesMismatchException();
-            } else if (MyNumber.isNumber(token)) {
-                MyNumber number = MyNumber.parseNumber(token);
+            } else if (token == Token.NUMBER) {
                 ListItem<ArithmeticExpressionNode> node = new ListItem<>();
-                node.key = new LiteralExpressionNode(number);
+                node.key = new LiteralExpressionNode(Objects.requireNonNull(expression.getNumber()));
 
                 if (operands.isEmpty()) {
                     // Expression is an operand
@@ -215,7 +245,7 @@ public final class ExpressionTreeHandler {
                 }
             } else {
                 ListItem<ArithmeticExpressionNode> node = new ListItem<>();
-                node.key = new IdentifierExpressionNode(token);
+                node.key = new IdentifierExpressionNode(expression.getText());
 
                 if (operands.isEmpty()) {
                     // Expression is an operand
@@ -244,6 +274,24 @@ public final class ExpressionTreeHandler {
         return operands.pop().key;
     }
 
+    /**
+     * Reads the token after a left bracket, which must be an operator.
+     *
+     * @param expression the tokens of the arithmetic expression to parse
+     *
+     * @return the operator of the next token
+     *
+     * @throws UndefinedOperatorException if the next token is not an operator
+     */
+    private static Operator nextOperator(ExpressionTokenizer expression) {
+        expression.next();
+        Operator operator = expression.getOperator();
+        if (operator == null) {
+            throw new UndefinedOperatorException(expression.getText());
+        }
+        return operator;
+    }
+
     /**
      * Reconstructs the string representation of the arithmetic expression tree.
      *
@@ -252,36 +300,47 @@ public final class ExpressionTreeHandler {
      * @return the string representation of the arithmetic expression tree
      */
     public static List<String> reconstruct(ArithmeticExpressionNode root) {
-        List<String> tokens = new ArrayList<>();
-        reconstruct(root, tokens);
+        return reconstruct(root, new TokenBuffer()).toList();
+    }
+
+    /**
+     * Reconstructs the tokens of the arithmetic expression tree and appends them to the given buffer.
+     *
+     * @param root   the root node of the arithmetic expression tree
+     * @param tokens the buffer to append the tokens to
+     *
+     * @return the given buffer
+     */
+    public static TokenBuffer reconstruct(ArithmeticExpressionNode root, TokenBuffer tokens) {
+        reconstructTokens(root, tokens);
         return tokens;
     }
 
     /**
-     * Reconstructs the string representation of the arithmetic expression tree.
+     * Reconstructs the tokens of the arithmetic expression tree.
      *
-     * @param node        the current node of the arithmetic expression tree
-     * @param expressions the list of string representation of the arithmetic expression tree
+     * @param node   the current node of the arithmetic expression tree
+     * @param tokens the buffer to append the tokens to
      */
-    private static void reconstruct(ArithmeticExpressionNode node, List<String> expressions) {
+    private static void reconstructTokens(ArithmeticExpressionNode node, TokenBuffer tokens) {
         if (node.isOperation()) {
-            expressions.add(ArithmeticExpressionNode.LEFT_BRACKET);
+            tokens.addLeftBracket();
             OperationExpressionNode operatorNode = (OperationExpressionNode) node;
-            expressions.add(operatorNode.getOperator().toString());
+            tokens.addOperator(operatorNode.getOperator());
 
             // Parse operands recursively
             for (ListItem<ArithmeticExpressionNode> operand = operatorNode.getOperands();
                  operand != null; operand = operand.next) {
-                reconstruct(operand.key, expressions);
+                reconstructTokens(operand.key, tokens);
             }
 
-            expressions.add(ArithmeticExpressionNode.RIGHT_BRACKET);
+            tokens.addRightBracket();
             return;
         } else if (node instanceof LiteralExpressionNode literalNode) {
-            expressions.add(literalNode.getValue().toString());
+            tokens.addNumber(literalNode.getValue());
             return;
         } else if (node instanceof IdentifierExpressionNode identifierNode) {
-            expressions.add(identifierNode.getValue());
+            tokens.addIdentifier(identifierNode.getValue());
             return;
         }
         throw new IllegalArgumentException("Unknown node type");
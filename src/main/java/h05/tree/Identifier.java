@@ -3,6 +3,7 @@ package h05.tree;
 import h05.exception.UndefinedIdentifierException;
 import h05.math.MyNumber;
 import h05.math.MyReal;
+import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -28,6 +29,11 @@ public enum Identifier {
      */
     PI("pi", new MyReal(BigDecimal.valueOf(Math.PI)));
 
+    /**
+     * The cached identifiers to avoid copying {@link #values()} on every lookup.
+     */
+    private static final Identifier[] VALUES = values();
+
     /**
      * The name of this identifier.
      */
@@ -57,12 +63,7 @@ public enum Identifier {
      * @return {@code true} if the given name is corresponding to any identifier, {@code false} otherwise
      */
     public static boolean isIdentifier(String name) {
-        for (Identifier identifier : Identifier.values()) {
-            if (identifier.name.equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return findIdentifier(name) != null;
     }
 
     /**
@@ -75,12 +76,27 @@ public enum Identifier {
      * @throws UndefinedIdentifierException if the given name is not corresponding to any identifier
      */
     public static Identifier getIdentifier(String name) {
-        for (Identifier identifier : Identifier.values()) {
+        Identifier identifier = findIdentifier(name);
+        if (identifier == null) {
+            throw new UndefinedIdentifierException(name);
+        }
+        return identifier;
+    }
+
+    /**
+     * Returns the identifier corresponding to the given name.
+     *
+     * @param name the name of the identifier
+     *
+     * @return the identifier corresponding to the given name or {@code null} if there is no such identifier
+     */
+    static @Nullable Identifier findIdentifier(String name) {
+        for (Identifier identifier : VALUES) {
             if (identifier.name.equals(name)) {
                 return identifier;
             }
         }
-        throw new UndefinedIdentifierException(name);
+        return null;
     }
 
     /**
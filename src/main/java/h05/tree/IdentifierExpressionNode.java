@@ -3,11 +3,10 @@ package h05.tree;
 import h05.exception.IllegalIdentifierExceptions;
 import h05.exception.UndefinedIdentifierException;
 import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * This class represents an identifier operand arithmetic expression node. An identifier operand is a variable name.
@@ -27,14 +26,14 @@ import java.util.regex.Pattern;
 public class IdentifierExpressionNode extends OperandExpressionNode {
 
     /**
-     * A matcher used to validate the allowed identifier.
+     * The identifier name.
      */
-    public static final Matcher IDENTIFIER_FORMAT = Pattern.compile("[a-zA-Z\\-]+").matcher("");
+    private final String value;
 
     /**
-     * The identifier name.
+     * The predefined identifier with the same name or {@code null} if the name is not predefined.
      */
-    private final String value;
+    private final @Nullable Identifier predefined;
 
     /**
      * Constructs and initializes an identifier expression node with the given value.
@@ -56,17 +55,43 @@ public class IdentifierExpressionNode extends OperandExpressionNode {
         }
 
         this.value = value;
+        this.predefined = Identifier.findIdentifier(value);
     }
 
     /**
-     * Returns {@code true} if the given value is a valid identifier name.
+     * Returns {@code true} if the given value is a valid identifier name, i.e. it matches {@code [a-zA-Z\-]+}: a non-empty
+     * sequence of ASCII letters and hyphens.
      *
      * @param value the value to check
      *
      * @return {@code true} if the given value is a valid identifier name
      */
     public static boolean isIdentifier(String value) {
-        return IDENTIFIER_FORMAT.reset(value).matches();
+        return isIdentifier(value, 0, value.length());
+    }
+
+    /**
+     * Returns {@code true} if the given range of the character sequence is a valid identifier name. This method has no shared
+     * state and can be used by multiple threads concurrently.
+     *
+     * @param value the character sequence to check
+     * @param start the start index of the range (inclusive)
+     * @param end   the end index of the range (exclusive)
+     *
+     * @return {@code true} if the given range of the character sequence is a valid identifier name
+     * @see #isIdentifier(String)
+     */
+    public static boolean isIdentifier(CharSequence value, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -80,22 +105,19 @@ public class IdentifierExpressionNode extends OperandExpressionNode {
 
     @Override
     public MyNumber evaluate(Map<String, MyNumber> identifiers) {
-        boolean isPredefined = Identifier.isIdentifier(value);
-        boolean isDefined = identifiers.containsKey(value);
-
-        if (isDefined && isPredefined) {
-            throw new IllegalIdentifierExceptions(value);
-        }
-
-        if (isPredefined) {
-            return Identifier.getIdentifier(value).getValue();
+        if (predefined != null) {
+            if (identifiers.containsKey(value)) {
+                throw new IllegalIdentifierExceptions(value);
+            }
+            return predefined.getValue();
         }
 
-        if (!isDefined) {
+        // Only a missing value needs a second lookup to distinguish a null value from an undefined identifier
+        MyNumber number = identifiers.get(value);
+        if (number == null && !identifiers.containsKey(value)) {
             throw new UndefinedIdentifierException(value);
         }
-
-        return identifiers.get(value);
+        return number;
     }
 
     @Override
@@ -0,0 +1,281 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates an arithmetic expression tree repeatedly while single identifiers change. The last value of every operation is
+ * cached, rebinding an identifier only invalidates the operations on the paths from its occurrences to the root, so the next
+ * evaluation only recomputes these paths instead of the whole tree.
+ *
+ * <p>The result of an evaluation is the same as {@link ArithmeticExpressionNode#evaluate(Map)} on the tree with the current
+ * bindings, including the exceptions of invalid expressions. An operation whose evaluation failed stays invalid. An
+ * incremental evaluator is not thread-safe.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ (* a b) (* c d) (* e f))</li>
+ *     <li>Rebinding a only recomputes (* a b) and the root</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    IncrementalEvaluator evaluator = new IncrementalEvaluator(root, identifiers);
+ *    MyNumber result = evaluator.evaluate();
+ *    result = evaluator.set("a", new MyInteger(42)).evaluate();
+ * }</pre>
+ */
+public final class IncrementalEvaluator {
+
+    /**
+     * The nodes of the tree in post-order, the root is the last node.
+     */
+    private final ArithmeticExpressionNode[] nodes;
+
+    /**
+     * The index of the parent of every node or {@code -1} for the root.
+     */
+    private final int[] parents;
+
+    /**
+     * The operand indices of every operation or {@code null} for operands.
+     */
+    private final int[][] operands;
+
+    /**
+     * The operator of every operation or {@code null} for operands.
+     */
+    private final Operator[] operators;
+
+    /**
+     * The indices of the occurrences of every identifier.
+     */
+    private final Map<String, int[]> occurrences;
+
+    /**
+     * The cached values of the operations.
+     */
+    private final MyNumber[] values;
+
+    /**
+     * Whether the cached value of an operation is invalid. The ancestors of an invalid operation are invalid as well.
+     */
+    private final boolean[] invalid;
+
+    /**
+     * The current values of the identifiers.
+     */
+    private final Map<String, MyNumber> identifiers = new HashMap<>();
+
+    /**
+     * The number of operations recomputed by the last evaluation.
+     */
+    private int recomputed;
+
+    /**
+     * Constructs and initializes an incremental evaluator for the given tree without bound identifiers.
+     *
+     * @param root the root of the arithmetic expression tree
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public IncrementalEvaluator(ArithmeticExpressionNode root) {
+        this(root, Map.of());
+    }
+
+    /**
+     * Constructs and initializes an incremental evaluator for the given tree with the given identifiers. Later changes to
+     * the tree or the map are not reflected by the evaluator.
+     *
+     * @param root        the root of the arithmetic expression tree
+     * @param identifiers the initial values of the identifiers
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root or the identifiers are {@code null}
+     */
+    public IncrementalEvaluator(ArithmeticExpressionNode root, Map<String, MyNumber> identifiers) {
+        Objects.requireNonNull(root, "root null");
+        this.identifiers.putAll(Objects.requireNonNull(identifiers, "identifiers null"));
+
+        List<ArithmeticExpressionNode> nodes = new ArrayList<>();
+        List<int[]> operands = new ArrayList<>();
+        Map<String, List<Integer>> occurrences = new HashMap<>();
+        flatten(root, nodes, operands, occurrences);
+
+        int size = nodes.size();
+        this.nodes = nodes.toArray(new ArithmeticExpressionNode[0]);
+        this.operands = operands.toArray(new int[0][]);
+        this.parents = new int[size];
+        this.operators = new Operator[size];
+        this.values = new MyNumber[size];
+        this.invalid = new boolean[size];
+        parents[size - 1] = -1;
+        for (int i = 0; i < size; i++) {
+            if (this.nodes[i] instanceof OperationExpressionNode operationNode) {
+                operators[i] = operationNode.getOperator();
+                invalid[i] = true;
+                for (int operand : this.operands[i]) {
+                    parents[operand] = i;
+                }
+            }
+        }
+        this.occurrences = new HashMap<>();
+        occurrences.forEach((name, indices) ->
+            this.occurrences.put(name, indices.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Appends the given node and its children in post-order.
+     *
+     * @param node        the node to append
+     * @param nodes       the nodes in post-order
+     * @param operands    the operand indices of the nodes
+     * @param occurrences the indices of the occurrences of every identifier
+     *
+     * @return the index of the given node
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private static int flatten(
+        ArithmeticExpressionNode node,
+        List<ArithmeticExpressionNode> nodes,
+        List<int[]> operands,
+        Map<String, List<Integer>> occurrences) {
+        int[] indices = null;
+        if (node instanceof OperationExpressionNode operationNode) {
+            List<Integer> children = new ArrayList<>();
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                children.add(flatten(operand.key, nodes, operands, occurrences));
+            }
+            indices = children.stream().mapToInt(Integer::intValue).toArray();
+        } else if (node instanceof IdentifierExpressionNode identifierNode) {
+            occurrences.computeIfAbsent(identifierNode.getValue(), name -> new ArrayList<>()).add(nodes.size());
+        } else if (!(node instanceof LiteralExpressionNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+        nodes.add(node);
+        operands.add(indices);
+        return nodes.size() - 1;
+    }
+
+    /**
+     * Binds the given identifier to the given value and invalidates the operations depending on it. Rebinding an identifier
+     * to the same instance invalidates nothing, since numbers are immutable and the same instance cannot change a result.
+     *
+     * @param name  the name of the identifier
+     * @param value the new value of the identifier
+     *
+     * @return this evaluator
+     *
+     * @throws NullPointerException if the name is {@code null}
+     */
+    public IncrementalEvaluator set(String name, @Nullable MyNumber value) {
+        Objects.requireNonNull(name, "name null");
+        boolean bound = identifiers.containsKey(name);
+        MyNumber previous = identifiers.put(name, value);
+        if (!bound || previous != value) {
+            invalidate(name);
+        }
+        return this;
+    }
+
+    /**
+     * Removes the binding of the given identifier and invalidates the operations depending on it.
+     *
+     * @param name the name of the identifier
+     *
+     * @return this evaluator
+     *
+     * @throws NullPointerException if the name is {@code null}
+     */
+    public IncrementalEvaluator remove(String name) {
+        Objects.requireNonNull(name, "name null");
+        if (identifiers.containsKey(name)) {
+            identifiers.remove(name);
+            invalidate(name);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the current value of the given identifier.
+     *
+     * @param name the name of the identifier
+     *
+     * @return the current value of the identifier or {@code null} if it is not bound
+     */
+    public @Nullable MyNumber get(String name) {
+        return identifiers.get(name);
+    }
+
+    /**
+     * Evaluates the tree with the current bindings. Only the operations which have been invalidated since the last
+     * evaluation are recomputed.
+     *
+     * @return the result of the evaluation
+     *
+     * @see ArithmeticExpressionNode#evaluate(Map)
+     */
+    public MyNumber evaluate() {
+        recomputed = 0;
+        return evaluate(nodes.length - 1);
+    }
+
+    /**
+     * Returns the number of operations recomputed by the last evaluation.
+     *
+     * @return the number of operations recomputed by the last evaluation
+     */
+    int getRecomputed() {
+        return recomputed;
+    }
+
+    /**
+     * Invalidates the operations on the paths from the occurrences of the given identifier to the root.
+     *
+     * @param name the name of the identifier
+     */
+    private void invalidate(String name) {
+        int[] indices = occurrences.get(name);
+        if (indices == null) {
+            return;
+        }
+        for (int index : indices) {
+            // The ancestors of an invalid operation are already invalid
+            for (int parent = parents[index]; parent != -1 && !invalid[parent]; parent = parents[parent]) {
+                invalid[parent] = true;
+                values[parent] = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the node with the given index and recomputes it if it is invalid.
+     *
+     * @param index the index of the node
+     *
+     * @return the value of the node
+     */
+    private MyNumber evaluate(int index) {
+        Operator operator = operators[index];
+        if (operator == null) {
+            return nodes[index].evaluate(identifiers);
+        }
+        if (!invalid[index]) {
+            return values[index];
+        }
+        int[] children = operands[index];
+        MyNumber value = OperationExpressionNode.apply(operator, children.length, i -> evaluate(children[i]));
+        values[index] = value;
+        invalid[index] = false;
+        recomputed++;
+        return value;
+    }
+}
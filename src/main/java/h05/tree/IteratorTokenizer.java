@@ -0,0 +1,90 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import h05.math.NumberScanner;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * A tokenizer which classifies pre-split string tokens.
+ */
+final class IteratorTokenizer implements ExpressionTokenizer {
+
+    /**
+     * The pre-split tokens.
+     */
+    private final Iterator<String> tokens;
+
+    /**
+     * The current token.
+     */
+    private @Nullable String text;
+
+    /**
+     * The operator of the current token.
+     */
+    private @Nullable Operator operator;
+
+    /**
+     * The number of the current token if it has already been parsed.
+     */
+    private @Nullable MyNumber number;
+
+    /**
+     * Constructs and initializes a tokenizer for the given tokens.
+     *
+     * @param tokens the pre-split tokens
+     *
+     * @throws NullPointerException if the tokens are {@code null}
+     */
+    IteratorTokenizer(Iterator<String> tokens) {
+        this.tokens = Objects.requireNonNull(tokens, "tokens null");
+    }
+
+    @Override
+    public boolean hasNext() {
+        return tokens.hasNext();
+    }
+
+    @Override
+    public Token next() {
+        String token = tokens.next();
+        text = token;
+        operator = null;
+        number = null;
+
+        if (token.equals(ArithmeticExpressionNode.LEFT_BRACKET)) {
+            return Token.LEFT_BRACKET;
+        } else if (token.equals(ArithmeticExpressionNode.RIGHT_BRACKET)) {
+            return Token.RIGHT_BRACKET;
+        }
+        operator = Operator.findOperator(token, 0, token.length());
+        if (operator != null) {
+            return Token.OPERATOR;
+        }
+        return NumberScanner.isNumber(token, 0, token.length()) ? Token.NUMBER : Token.IDENTIFIER;
+    }
+
+    @Override
+    public @Nullable Operator getOperator() {
+        return operator;
+    }
+
+    @Override
+    public @Nullable MyNumber getNumber() {
+        if (number == null && text != null && operator == null && NumberScanner.isNumber(text, 0, text.length())) {
+            number = NumberScanner.parseNumber(text, 0, text.length());
+        }
+        return number;
+    }
+
+    @Override
+    public String getText() {
+        if (text == null) {
+            throw new IllegalStateException("no current token");
+        }
+        return text;
+    }
+}
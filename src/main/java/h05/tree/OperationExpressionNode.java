@@ -4,11 +4,13 @@ import h05.exception.BadOperationException;
 import h05.exception.WrongNumberOfOperandsException;
 import h05.math.MyInteger;
 import h05.math.MyNumber;
+import h05.math.NumberAccumulator;
 import org.jetbrains.annotations.Nullable;
 
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.IntFunction;
 
 /**
  * This class represents an operation arithmetic expression node. An operation expression node contains and operator followed by
@@ -149,11 +151,7 @@ public class OperationExpressionNode implements ArithmeticExpressionNode {
      * @return the result of the evaluation
      */
     private MyNumber evaluateNullaryExpressions(Map<String, MyNumber> identifiers) {
-        return switch (operator) {
-            case ADD -> new MyInteger(BigInteger.ZERO);
-            case MUL -> new MyInteger(BigInteger.ONE);
-            default -> throw new BadOperationException(operator.toString());
-        };
+        return applyNullary(operator);
     }
 
     /**
@@ -166,7 +164,103 @@ public class OperationExpressionNode implements ArithmeticExpressionNode {
     private MyNumber evaluateUnaryExpressions(Map<String, MyNumber> identifiers) {
         // Cannot be null, since we checked the arity
         assert operands != null;
-        MyNumber operand = operands.key.evaluate(identifiers);
+        return applyUnary(operator, operands.key.evaluate(identifiers));
+    }
+
+    /**
+     * Evaluates the binary expressions.
+     *
+     * @param identifiers a map of identifiers and their values
+     *
+     * @return the result of the evaluation
+     */
+    private MyNumber evaluateBinaryExpressions(Map<String, MyNumber> identifiers) {
+        // Cannot be null, since we checked the arity
+        assert operands != null;
+        MyNumber operand1 = operands.key.evaluate(identifiers);
+        assert operands.next != null;
+        MyNumber operand2 = operands.next.key.evaluate(identifiers);
+        return applyBinary(operator, operand1, operand2);
+    }
+
+    /**
+     * Evaluates the nary expressions. Exact intermediate results are accumulated without normalization, see
+     * {@link NumberAccumulator}.
+     *
+     * @param identifiers a map of identifiers and their values
+     *
+     * @return the result of the evaluation
+     */
+    private MyNumber evaluateNaryExpressions(Map<String, MyNumber> identifiers) {
+        // Cannot be null, since we checked the arity
+        assert operands != null;
+        NumberAccumulator accumulator = new NumberAccumulator(operands.key.evaluate(identifiers));
+        for (ListItem<ArithmeticExpressionNode> current = operands.next; current != null;
+             current = current.next) {
+            accumulate(operator, accumulator, current.key.evaluate(identifiers));
+        }
+        return accumulator.toNumber();
+    }
+
+    /**
+     * Applies the given operator to the given number of operands like {@link #evaluate(Map)}. Every operand is evaluated in
+     * order right before it is needed and nary operations accumulate their operands, see {@link NumberAccumulator}.
+     *
+     * @param operator the operator to apply
+     * @param size     the number of operands
+     * @param operands the function evaluating the operand with the given index
+     *
+     * @return the result of the operation
+     *
+     * @throws BadOperationException if the operator cannot be applied to the number of operands
+     */
+    static MyNumber apply(Operator operator, int size, IntFunction<MyNumber> operands) {
+        return switch (size) {
+            case 0 -> applyNullary(operator);
+            case 1 -> applyUnary(operator, operands.apply(0));
+            case 2 -> {
+                MyNumber operand1 = operands.apply(0);
+                MyNumber operand2 = operands.apply(1);
+                yield applyBinary(operator, operand1, operand2);
+            }
+            default -> {
+                NumberAccumulator accumulator = new NumberAccumulator(operands.apply(0));
+                for (int i = 1; i < size; i++) {
+                    accumulate(operator, accumulator, operands.apply(i));
+                }
+                yield accumulator.toNumber();
+            }
+        };
+    }
+
+    /**
+     * Applies the given operator without operands.
+     *
+     * @param operator the operator to apply
+     *
+     * @return the result of the operation
+     *
+     * @throws BadOperationException if the operator cannot be applied without operands
+     */
+    static MyNumber applyNullary(Operator operator) {
+        return switch (operator) {
+            case ADD -> new MyInteger(BigInteger.ZERO);
+            case MUL -> new MyInteger(BigInteger.ONE);
+            default -> throw new BadOperationException(operator.toString());
+        };
+    }
+
+    /**
+     * Applies the given operator to a single operand.
+     *
+     * @param operator the operator to apply
+     * @param operand  the operand
+     *
+     * @return the result of the operation
+     *
+     * @throws BadOperationException if the operator cannot be applied to a single operand
+     */
+    static MyNumber applyUnary(Operator operator, MyNumber operand) {
         return switch (operator) {
             case ADD -> operand.plus();
             case SUB -> operand.minus();
@@ -180,18 +274,17 @@ public class OperationExpressionNode implements ArithmeticExpressionNode {
     }
 
     /**
-     * Evaluates the binary expressions.
+     * Applies the given operator to two operands.
      *
-     * @param identifiers a map of identifiers and their values
+     * @param operator the operator to apply
+     * @param operand1 the first operand
+     * @param operand2 the second operand
      *
-     * @return the result of the evaluation
+     * @return the result of the operation
+     *
+     * @throws BadOperationException if the operator cannot be applied to two operands
      */
-    private MyNumber evaluateBinaryExpressions(Map<String, MyNumber> identifiers) {
-        // Cannot be null, since we checked the arity
-        assert operands != null;
-        MyNumber operand1 = operands.key.evaluate(identifiers);
-        assert operands.next != null;
-        MyNumber operand2 = operands.next.key.evaluate(identifiers);
+    static MyNumber applyBinary(Operator operator, MyNumber operand1, MyNumber operand2) {
         return switch (operator) {
             case ADD -> operand1.plus(operand2);
             case SUB -> operand1.minus(operand2);
@@ -204,28 +297,22 @@ public class OperationExpressionNode implements ArithmeticExpressionNode {
     }
 
     /**
-     * Evaluates the nary expressions.
+     * Applies the given operator to the accumulated value of a nary expression and the next operand.
      *
-     * @param identifiers a map of identifiers and their values
+     * @param operator    the operator to apply
+     * @param accumulator the accumulated value
+     * @param operand     the next operand
      *
-     * @return the result of the evaluation
+     * @throws BadOperationException if the operator cannot be applied to more than two operands
      */
-    private MyNumber evaluateNaryExpressions(Map<String, MyNumber> identifiers) {
-        // Cannot be null, since we checked the arity
-        assert operands != null;
-        MyNumber operand1 = operands.key.evaluate(identifiers);
-        for (ListItem<ArithmeticExpressionNode> current = operands.next; current != null;
-             current = current.next) {
-            MyNumber operand2 = current.key.evaluate(identifiers);
-            operand1 = switch (operator) {
-                case ADD -> operand1.plus(operand2);
-                case SUB -> operand1.minus(operand2);
-                case MUL -> operand1.times(operand2);
-                case DIV -> operand1.divide(operand2);
-                default -> throw new BadOperationException(operator.toString());
-            };
+    static void accumulate(Operator operator, NumberAccumulator accumulator, MyNumber operand) {
+        switch (operator) {
+            case ADD -> accumulator.plus(operand);
+            case SUB -> accumulator.minus(operand);
+            case MUL -> accumulator.times(operand);
+            case DIV -> accumulator.divide(operand);
+            default -> throw new BadOperationException(operator.toString());
         }
-        return operand1;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package h05.tree;
 
 import h05.exception.UndefinedOperatorException;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.Set;
@@ -50,6 +51,11 @@ public enum Operator {
      */
     SQRT("sqrt");
 
+    /**
+     * The cached operators to avoid copying {@link #values()} on every lookup.
+     */
+    private static final Operator[] VALUES = values();
+
     /**
      * The operator's symbol.
      */
@@ -72,12 +78,7 @@ public enum Operator {
      * @return {@code true} if the given symbol is corresponding to an operator, {@code false} otherwise
      */
     public static boolean isOperator(String symbol) {
-        for (Operator operator : Operator.values()) {
-            if (operator.symbol.equals(symbol)) {
-                return true;
-            }
-        }
-        return false;
+        return findOperator(symbol, 0, symbol.length()) != null;
     }
 
     /**
@@ -90,12 +91,48 @@ public enum Operator {
      * @throws UndefinedOperatorException if the given symbol is not corresponding to any operator.
      */
     public static Operator getOperator(String symbol) {
-        for (Operator operator : Operator.values()) {
-            if (operator.symbol.equals(symbol)) {
+        Operator operator = findOperator(symbol, 0, symbol.length());
+        if (operator == null) {
+            throw new UndefinedOperatorException(symbol);
+        }
+        return operator;
+    }
+
+    /**
+     * Returns the operator corresponding to the given range of the character sequence without creating a string for it.
+     *
+     * @param symbol the character sequence containing the symbol
+     * @param start  the start index of the range (inclusive)
+     * @param end    the end index of the range (exclusive)
+     *
+     * @return the operator corresponding to the given range or {@code null} if there is no such operator
+     */
+    static @Nullable Operator findOperator(CharSequence symbol, int start, int end) {
+        int length = end - start;
+        for (Operator operator : VALUES) {
+            if (operator.symbol.length() == length && matches(operator.symbol, symbol, start)) {
                 return operator;
             }
         }
-        throw new UndefinedOperatorException(symbol);
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if the characters of the given symbol are found in the character sequence at the given index.
+     *
+     * @param expected the expected symbol
+     * @param symbol   the character sequence containing the symbol
+     * @param start    the index of the first character to compare
+     *
+     * @return {@code true} if the characters of the given symbol are found in the character sequence at the given index
+     */
+    private static boolean matches(String expected, CharSequence symbol, int start) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (expected.charAt(i) != symbol.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,51 @@
+package h05.tree;
+
+/**
+ * The result of an optimization pass over an arithmetic expression tree, see {@link ExpressionOptimizer}.
+ */
+public final class OptimizationResult {
+
+    /**
+     * The root of the optimized tree.
+     */
+    private final ArithmeticExpressionNode root;
+
+    /**
+     * The number of nodes which have been eliminated by the optimization.
+     */
+    private final int eliminatedNodes;
+
+    /**
+     * Constructs and initializes an optimization result.
+     *
+     * @param root            the root of the optimized tree
+     * @param eliminatedNodes the number of nodes which have been eliminated by the optimization
+     */
+    OptimizationResult(ArithmeticExpressionNode root, int eliminatedNodes) {
+        this.root = root;
+        this.eliminatedNodes = eliminatedNodes;
+    }
+
+    /**
+     * Returns the root of the optimized tree.
+     *
+     * @return the root of the optimized tree
+     */
+    public ArithmeticExpressionNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of nodes which have been eliminated by the optimization.
+     *
+     * @return the number of nodes which have been eliminated by the optimization
+     */
+    public int getEliminatedNodes() {
+        return eliminatedNodes;
+    }
+
+    @Override
+    public String toString() {
+        return root + " (" + eliminatedNodes + " nodes eliminated)";
+    }
+}
@@ -0,0 +1,510 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An arithmetic expression tree which has been prepared once for repeated evaluations. Every identifier which is not
+ * predefined is resolved to an integer slot and predefined identifiers (see {@link Identifier}) are replaced by their values,
+ * so an evaluation only needs an array of values indexed by slot instead of a map lookup per identifier visit.
+ *
+ * <p>The result of an evaluation is the same as {@link ArithmeticExpressionNode#evaluate(Map)} on the original tree. A
+ * prepared expression is immutable and can be evaluated by multiple threads concurrently.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ (* a pi) b)</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    PreparedExpression expression = PreparedExpression.prepare(root);
+ *    int a = expression.getSlot("a");
+ *    int b = expression.getSlot("b");
+ *    MyNumber[] values = new MyNumber[expression.getSlotCount()];
+ *    for (int i = 0; i < 1_000_000; i++) {
+ *        values[a] = new MyInteger(i);
+ *        values[b] = new MyInteger(2 * i);
+ *        MyNumber result = expression.evaluate(values);
+ *    }
+ *    MyNumber result = expression.bind().set("a", new MyInteger(1)).set("b", new MyInteger(2)).evaluate();
+ * }</pre>
+ */
+public final class PreparedExpression {
+
+    /**
+     * The root of the prepared expression.
+     */
+    private final SlotEvaluator root;
+
+    /**
+     * The evaluator of the prepared expression, either the root itself or a compiled form of it.
+     */
+    private final SlotEvaluator evaluator;
+
+    /**
+     * Whether the evaluator has been compiled to bytecode.
+     */
+    private final boolean compiled;
+
+    /**
+     * The names of the identifiers indexed by slot.
+     */
+    private final List<String> identifiers;
+
+    /**
+     * The slots indexed by the names of the identifiers.
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * The predefined identifiers which have been replaced by their values.
+     */
+    private final Set<Identifier> constants;
+
+    /**
+     * Constructs and initializes a prepared expression.
+     *
+     * @param root        the root of the prepared expression
+     * @param evaluator   the evaluator of the prepared expression
+     * @param compiled    whether the evaluator has been compiled to bytecode
+     * @param identifiers the names of the identifiers indexed by slot
+     * @param slots       the slots indexed by the names of the identifiers
+     * @param constants   the predefined identifiers which have been replaced by their values
+     */
+    private PreparedExpression(
+        SlotEvaluator root,
+        SlotEvaluator evaluator,
+        boolean compiled,
+        List<String> identifiers,
+        Map<String, Integer> slots,
+        Set<Identifier> constants) {
+        this.root = root;
+        this.evaluator = evaluator;
+        this.compiled = compiled;
+        this.identifiers = identifiers;
+        this.slots = slots;
+        this.constants = constants;
+    }
+
+    /**
+     * Prepares the given arithmetic expression tree for repeated evaluations. The slots are assigned in the order of the first
+     * occurrence of each identifier in the tree. Later changes to the tree are not reflected by the prepared expression.
+     *
+     * @param root the root of the arithmetic expression tree to prepare
+     *
+     * @return the prepared expression
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public static PreparedExpression prepare(ArithmeticExpressionNode root) {
+        Objects.requireNonNull(root, "root null");
+        List<String> identifiers = new ArrayList<>();
+        Map<String, Integer> slots = new HashMap<>();
+        Set<Identifier> constants = EnumSet.noneOf(Identifier.class);
+        SlotEvaluator node = resolve(root, identifiers, slots, constants);
+        return new PreparedExpression(
+            node,
+            node,
+            false,
+            Collections.unmodifiableList(identifiers),
+            Collections.unmodifiableMap(slots),
+            Collections.unmodifiableSet(constants)
+        );
+    }
+
+    /**
+     * Resolves the identifiers of the given node and its children.
+     *
+     * @param node        the node to resolve
+     * @param identifiers the names of the identifiers indexed by slot
+     * @param slots       the slots indexed by the names of the identifiers
+     * @param constants   the predefined identifiers which have been replaced by their values
+     *
+     * @return the resolved node
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private static SlotEvaluator resolve(
+        ArithmeticExpressionNode node,
+        List<String> identifiers,
+        Map<String, Integer> slots,
+        Set<Identifier> constants) {
+        if (node instanceof OperationExpressionNode operationNode) {
+            List<SlotEvaluator> operands = new ArrayList<>();
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                operands.add(resolve(operand.key, identifiers, slots, constants));
+            }
+            return new OperationNode(operationNode.getOperator(), operands.toArray(SlotEvaluator[]::new));
+        } else if (node instanceof LiteralExpressionNode literalNode) {
+            return new ConstantNode(literalNode.getValue(), literalNode.toString());
+        } else if (node instanceof IdentifierExpressionNode identifierNode) {
+            String name = identifierNode.getValue();
+            Identifier predefined = Identifier.findIdentifier(name);
+            if (predefined != null) {
+                constants.add(predefined);
+                return new ConstantNode(predefined.getValue(), name);
+            }
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = identifiers.size();
+                identifiers.add(name);
+                slots.put(name, slot);
+            }
+            return new SlotNode(slot, name);
+        }
+        throw new IllegalArgumentException("Unknown node type");
+    }
+
+    /**
+     * Returns the names of the identifiers indexed by slot. Predefined identifiers have no slot.
+     *
+     * @return the names of the identifiers indexed by slot
+     */
+    public List<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return identifiers.size();
+    }
+
+    /**
+     * Returns the slot of the given identifier.
+     *
+     * @param identifier the name of the identifier
+     *
+     * @return the slot of the given identifier or {@code -1} if the expression does not contain the identifier or it is
+     *     predefined
+     */
+    public int getSlot(String identifier) {
+        Integer slot = slots.get(identifier);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Evaluates the prepared expression with the given values indexed by slot.
+     *
+     * @param values the values of the identifiers indexed by slot
+     *
+     * @return the result of the arithmetic expression
+     *
+     * @throws IllegalArgumentException     if the number of values is not the number of slots
+     * @throws UndefinedIdentifierException if the value of a visited identifier is {@code null}
+     */
+    public MyNumber evaluate(MyNumber... values) {
+        if (values.length != identifiers.size()) {
+            throw new IllegalArgumentException(
+                String.format("expected %d values, got %d", identifiers.size(), values.length));
+        }
+        return evaluator.evaluate(values);
+    }
+
+    /**
+     * Evaluates the prepared expression with the values of the given map like {@link ArithmeticExpressionNode#evaluate(Map)}.
+     * The map is only accessed once per identifier instead of once per identifier visit. An identifier whose value is
+     * {@code null} evaluates to {@code null} like {@link IdentifierExpressionNode#evaluate(Map)}.
+     *
+     * @param identifiers a map of identifiers and their values
+     *
+     * @return the result of the arithmetic expression
+     *
+     * @throws IllegalIdentifierExceptions  if the map contains a predefined identifier used by the expression
+     * @throws UndefinedIdentifierException if the identifier is not defined for use in the map
+     */
+    public MyNumber evaluate(Map<String, MyNumber> identifiers) {
+        for (Identifier constant : constants) {
+            if (identifiers.containsKey(constant.getName())) {
+                throw new IllegalIdentifierExceptions(constant.getName());
+            }
+        }
+        MyNumber[] values = new MyNumber[this.identifiers.size()];
+        boolean[] nulls = null;
+        for (int i = 0; i < values.length; i++) {
+            String identifier = this.identifiers.get(i);
+            values[i] = identifiers.get(identifier);
+            // Only a missing value needs a second lookup to distinguish a null value from an undefined identifier
+            if (values[i] == null && identifiers.containsKey(identifier)) {
+                if (nulls == null) {
+                    nulls = new boolean[values.length];
+                }
+                nulls[i] = true;
+            }
+        }
+        if (nulls != null) {
+            return withNullValues(root, nulls).evaluate(values);
+        }
+        return evaluator.evaluate(values);
+    }
+
+    /**
+     * Returns a copy of the given prepared node whose identifiers with a {@code null} value evaluate to {@code null} instead
+     * of throwing an {@link UndefinedIdentifierException}.
+     *
+     * @param node  the prepared node
+     * @param nulls whether the value of the identifier is {@code null}, indexed by slot
+     *
+     * @return the copy of the prepared node
+     */
+    private static SlotEvaluator withNullValues(SlotEvaluator node, boolean[] nulls) {
+        if (node instanceof SlotNode slotNode) {
+            return nulls[slotNode.slot] ? values -> null : slotNode;
+        } else if (node instanceof OperationNode operation) {
+            SlotEvaluator[] operands = new SlotEvaluator[operation.operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = withNullValues(operation.operands[i], nulls);
+            }
+            return new OperationNode(operation.operator, operands);
+        }
+        return node;
+    }
+
+    /**
+     * Returns a prepared expression which evaluates this expression with a lambda specialized for every operation. The operator
+     * and arity branch of each operation is selected once instead of on every evaluation. Specializing only takes
+     * microseconds, so it already pays off for expressions which are evaluated a few dozen times.
+     *
+     * @return a specialized prepared expression or this expression if it has already been specialized or compiled
+     */
+    public PreparedExpression specialize() {
+        if (evaluator != root) {
+            return this;
+        }
+        return new PreparedExpression(root, ClosureCompiler.compile(root), false, identifiers, slots, constants);
+    }
+
+    /**
+     * Returns a prepared expression which evaluates this expression with bytecode generated for it. The generated class calls
+     * the {@link MyNumber} operations in straight-line code, so the JIT compiler can inline the whole expression. Compiling
+     * takes much longer than {@link #specialize()} and only pays off for expressions which are evaluated many times.
+     * Expressions which are too large for a single method are not compiled.
+     *
+     * @return a compiled prepared expression or this expression if it cannot be compiled
+     */
+    public PreparedExpression compile() {
+        if (this.compiled) {
+            return this;
+        }
+        SlotEvaluator compiled = BytecodeCompiler.compile(root);
+        return compiled == null ? this : new PreparedExpression(root, compiled, true, identifiers, slots, constants);
+    }
+
+    /**
+     * Returns a new builder to bind the identifiers by name.
+     *
+     * @return a new builder to bind the identifiers by name
+     */
+    public Bindings bind() {
+        return new Bindings();
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * A builder which binds the identifiers of the prepared expression by name. A builder can be reused, values which are not
+     * set again keep their previous value.
+     */
+    public final class Bindings {
+
+        /**
+         * The values of the identifiers indexed by slot.
+         */
+        private final MyNumber[] values = new MyNumber[identifiers.size()];
+
+        /**
+         * Constructs and initializes an empty builder.
+         */
+        private Bindings() {
+        }
+
+        /**
+         * Binds the given identifier to the given value. Identifiers which are not used by the expression are ignored like
+         * unused entries of the map passed to {@link ArithmeticExpressionNode#evaluate(Map)}.
+         *
+         * @param identifier the name of the identifier
+         * @param value      the value of the identifier
+         *
+         * @return this builder
+         *
+         * @throws IllegalIdentifierExceptions if the identifier is predefined and used by the expression
+         */
+        public Bindings set(String identifier, @Nullable MyNumber value) {
+            Integer slot = slots.get(identifier);
+            if (slot != null) {
+                values[slot] = value;
+                return this;
+            }
+            Identifier predefined = Identifier.findIdentifier(identifier);
+            if (predefined != null && constants.contains(predefined)) {
+                throw new IllegalIdentifierExceptions(identifier);
+            }
+            return this;
+        }
+
+        /**
+         * Binds the identifier of the given slot to the given value.
+         *
+         * @param slot  the slot of the identifier
+         * @param value the value of the identifier
+         *
+         * @return this builder
+         *
+         * @throws IndexOutOfBoundsException if the slot is out of bounds
+         */
+        public Bindings set(int slot, @Nullable MyNumber value) {
+            values[Objects.checkIndex(slot, values.length)] = value;
+            return this;
+        }
+
+        /**
+         * Evaluates the prepared expression with the bound values.
+         *
+         * @return the result of the arithmetic expression
+         *
+         * @throws UndefinedIdentifierException if a visited identifier has not been bound
+         */
+        public MyNumber evaluate() {
+            return evaluator.evaluate(values);
+        }
+    }
+
+    /**
+     * A literal or predefined identifier.
+     */
+    static final class ConstantNode implements SlotEvaluator {
+
+        /**
+         * The value of this node.
+         */
+        final MyNumber value;
+
+        /**
+         * The string representation of the original node.
+         */
+        final String text;
+
+        /**
+         * Constructs and initializes a constant node.
+         *
+         * @param value the value of this node
+         * @param text  the string representation of the original node
+         */
+        ConstantNode(MyNumber value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+
+        @Override
+        public MyNumber evaluate(MyNumber[] values) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * An identifier resolved to a slot.
+     */
+    static final class SlotNode implements SlotEvaluator {
+
+        /**
+         * The slot of the identifier.
+         */
+        final int slot;
+
+        /**
+         * The name of the identifier.
+         */
+        final String name;
+
+        /**
+         * Constructs and initializes a slot node.
+         *
+         * @param slot the slot of the identifier
+         * @param name the name of the identifier
+         */
+        SlotNode(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        @Override
+        public MyNumber evaluate(MyNumber[] values) {
+            MyNumber value = values[slot];
+            if (value == null) {
+                throw new UndefinedIdentifierException(name);
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * An operation with its operands in an array.
+     */
+    static final class OperationNode implements SlotEvaluator {
+
+        /**
+         * The operator of this node.
+         */
+        final Operator operator;
+
+        /**
+         * The operands of this node.
+         */
+        final SlotEvaluator[] operands;
+
+        /**
+         * Constructs and initializes an operation node.
+         *
+         * @param operator the operator of this node
+         * @param operands the operands of this node
+         */
+        OperationNode(Operator operator, SlotEvaluator[] operands) {
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        @Override
+        public MyNumber evaluate(MyNumber[] values) {
+            return OperationExpressionNode.apply(operator, operands.length, i -> operands[i].evaluate(values));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(ArithmeticExpressionNode.LEFT_BRACKET).append(operator);
+            for (SlotEvaluator operand : operands) {
+                sb.append(' ').append(operand);
+            }
+            return sb.append(ArithmeticExpressionNode.RIGHT_BRACKET).toString();
+        }
+    }
+}
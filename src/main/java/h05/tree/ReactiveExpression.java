@@ -0,0 +1,297 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-evaluates an arithmetic expression tree whenever the values of its identifiers change. The processor subscribes to a
+ * publisher of binding updates, each update maps identifiers to their new values, and publishes the results of the
+ * re-evaluations to a single subscriber.
+ *
+ * <p>The expression is only re-evaluated when the subscriber has requested a result and a binding changed since the last
+ * result. Updates arriving while the subscriber has no demand are coalesced, so the next result reflects all of them and no
+ * intermediate result is computed. The first result, computed from the initial bindings, is published on the first demand.
+ * The evaluation itself is incremental, see {@link IncrementalEvaluator}.
+ *
+ * <p>Since the updates are coalesced, the processor requests an unbounded number of updates from its publisher. An
+ * exception thrown by the evaluation terminates the stream with {@link Flow.Subscriber#onError(Throwable)} and cancels the
+ * publisher. Completion of the publisher is forwarded after the result of the last updates has been published.
+ *
+ * <p>Example:
+ * <pre>{@code
+ *    ReactiveExpression expression = new ReactiveExpression(root, Map.of("x", new MyInteger(1)));
+ *    updates.subscribe(expression);
+ *    expression.subscribe(dashboard);
+ * }</pre>
+ */
+public final class ReactiveExpression implements Flow.Processor<Map<String, MyNumber>, MyNumber> {
+
+    /**
+     * The evaluator of the expression, only accessed by the thread draining the updates.
+     */
+    private final IncrementalEvaluator evaluator;
+
+    /**
+     * The updates which have not been applied yet, guarded by itself.
+     */
+    private final Map<String, MyNumber> pending = new HashMap<>();
+
+    /**
+     * The number of results requested by the subscriber but not yet published.
+     */
+    private final AtomicLong requested = new AtomicLong();
+
+    /**
+     * The number of pending drain requests, only the thread incrementing it from zero drains.
+     */
+    private final AtomicInteger work = new AtomicInteger();
+
+    /**
+     * The subscription of the publisher of the updates.
+     */
+    private volatile @Nullable Flow.Subscription upstream;
+
+    /**
+     * The subscriber of the results.
+     */
+    private volatile @Nullable Flow.Subscriber<? super MyNumber> downstream;
+
+    /**
+     * The exception of the publisher of the updates.
+     */
+    private volatile @Nullable Throwable error;
+
+    /**
+     * Whether the publisher of the updates has completed.
+     */
+    private volatile boolean done;
+
+    /**
+     * Whether the subscriber has cancelled its subscription.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Whether a binding changed since the last result, only accessed by the thread draining the updates.
+     */
+    private boolean changed = true;
+
+    /**
+     * Whether the subscriber has been terminated, only accessed by the thread draining the updates.
+     */
+    private boolean terminated;
+
+    /**
+     * Constructs and initializes a reactive expression without initial bindings.
+     *
+     * @param root the root of the arithmetic expression tree
+     *
+     * @throws NullPointerException if the root is {@code null}
+     */
+    public ReactiveExpression(ArithmeticExpressionNode root) {
+        this(root, Map.of());
+    }
+
+    /**
+     * Constructs and initializes a reactive expression with the given initial bindings.
+     *
+     * @param root        the root of the arithmetic expression tree
+     * @param identifiers the initial values of the identifiers
+     *
+     * @throws NullPointerException if the root or the identifiers are {@code null}
+     */
+    public ReactiveExpression(ArithmeticExpressionNode root, Map<String, MyNumber> identifiers) {
+        this.evaluator = new IncrementalEvaluator(root, identifiers);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super MyNumber> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber null");
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("Only one subscriber is supported"));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription());
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription null");
+        synchronized (this) {
+            if (upstream != null || cancelled) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Map<String, MyNumber> item) {
+        Objects.requireNonNull(item, "item null");
+        synchronized (pending) {
+            pending.putAll(item);
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = Objects.requireNonNull(throwable, "throwable null");
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * Applies the pending updates and publishes results while the subscriber has demand. Only one thread drains at a time,
+     * calls by other threads in the meantime make it loop again.
+     */
+    private void drain() {
+        if (work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super MyNumber> subscriber = downstream;
+            if (subscriber != null) {
+                drainLoop(subscriber);
+            }
+            missed = work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Applies the pending updates and publishes results to the given subscriber while it has demand.
+     *
+     * @param subscriber the subscriber of the results
+     */
+    private void drainLoop(Flow.Subscriber<? super MyNumber> subscriber) {
+        while (!terminated) {
+            if (cancelled) {
+                terminated = true;
+                return;
+            }
+            Throwable throwable = error;
+            if (throwable != null) {
+                terminated = true;
+                subscriber.onError(throwable);
+                return;
+            }
+            boolean completed = done;
+            applyUpdates();
+            if (changed && requested.get() > 0) {
+                changed = false;
+                MyNumber result;
+                try {
+                    result = evaluator.evaluate();
+                } catch (RuntimeException e) {
+                    terminated = true;
+                    cancelUpstream();
+                    subscriber.onError(e);
+                    return;
+                }
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                subscriber.onNext(result);
+            } else if (completed && !changed) {
+                terminated = true;
+                subscriber.onComplete();
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies the pending updates to the evaluator and records whether a binding changed.
+     */
+    private void applyUpdates() {
+        Map<String, MyNumber> updates;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            updates = new HashMap<>(pending);
+            pending.clear();
+        }
+        for (Map.Entry<String, MyNumber> update : updates.entrySet()) {
+            // The same instance cannot change the result, see IncrementalEvaluator#set
+            if (update.getValue() == null || evaluator.get(update.getKey()) != update.getValue()) {
+                evaluator.set(update.getKey(), update.getValue());
+                changed = true;
+            }
+        }
+    }
+
+    /**
+     * Cancels the subscription of the publisher of the updates.
+     */
+    private void cancelUpstream() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            cancelled = true;
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * The subscription of the subscriber of the results.
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request: " + n);
+                Flow.Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+                return;
+            }
+            requested.accumulateAndGet(n, (current, added) -> {
+                long sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelUpstream();
+            drain();
+        }
+    }
+}
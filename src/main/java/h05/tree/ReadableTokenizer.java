@@ -0,0 +1,348 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import h05.math.NumberScanner;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A tokenizer which reads the expression from a {@link Readable} through a fixed size character buffer. Brackets and
+ * whitespace separate tokens.
+ *
+ * <p>The buffer only holds the unread characters and the current token, so it only grows if a single token does not fit into
+ * it. Operators and numbers are recognized directly in the buffer, strings are only created for identifiers, for numbers which
+ * are not parsed before the buffer is refilled and on demand by {@link #getText()}.
+ */
+final class ReadableTokenizer implements ExpressionTokenizer {
+
+    /**
+     * The source of the characters.
+     */
+    private final Readable source;
+
+    /**
+     * The buffer containing the current token and the unread characters.
+     */
+    private char[] buffer;
+
+    /**
+     * The character sequence view of the whole buffer.
+     */
+    private CharBuffer window;
+
+    /**
+     * The index of the next unread character in the buffer.
+     */
+    private int position;
+
+    /**
+     * The index after the last valid character in the buffer.
+     */
+    private int limit;
+
+    /**
+     * {@code true} if the source has no more characters.
+     */
+    private boolean exhausted;
+
+    /**
+     * The type of the current token or {@code null} if there is no current token.
+     */
+    private @Nullable Token token;
+
+    /**
+     * The index of the first character of the current token in the buffer.
+     */
+    private int tokenStart;
+
+    /**
+     * The index after the last character of the current token in the buffer.
+     */
+    private int tokenEnd;
+
+    /**
+     * The string representation of the current token if it has already been created.
+     */
+    private @Nullable String text;
+
+    /**
+     * The operator of the current token.
+     */
+    private @Nullable Operator operator;
+
+    /**
+     * The number of the current token if it has already been parsed.
+     */
+    private @Nullable MyNumber number;
+
+    /**
+     * Constructs and initializes a tokenizer for the given source.
+     *
+     * @param source     the source of the characters
+     * @param bufferSize the initial size of the character buffer
+     *
+     * @throws IllegalArgumentException if the buffer size is not positive
+     * @throws NullPointerException     if the source is {@code null}
+     */
+    ReadableTokenizer(Readable source, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size <= 0");
+        }
+        this.source = Objects.requireNonNull(source, "source null");
+        this.buffer = new char[bufferSize];
+        this.window = CharBuffer.wrap(buffer);
+    }
+
+    /**
+     * Returns a source which incrementally decodes the remaining bytes of the given buffer. The position of the given buffer is
+     * not modified.
+     *
+     * @param bytes   the bytes to decode
+     * @param charset the charset of the bytes
+     *
+     * @return a source which incrementally decodes the remaining bytes of the given buffer
+     */
+    static Readable decode(ByteBuffer bytes, Charset charset) {
+        return new DecodingReadable(bytes.duplicate(), charset);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            while (position < limit && isWhitespace(buffer[position])) {
+                position++;
+            }
+            if (position < limit) {
+                return true;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        token = null;
+        text = null;
+        operator = null;
+        number = null;
+        tokenStart = position;
+
+        char c = buffer[position];
+        if (c == '(' || c == ')') {
+            tokenEnd = ++position;
+            token = c == '(' ? Token.LEFT_BRACKET : Token.RIGHT_BRACKET;
+            return token;
+        }
+
+        int index = position;
+        while (true) {
+            while (index < limit && !isDelimiter(buffer[index])) {
+                index++;
+            }
+            if (index < limit) {
+                break;
+            }
+            // The token may continue after the buffer, the buffer is compacted so the token starts at index 0
+            int length = index - tokenStart;
+            boolean filled = fill();
+            index = tokenStart + length;
+            if (!filled) {
+                break;
+            }
+        }
+        tokenEnd = index;
+        position = index;
+
+        operator = Operator.findOperator(window, tokenStart, tokenEnd);
+        if (operator != null) {
+            token = Token.OPERATOR;
+            return token;
+        }
+        // The number is parsed on demand, parsing may fail for ratios with a zero denominator
+        if (NumberScanner.isNumber(window, tokenStart, tokenEnd)) {
+            token = Token.NUMBER;
+            return token;
+        }
+        text = new String(buffer, tokenStart, tokenEnd - tokenStart);
+        token = Token.IDENTIFIER;
+        return token;
+    }
+
+    @Override
+    public @Nullable Operator getOperator() {
+        return operator;
+    }
+
+    @Override
+    public @Nullable MyNumber getNumber() {
+        if (number == null && token == Token.NUMBER) {
+            number = text != null
+                ? NumberScanner.parseNumber(text, 0, text.length())
+                : NumberScanner.parseNumber(window, tokenStart, tokenEnd);
+        }
+        return number;
+    }
+
+    @Override
+    public String getText() {
+        if (token == null) {
+            throw new IllegalStateException("no current token");
+        }
+        return switch (token) {
+            case LEFT_BRACKET -> ArithmeticExpressionNode.LEFT_BRACKET;
+            case RIGHT_BRACKET -> ArithmeticExpressionNode.RIGHT_BRACKET;
+            case OPERATOR -> Objects.requireNonNull(operator).getSymbol();
+            default -> {
+                if (text == null) {
+                    text = new String(buffer, tokenStart, tokenEnd - tokenStart);
+                }
+                yield text;
+            }
+        };
+    }
+
+    /**
+     * Reads more characters from the source. The unread characters are moved to the start of the buffer before, a token which
+     * has already been returned by {@link #next()} is kept as a string if it is needed later.
+     *
+     * @return {@code true} if at least one character has been read, {@code false} if the source has no more characters
+     */
+    private boolean fill() {
+        if (exhausted) {
+            return false;
+        }
+        if (token == Token.NUMBER && text == null) {
+            text = new String(buffer, tokenStart, tokenEnd - tokenStart);
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            tokenStart -= position;
+            tokenEnd -= position;
+            position = 0;
+        }
+
+        try {
+            while (true) {
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    window = CharBuffer.wrap(buffer);
+                }
+                int read = source.read(CharBuffer.wrap(buffer, limit, buffer.length - limit));
+                if (read < 0) {
+                    exhausted = true;
+                    return false;
+                }
+                if (read > 0) {
+                    limit += read;
+                    return true;
+                }
+                // The remaining space was too small, e.g. for a surrogate pair
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                window = CharBuffer.wrap(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given character is a whitespace character as defined by {@code \s} of regular expressions.
+     *
+     * @param c the character to check
+     *
+     * @return {@code true} if the given character is a whitespace character
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Returns {@code true} if the given character ends a token.
+     *
+     * @param c the character to check
+     *
+     * @return {@code true} if the given character ends a token
+     */
+    private static boolean isDelimiter(char c) {
+        return isWhitespace(c) || c == '(' || c == ')';
+    }
+
+    /**
+     * A source which incrementally decodes bytes. Malformed and unmappable input is replaced.
+     */
+    private static final class DecodingReadable implements Readable {
+
+        /**
+         * The bytes to decode.
+         */
+        private final ByteBuffer bytes;
+
+        /**
+         * The decoder of the charset.
+         */
+        private final CharsetDecoder decoder;
+
+        /**
+         * {@code true} if all bytes have been decoded and the decoder is flushed.
+         */
+        private boolean flushing;
+
+        /**
+         * {@code true} if the decoder has been flushed completely.
+         */
+        private boolean done;
+
+        /**
+         * Constructs and initializes a source which decodes the given bytes.
+         *
+         * @param bytes   the bytes to decode
+         * @param charset the charset of the bytes
+         */
+        DecodingReadable(ByteBuffer bytes, Charset charset) {
+            this.bytes = bytes;
+            this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(CharBuffer target) throws CharacterCodingException {
+            if (done) {
+                return -1;
+            }
+            int start = target.position();
+            CoderResult result = CoderResult.UNDERFLOW;
+            if (!flushing) {
+                result = decoder.decode(bytes, target, true);
+                flushing = result.isUnderflow();
+            }
+            if (flushing) {
+                result = decoder.flush(target);
+                done = result.isUnderflow();
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            int read = target.position() - start;
+            return read == 0 && done ? -1 : read;
+        }
+    }
+}
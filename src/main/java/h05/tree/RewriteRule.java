@@ -0,0 +1,320 @@
+package h05.tree;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A rewrite rule of an {@link ExpressionRewriter}. A rule consists of a pattern and a replacement, both written in Racket
+ * notation. Every identifier of a pattern is a variable which matches any subtree, a variable occurring multiple times must
+ * match structurally equal subtrees. Literals only match literals with an equal number, e.g. the pattern literal 2 does not
+ * match the real 2.0. Operations match operations with the same operator and the same number of operands.
+ *
+ * <p>The replacement is either a template whose variables are substituted by the matched subtrees, or a function which
+ * computes the replacement from the matched subtrees. An optional guard restricts the matches to which the rule is applied.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (expt x 2) is rewritten to (* x x) if x is an operand</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    RewriteRule rule = RewriteRule.of("square", "(expt x 2)", "(* x x)",
+ *        bindings -> bindings.get("x").isOperand());
+ * }</pre>
+ */
+public final class RewriteRule {
+
+    /**
+     * The name of this rule.
+     */
+    private final String name;
+
+    /**
+     * The pattern of this rule.
+     */
+    private final ArithmeticExpressionNode pattern;
+
+    /**
+     * Computes the replacement of a match or returns {@code null} if the match should not be rewritten.
+     */
+    private final Function<Map<String, ArithmeticExpressionNode>, @Nullable ArithmeticExpressionNode> replacement;
+
+    /**
+     * Constructs and initializes a rewrite rule.
+     *
+     * @param name        the name of the rule
+     * @param pattern     the pattern of the rule
+     * @param replacement computes the replacement of a match or returns {@code null} if the match should not be rewritten
+     */
+    private RewriteRule(
+        String name,
+        ArithmeticExpressionNode pattern,
+        Function<Map<String, ArithmeticExpressionNode>, @Nullable ArithmeticExpressionNode> replacement) {
+        this.name = name;
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Creates a rule which rewrites every match of the pattern to the replacement template.
+     *
+     * @param name        the name of the rule
+     * @param pattern     the pattern in Racket notation
+     * @param replacement the replacement template in Racket notation
+     *
+     * @return the created rule
+     *
+     * @throws IllegalArgumentException if the replacement contains a variable which does not occur in the pattern
+     * @throws NullPointerException     if any argument is {@code null}
+     * @throws RuntimeException         if the pattern or the replacement is not a valid expression
+     */
+    public static RewriteRule of(String name, String pattern, String replacement) {
+        return of(name, pattern, replacement, bindings -> true);
+    }
+
+    /**
+     * Creates a rule which rewrites every match of the pattern accepted by the guard to the replacement template.
+     *
+     * @param name        the name of the rule
+     * @param pattern     the pattern in Racket notation
+     * @param replacement the replacement template in Racket notation
+     * @param guard       accepts the variable bindings of the matches which should be rewritten
+     *
+     * @return the created rule
+     *
+     * @throws IllegalArgumentException if the replacement contains a variable which does not occur in the pattern
+     * @throws NullPointerException     if any argument is {@code null}
+     * @throws RuntimeException         if the pattern or the replacement is not a valid expression
+     */
+    public static RewriteRule of(
+        String name,
+        String pattern,
+        String replacement,
+        Predicate<Map<String, ArithmeticExpressionNode>> guard) {
+        Objects.requireNonNull(replacement, "replacement null");
+        Objects.requireNonNull(guard, "guard null");
+        ArithmeticExpressionNode patternNode = parse(pattern);
+        ArithmeticExpressionNode template = parse(replacement);
+        Map<String, ArithmeticExpressionNode> variables = new HashMap<>();
+        collectVariables(patternNode, variables);
+        checkVariables(template, variables);
+        return new RewriteRule(
+            Objects.requireNonNull(name, "name null"),
+            patternNode,
+            bindings -> guard.test(bindings) ? substitute(template, bindings) : null
+        );
+    }
+
+    /**
+     * Creates a rule which rewrites the matches of the pattern to the result of the replacement function.
+     *
+     * @param name        the name of the rule
+     * @param pattern     the pattern in Racket notation
+     * @param replacement computes the replacement from the variable bindings of a match or returns {@code null} if the match
+     *                    should not be rewritten
+     *
+     * @return the created rule
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws RuntimeException     if the pattern is not a valid expression
+     */
+    public static RewriteRule of(
+        String name,
+        String pattern,
+        Function<Map<String, ArithmeticExpressionNode>, @Nullable ArithmeticExpressionNode> replacement) {
+        return new RewriteRule(
+            Objects.requireNonNull(name, "name null"),
+            parse(pattern),
+            Objects.requireNonNull(replacement, "replacement null")
+        );
+    }
+
+    /**
+     * Returns the name of this rule.
+     *
+     * @return the name of this rule
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the replacement of the given node if it matches this rule.
+     *
+     * @param node the node to rewrite
+     *
+     * @return the replacement or {@code null} if the node does not match or should not be rewritten
+     */
+    @Nullable ArithmeticExpressionNode apply(ArithmeticExpressionNode node) {
+        Map<String, ArithmeticExpressionNode> bindings = new HashMap<>();
+        if (!match(pattern, node, bindings)) {
+            return null;
+        }
+        return replacement.apply(bindings);
+    }
+
+    /**
+     * Returns {@code true} if the given trees are structurally equal, i.e. they have the same operators, identifiers and
+     * equal literals in the same order.
+     *
+     * @param first  the first tree
+     * @param second the second tree
+     *
+     * @return {@code true} if the given trees are structurally equal
+     */
+    static boolean structurallyEquals(ArithmeticExpressionNode first, ArithmeticExpressionNode second) {
+        if (first == second) {
+            return true;
+        }
+        if (first instanceof LiteralExpressionNode literal) {
+            return second instanceof LiteralExpressionNode other && literal.getValue().equals(other.getValue());
+        }
+        if (first instanceof IdentifierExpressionNode identifier) {
+            return second instanceof IdentifierExpressionNode other && identifier.getValue().equals(other.getValue());
+        }
+        if (!(first instanceof OperationExpressionNode operation)
+            || !(second instanceof OperationExpressionNode other)
+            || operation.getOperator() != other.getOperator()) {
+            return false;
+        }
+        ListItem<ArithmeticExpressionNode> operand = operation.getOperands();
+        ListItem<ArithmeticExpressionNode> otherOperand = other.getOperands();
+        while (operand != null && otherOperand != null) {
+            if (!structurallyEquals(operand.key, otherOperand.key)) {
+                return false;
+            }
+            operand = operand.next;
+            otherOperand = otherOperand.next;
+        }
+        return operand == null && otherOperand == null;
+    }
+
+    /**
+     * Matches the given node against the given pattern and binds the variables of the pattern.
+     *
+     * @param pattern  the pattern
+     * @param node     the node to match
+     * @param bindings the variable bindings so far
+     *
+     * @return {@code true} if the node matches the pattern
+     */
+    private static boolean match(
+        ArithmeticExpressionNode pattern,
+        ArithmeticExpressionNode node,
+        Map<String, ArithmeticExpressionNode> bindings) {
+        if (pattern instanceof IdentifierExpressionNode variable) {
+            ArithmeticExpressionNode bound = bindings.putIfAbsent(variable.getValue(), node);
+            return bound == null || structurallyEquals(bound, node);
+        }
+        if (pattern instanceof LiteralExpressionNode) {
+            return structurallyEquals(pattern, node);
+        }
+        if (!(pattern instanceof OperationExpressionNode operation)
+            || !(node instanceof OperationExpressionNode other)
+            || operation.getOperator() != other.getOperator()) {
+            return false;
+        }
+        ListItem<ArithmeticExpressionNode> operand = operation.getOperands();
+        ListItem<ArithmeticExpressionNode> otherOperand = other.getOperands();
+        while (operand != null && otherOperand != null) {
+            if (!match(operand.key, otherOperand.key, bindings)) {
+                return false;
+            }
+            operand = operand.next;
+            otherOperand = otherOperand.next;
+        }
+        return operand == null && otherOperand == null;
+    }
+
+    /**
+     * Substitutes the variables of the given template by their bindings.
+     *
+     * @param template the template
+     * @param bindings the variable bindings
+     *
+     * @return the instantiated template
+     */
+    private static ArithmeticExpressionNode substitute(
+        ArithmeticExpressionNode template,
+        Map<String, ArithmeticExpressionNode> bindings) {
+        if (template instanceof IdentifierExpressionNode variable) {
+            return bindings.get(variable.getValue());
+        }
+        if (!(template instanceof OperationExpressionNode operation)) {
+            return template;
+        }
+        ListItem<ArithmeticExpressionNode> head = null;
+        ListItem<ArithmeticExpressionNode> tail = null;
+        for (ListItem<ArithmeticExpressionNode> operand = operation.getOperands(); operand != null;
+             operand = operand.next) {
+            ListItem<ArithmeticExpressionNode> item = new ListItem<>();
+            item.key = substitute(operand.key, bindings);
+            if (head == null) {
+                head = item;
+            } else {
+                tail.next = item;
+            }
+            tail = item;
+        }
+        return new OperationExpressionNode(operation.getOperator(), head);
+    }
+
+    /**
+     * Collects the variables of the given pattern.
+     *
+     * @param pattern   the pattern
+     * @param variables the collected variables
+     */
+    private static void collectVariables(ArithmeticExpressionNode pattern, Map<String, ArithmeticExpressionNode> variables) {
+        if (pattern instanceof IdentifierExpressionNode variable) {
+            variables.put(variable.getValue(), variable);
+        } else if (pattern instanceof OperationExpressionNode operation) {
+            for (ListItem<ArithmeticExpressionNode> operand = operation.getOperands(); operand != null;
+                 operand = operand.next) {
+                collectVariables(operand.key, variables);
+            }
+        }
+    }
+
+    /**
+     * Checks that every variable of the given template occurs in the pattern.
+     *
+     * @param template  the template
+     * @param variables the variables of the pattern
+     *
+     * @throws IllegalArgumentException if the template contains a variable which does not occur in the pattern
+     */
+    private static void checkVariables(ArithmeticExpressionNode template, Map<String, ArithmeticExpressionNode> variables) {
+        if (template instanceof IdentifierExpressionNode variable) {
+            if (!variables.containsKey(variable.getValue())) {
+                throw new IllegalArgumentException("Unbound variable: " + variable.getValue());
+            }
+        } else if (template instanceof OperationExpressionNode operation) {
+            for (ListItem<ArithmeticExpressionNode> operand = operation.getOperands(); operand != null;
+                 operand = operand.next) {
+                checkVariables(operand.key, variables);
+            }
+        }
+    }
+
+    /**
+     * Parses the given pattern or template.
+     *
+     * @param expression the expression in Racket notation
+     *
+     * @return the root of the parsed expression
+     */
+    private static ArithmeticExpressionNode parse(String expression) {
+        return ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(Objects.requireNonNull(expression)));
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + pattern;
+    }
+}
@@ -0,0 +1,22 @@
+package h05.tree;
+
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyNumber;
+
+/**
+ * Evaluates an arithmetic expression whose identifiers have been resolved to slots, see {@link PreparedExpression}.
+ */
+@FunctionalInterface
+public interface SlotEvaluator {
+
+    /**
+     * Evaluates the arithmetic expression with the given values indexed by slot.
+     *
+     * @param values the values of the identifiers indexed by slot
+     *
+     * @return the result of the arithmetic expression
+     *
+     * @throws UndefinedIdentifierException if the value of a visited identifier is {@code null}
+     */
+    MyNumber evaluate(MyNumber[] values);
+}
@@ -0,0 +1,555 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A spreadsheet of named formulas and inputs. A formula is an arithmetic expression tree whose identifiers refer to inputs or
+ * to the results of other formulas, e.g. the formula {@code total} with the expression (* price count) depends on the inputs
+ * or formulas {@code price} and {@code count}. Cyclic dependencies are rejected when a formula is defined.
+ *
+ * <p>Changing an input or a formula only invalidates the formulas depending on it directly or transitively. The invalidated
+ * formulas are recomputed lazily in topological order: all formulas whose dependencies are up-to-date form a wavefront and
+ * are evaluated in parallel on a {@link ForkJoinPool} before the next wavefront starts.
+ *
+ * <p>The value of a formula is the same as {@link ArithmeticExpressionNode#evaluate(Map)} with the values of all inputs and
+ * formulas. If the evaluation of a formula fails, every formula using its value fails with the same exception. A spreadsheet
+ * engine may only be used by one thread at a time, the parallelism is internal to the recalculation.
+ *
+ * <p>Example:
+ * <pre>{@code
+ *    SpreadsheetEngine engine = new SpreadsheetEngine();
+ *    engine.set("price", new MyInteger(3));
+ *    engine.define("total", ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(* price count)")));
+ *    engine.set("count", new MyInteger(4));
+ *    MyNumber total = engine.get("total"); // 12
+ * }</pre>
+ */
+public final class SpreadsheetEngine {
+
+    /**
+     * The maximum number of formulas of a wavefront which are evaluated by a single task.
+     */
+    private static final int THRESHOLD = 16;
+
+    /**
+     * The pool evaluating the formulas of a wavefront.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The formulas by their names.
+     */
+    private final Map<String, Formula> formulas = new HashMap<>();
+
+    /**
+     * The inputs by their names.
+     */
+    private final Map<String, MyNumber> inputs = new HashMap<>();
+
+    /**
+     * The names of the formulas referring to a name, which may be an input, a formula or undefined.
+     */
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+
+    /**
+     * The formulas which have to be recomputed.
+     */
+    private final Set<Formula> invalid = new LinkedHashSet<>();
+
+    /**
+     * The values of the inputs and formulas as seen by the evaluation of a formula.
+     */
+    private final Map<String, MyNumber> scope = new Scope();
+
+    /**
+     * Constructs and initializes an empty spreadsheet engine using the common pool.
+     */
+    public SpreadsheetEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs and initializes an empty spreadsheet engine using the given pool.
+     *
+     * @param pool the pool evaluating independent formulas
+     *
+     * @throws NullPointerException if the pool is {@code null}
+     */
+    public SpreadsheetEngine(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool, "pool null");
+    }
+
+    /**
+     * Defines or replaces the formula with the given name.
+     *
+     * @param name the name of the formula
+     * @param root the root of the arithmetic expression tree of the formula
+     *
+     * @return this engine
+     *
+     * @throws IllegalArgumentException    if the name is an input or the formula would create a cyclic dependency
+     * @throws IllegalIdentifierExceptions if the name is not a valid or a predefined identifier
+     * @throws NullPointerException        if the name or the root is {@code null}
+     */
+    public SpreadsheetEngine define(String name, ArithmeticExpressionNode root) {
+        checkName(name);
+        Objects.requireNonNull(root, "root null");
+        if (inputs.containsKey(name)) {
+            throw new IllegalArgumentException("Input already defined: " + name);
+        }
+        Set<String> references = new LinkedHashSet<>();
+        collectReferences(root, references);
+        List<String> cycle = findCycle(name, references);
+        if (cycle != null) {
+            throw new IllegalArgumentException("Cyclic dependency: " + String.join(" -> ", cycle));
+        }
+
+        Formula formula = new Formula(name, root, references);
+        Formula previous = formulas.put(name, formula);
+        if (previous != null) {
+            unlink(name, previous);
+            invalid.remove(previous);
+        }
+        for (String reference : references) {
+            dependents.computeIfAbsent(reference, key -> new HashSet<>()).add(name);
+        }
+        invalid.add(formula);
+        invalidateDependents(name);
+        return this;
+    }
+
+    /**
+     * Sets the input with the given name to the given value.
+     *
+     * @param name  the name of the input
+     * @param value the value of the input
+     *
+     * @return this engine
+     *
+     * @throws IllegalArgumentException    if the name is a formula
+     * @throws IllegalIdentifierExceptions if the name is not a valid or a predefined identifier
+     * @throws NullPointerException        if the name is {@code null}
+     */
+    public SpreadsheetEngine set(String name, @Nullable MyNumber value) {
+        checkName(name);
+        if (formulas.containsKey(name)) {
+            throw new IllegalArgumentException("Formula already defined: " + name);
+        }
+        boolean defined = inputs.containsKey(name);
+        MyNumber previous = inputs.put(name, value);
+        // The same instance cannot change any result, see IncrementalEvaluator#set
+        if (!defined || previous != value) {
+            invalidateDependents(name);
+        }
+        return this;
+    }
+
+    /**
+     * Removes the input or formula with the given name. Formulas referring to it become undefined until it is defined again.
+     *
+     * @param name the name of the input or formula
+     *
+     * @return this engine
+     *
+     * @throws NullPointerException if the name is {@code null}
+     */
+    public SpreadsheetEngine remove(String name) {
+        Objects.requireNonNull(name, "name null");
+        Formula formula = formulas.remove(name);
+        if (formula != null) {
+            unlink(name, formula);
+            invalid.remove(formula);
+        } else if (inputs.containsKey(name)) {
+            inputs.remove(name);
+        } else {
+            return this;
+        }
+        invalidateDependents(name);
+        return this;
+    }
+
+    /**
+     * Returns the value of the input or formula with the given name. Pending recomputations are performed first.
+     *
+     * @param name the name of the input or formula
+     *
+     * @return the value of the input or formula
+     *
+     * @throws UndefinedIdentifierException if there is no input or formula with the given name
+     * @throws RuntimeException             if the evaluation of the formula failed
+     */
+    public MyNumber get(String name) {
+        Objects.requireNonNull(name, "name null");
+        recalculate();
+        return scope.get(name);
+    }
+
+    /**
+     * Returns the names of the formulas.
+     *
+     * @return the names of the formulas
+     */
+    public Set<String> getFormulas() {
+        return Set.copyOf(formulas.keySet());
+    }
+
+    /**
+     * Returns the names the formula with the given name refers to in the order of their first occurrence.
+     *
+     * @param name the name of the formula
+     *
+     * @return the names the formula refers to
+     *
+     * @throws UndefinedIdentifierException if there is no formula with the given name
+     */
+    public Set<String> getReferences(String name) {
+        Formula formula = formulas.get(name);
+        if (formula == null) {
+            throw new UndefinedIdentifierException(name);
+        }
+        return formula.references;
+    }
+
+    /**
+     * Recomputes all invalidated formulas in topological order. Formulas of the same wavefront are evaluated in parallel.
+     *
+     * @return the number of recomputed formulas
+     */
+    public int recalculate() {
+        if (invalid.isEmpty()) {
+            return 0;
+        }
+        // Kahn's algorithm restricted to the invalid formulas, valid dependencies are already up-to-date
+        Map<Formula, Integer> pending = new HashMap<>();
+        for (Formula formula : invalid) {
+            int count = 0;
+            for (String reference : formula.references) {
+                Formula dependency = formulas.get(reference);
+                if (dependency != null && invalid.contains(dependency)) {
+                    count++;
+                }
+            }
+            pending.put(formula, count);
+        }
+        List<Formula> wavefront = new ArrayList<>();
+        pending.forEach((formula, count) -> {
+            if (count == 0) {
+                wavefront.add(formula);
+            }
+        });
+
+        int recomputed = 0;
+        while (!wavefront.isEmpty()) {
+            if (wavefront.size() <= THRESHOLD) {
+                wavefront.forEach(Formula::evaluate);
+            } else {
+                pool.invoke(new Wavefront(wavefront, 0, wavefront.size()));
+            }
+            recomputed += wavefront.size();
+            List<Formula> next = new ArrayList<>();
+            for (Formula formula : wavefront) {
+                invalid.remove(formula);
+                for (String dependent : dependents.getOrDefault(formula.name, Set.of())) {
+                    Formula successor = formulas.get(dependent);
+                    if (pending.merge(successor, -1, Integer::sum) == 0) {
+                        next.add(successor);
+                    }
+                }
+            }
+            wavefront.clear();
+            wavefront.addAll(next);
+        }
+        return recomputed;
+    }
+
+    /**
+     * Checks that the given name can be used for an input or a formula.
+     *
+     * @param name the name to check
+     *
+     * @throws IllegalIdentifierExceptions if the name is not a valid or a predefined identifier
+     * @throws NullPointerException        if the name is {@code null}
+     */
+    private static void checkName(String name) {
+        Objects.requireNonNull(name, "name null");
+        if (!IdentifierExpressionNode.isIdentifier(name) || Identifier.isIdentifier(name)) {
+            throw new IllegalIdentifierExceptions(name);
+        }
+    }
+
+    /**
+     * Collects the names of the identifiers of the given tree except the predefined ones.
+     *
+     * @param node       the node to visit
+     * @param references the collected names
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private static void collectReferences(ArithmeticExpressionNode node, Set<String> references) {
+        if (node instanceof OperationExpressionNode operationNode) {
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                collectReferences(operand.key, references);
+            }
+        } else if (node instanceof IdentifierExpressionNode identifierNode) {
+            if (!Identifier.isIdentifier(identifierNode.getValue())) {
+                references.add(identifierNode.getValue());
+            }
+        } else if (!(node instanceof LiteralExpressionNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+    }
+
+    /**
+     * Returns the cycle of formula references a formula with the given name and references would create. A reference closes
+     * a cycle if it depends directly or transitively on the name, so only the formulas depending on the name are visited,
+     * which are none for a new name.
+     *
+     * @param name       the name of the formula
+     * @param references the names the formula refers to
+     *
+     * @return the names on the cycle starting and ending with the name or {@code null} if there is no cycle
+     */
+    private @Nullable List<String> findCycle(String name, Set<String> references) {
+        // The dependent through which each visited name has been reached
+        Map<String, String> parents = new HashMap<>();
+        parents.put(name, name);
+        List<String> stack = new ArrayList<>(List.of(name));
+        while (!stack.isEmpty()) {
+            String current = stack.remove(stack.size() - 1);
+            for (String dependent : dependents.getOrDefault(current, Set.of())) {
+                if (parents.putIfAbsent(dependent, current) == null) {
+                    stack.add(dependent);
+                }
+            }
+        }
+        for (String reference : references) {
+            if (parents.containsKey(reference)) {
+                List<String> cycle = new ArrayList<>(List.of(name));
+                for (String current = reference; !current.equals(name); current = parents.get(current)) {
+                    cycle.add(current);
+                }
+                cycle.add(name);
+                return cycle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the dependency edges of the given formula.
+     *
+     * @param name    the name of the formula
+     * @param formula the formula
+     */
+    private void unlink(String name, Formula formula) {
+        for (String reference : formula.references) {
+            Set<String> names = dependents.get(reference);
+            names.remove(name);
+            if (names.isEmpty()) {
+                dependents.remove(reference);
+            }
+        }
+    }
+
+    /**
+     * Invalidates all formulas depending directly or transitively on the given name.
+     *
+     * @param name the name whose dependents are invalidated
+     */
+    private void invalidateDependents(String name) {
+        List<String> stack = new ArrayList<>(List.of(name));
+        while (!stack.isEmpty()) {
+            String current = stack.remove(stack.size() - 1);
+            for (String dependent : dependents.getOrDefault(current, Set.of())) {
+                if (invalid.add(formulas.get(dependent))) {
+                    stack.add(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * A formula and its last result.
+     */
+    private final class Formula {
+
+        /**
+         * The name of this formula.
+         */
+        private final String name;
+
+        /**
+         * The root of the arithmetic expression tree of this formula.
+         */
+        private final ArithmeticExpressionNode root;
+
+        /**
+         * The names this formula refers to.
+         */
+        private final Set<String> references;
+
+        /**
+         * The value of the last evaluation or {@code null} if it failed.
+         */
+        private @Nullable MyNumber value;
+
+        /**
+         * The exception of the last evaluation or {@code null} if it succeeded.
+         */
+        private @Nullable RuntimeException exception;
+
+        /**
+         * Constructs and initializes a formula.
+         *
+         * @param name       the name of the formula
+         * @param root       the root of the arithmetic expression tree
+         * @param references the names the formula refers to
+         */
+        Formula(String name, ArithmeticExpressionNode root, Set<String> references) {
+            this.name = name;
+            this.root = root;
+            this.references = Collections.unmodifiableSet(references);
+        }
+
+        /**
+         * Evaluates this formula with the current values of the inputs and formulas.
+         */
+        void evaluate() {
+            try {
+                value = root.evaluate(scope);
+                exception = null;
+            } catch (RuntimeException e) {
+                value = null;
+                exception = e;
+            }
+        }
+    }
+
+    /**
+     * The values of the inputs and formulas. Looking up a formula whose evaluation failed throws its exception, this includes
+     * reading its entry while iterating over the map.
+     */
+    private final class Scope extends AbstractMap<String, MyNumber> {
+
+        @Override
+        public boolean containsKey(Object key) {
+            return formulas.containsKey(key) || inputs.containsKey(key);
+        }
+
+        @Override
+        public MyNumber get(Object key) {
+            Formula formula = formulas.get(key);
+            if (formula == null) {
+                if (!inputs.containsKey(key)) {
+                    throw new UndefinedIdentifierException((String) key);
+                }
+                return inputs.get(key);
+            }
+            if (formula.exception != null) {
+                throw formula.exception;
+            }
+            return formula.value;
+        }
+
+        @Override
+        public int size() {
+            // Inputs and formulas never share a name
+            return inputs.size() + formulas.size();
+        }
+
+        @Override
+        public Set<Entry<String, MyNumber>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public int size() {
+                    return Scope.this.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, MyNumber>> iterator() {
+                    Iterator<String> inputNames = inputs.keySet().iterator();
+                    Iterator<String> formulaNames = formulas.keySet().iterator();
+                    return new Iterator<>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return inputNames.hasNext() || formulaNames.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, MyNumber> next() {
+                            String name = inputNames.hasNext() ? inputNames.next() : formulaNames.next();
+                            return new SimpleImmutableEntry<>(name, get(name));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Evaluates a range of the formulas of a wavefront.
+     */
+    private static final class Wavefront extends RecursiveAction {
+
+        /**
+         * The formulas of the wavefront.
+         */
+        private final List<Formula> formulas;
+
+        /**
+         * The start index of the range (inclusive).
+         */
+        private final int start;
+
+        /**
+         * The end index of the range (exclusive).
+         */
+        private final int end;
+
+        /**
+         * Constructs and initializes a task evaluating the given range of formulas.
+         *
+         * @param formulas the formulas of the wavefront
+         * @param start    the start index of the range (inclusive)
+         * @param end      the end index of the range (exclusive)
+         */
+        Wavefront(List<Formula> formulas, int start, int end) {
+            this.formulas = formulas;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    formulas.get(i).evaluate();
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new Wavefront(formulas, start, middle), new Wavefront(formulas, middle, end));
+        }
+    }
+}
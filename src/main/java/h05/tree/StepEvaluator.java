@@ -0,0 +1,1048 @@
+package h05.tree;
+
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.NumberScanner;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Performs the evaluation steps of an {@link ArithmeticExpressionEvaluator} directly on the tree. A step replaces every
+ * identifier by its value and every innermost operation, i.e. an operation without operations as operands, by a literal of its
+ * value.
+ *
+ * <p>The operations are indexed in pre-order once, together with the operand slot holding them and the number of their
+ * operands which are still operations. The innermost operations of the next step are exactly the operations whose last
+ * operation operand has just been reduced, so every step only visits the reduced operations instead of reconstructing,
+ * scanning and rebuilding the whole expression. The tree is modified in place.
+ *
+ * <p>The tokens of the indexed tree keep their positions, a token removed by a step is only marked as removed in a Fenwick
+ * tree over the positions. The offset of a token in the current expression is the number of live tokens before it, so the
+ * {@link TokenPatch}es of a step are computed without materializing the tokens.
+ *
+ * <p>Every step is recorded by the indices of the reduced operations and their values. The original nodes are kept, so a step
+ * is undone by putting the reduced operations back into their slots and redone by replacing them by the recorded values again.
+ * Both only touch the nodes changed by the step, all other nodes are shared by the states before and after the step.
+ *
+ * <p>The innermost operations of a step are independent of each other. If a pool is given, large steps evaluate them in
+ * parallel, the results and exceptions are the same as for the sequential evaluation in pre-order.
+ *
+ * <p>The steps are defined on the string representation of the expression: every number is replaced by the number parsed from
+ * its string representation. If a number cannot be represented this way or an identifier has no value, the step is performed
+ * on the tokens of the expression to reproduce the exact result or exception.
+ */
+final class StepEvaluator {
+
+    /**
+     * The token which replaces identifiers without a value.
+     */
+    private static final String UNKNOWN_IDENTIFIER = "<unknown!>";
+
+    /**
+     * The initial capacity of the stack of unclosed expressions.
+     */
+    private static final int DEFAULT_DEPTH = 16;
+
+    /**
+     * The maximum number of operations evaluated sequentially by one task.
+     */
+    private static final int THRESHOLD = 256;
+
+    /**
+     * The map of variables and their values.
+     */
+    private final Map<String, MyNumber> identifiers;
+
+    /**
+     * The pool evaluating the innermost operations of a step or {@code null} if they are evaluated sequentially.
+     */
+    private final @Nullable ForkJoinPool pool;
+
+    /**
+     * The current root of the arithmetic expression tree.
+     */
+    private ArithmeticExpressionNode root;
+
+    /**
+     * The nodes of the tree in pre-order or {@code null} if the tree has not been indexed yet.
+     */
+    private ArithmeticExpressionNode @Nullable [] nodes;
+
+    /**
+     * The nodes of the indexed tree in pre-order before the first step.
+     */
+    private ArithmeticExpressionNode[] originals;
+
+    /**
+     * The operand slot holding each node or {@code null} for the root.
+     */
+    private ListItem<ArithmeticExpressionNode>[] slots;
+
+    /**
+     * The index of the parent of each node or {@code -1} for the root.
+     */
+    private int[] parents;
+
+    /**
+     * The operand indices of each operation or {@code null} for operands.
+     */
+    private int[][] operands;
+
+    /**
+     * The number of operands of each operation which are still operations.
+     */
+    private int[] pending;
+
+    /**
+     * The position of the first token of each node in the tokens of the indexed tree.
+     */
+    private int[] starts;
+
+    /**
+     * The position of the closing bracket of each operation in the tokens of the indexed tree.
+     */
+    private int[] ends;
+
+    /**
+     * The Fenwick tree counting the live tokens of the indexed tree.
+     */
+    private int[] live;
+
+    /**
+     * The values of the operands and of the reduced operations.
+     */
+    private MyNumber[] values;
+
+    /**
+     * The innermost operations in pre-order.
+     */
+    private int[] frontier;
+
+    /**
+     * The number of innermost operations.
+     */
+    private int frontierSize;
+
+    /**
+     * Whether the operands have been replaced by the numbers parsed from their string representation.
+     */
+    private boolean resolved;
+
+    /**
+     * The performed steps followed by the undone steps which can be redone.
+     */
+    private final List<Step> history = new ArrayList<>();
+
+    /**
+     * The number of performed steps in the history.
+     */
+    private int performed;
+
+    /**
+     * Constructs and initializes a step evaluator. The given tree is modified by the steps.
+     *
+     * @param root        the root of the arithmetic expression tree to evaluate
+     * @param identifiers the map of variables and their values
+     * @param pool        the pool evaluating the innermost operations of a step or {@code null} if they are evaluated
+     *                    sequentially
+     */
+    StepEvaluator(ArithmeticExpressionNode root, Map<String, MyNumber> identifiers, @Nullable ForkJoinPool pool) {
+        this.root = root;
+        this.identifiers = identifiers;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the current root of the arithmetic expression tree.
+     *
+     * @return the current root of the arithmetic expression tree
+     */
+    ArithmeticExpressionNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Performs the next evaluation step.
+     *
+     * @return the tokens of the expression after the step
+     *
+     * @see ArithmeticExpressionEvaluator#nextStepTokens()
+     */
+    TokenBuffer nextStep() {
+        // No operation needed on a literal expression
+        if (root instanceof LiteralExpressionNode) {
+            return ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+        }
+        if (!step(null)) {
+            return nextStepByTokens();
+        }
+        return ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+    }
+
+    /**
+     * Performs the next evaluation step and returns the changes of the tokens.
+     *
+     * @return the patches of the step sorted by their offsets
+     *
+     * @see ArithmeticExpressionEvaluator#nextStepPatches()
+     */
+    List<TokenPatch> nextStepPatches() {
+        if (root instanceof LiteralExpressionNode) {
+            return List.of();
+        }
+        List<TokenPatch> patches = new ArrayList<>();
+        if (!step(patches)) {
+            throw failByTokens("Step cannot be represented as patches");
+        }
+        return patches;
+    }
+
+    /**
+     * Performs the next evaluation step on the tokens of the expression to reproduce the exception of a step which cannot be
+     * performed on the tree, i.e. because of an unknown identifier or a number without a number representation.
+     *
+     * @param message the message of the exception if the step succeeds
+     *
+     * @return the exception to throw if the step succeeds
+     */
+    IllegalStateException failByTokens(String message) {
+        nextStepByTokens();
+        // The token-based step always fails for unknown identifiers and numbers without a number representation
+        return new IllegalStateException(message);
+    }
+
+    /**
+     * Returns the number of steps until the expression is a literal.
+     *
+     * @return the number of remaining steps
+     *
+     * @see ArithmeticExpressionEvaluator#countSteps()
+     */
+    int countSteps() {
+        if (root instanceof LiteralExpressionNode) {
+            return 0;
+        }
+        if (nodes == null) {
+            index();
+        }
+        return countSteps(root, heights(nodes, operands));
+    }
+
+    /**
+     * Returns the tokens after the given number of steps without performing them. The operations reduced by step j are
+     * exactly the operations of height j, i.e. whose longest path to an operand has j edges, so the values of the operations
+     * are computed height by height, in pre-order within a height like the steps would.
+     *
+     * @param steps the number of steps
+     *
+     * @return the tokens after the steps
+     *
+     * @throws IllegalArgumentException if the number of steps is negative
+     * @see ArithmeticExpressionEvaluator#peekStep(int)
+     */
+    TokenBuffer peek(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("steps < 0");
+        }
+        if (steps == 0 || root instanceof LiteralExpressionNode) {
+            return ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+        }
+        if (nodes == null) {
+            index();
+        }
+        MyNumber[] projected = resolved ? values.clone() : new MyNumber[nodes.length];
+        if (!resolved && !resolve(nodes, identifiers, projected)) {
+            return peekByStepping(steps);
+        }
+
+        int[] heights = heights(nodes, operands);
+        int last = Math.min(steps, heights[0]);
+        // Sort the operations of the reduced heights by height, the pre-order is kept within a height
+        int[] counts = new int[last + 2];
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] instanceof OperationExpressionNode && heights[i] <= last) {
+                counts[heights[i] + 1]++;
+            }
+        }
+        for (int height = 1; height <= last; height++) {
+            counts[height + 1] += counts[height];
+        }
+        int[] order = new int[counts[last + 1]];
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] instanceof OperationExpressionNode && heights[i] <= last) {
+                order[counts[heights[i]]++] = i;
+            }
+        }
+
+        // The operations of height h are now stored in order[counts[h - 1]..counts[h])
+        for (int height = 1; height <= last; height++) {
+            MyNumber[] results = reduce(order, counts[height - 1], counts[height], projected);
+            if (results == null) {
+                return peekByStepping(steps);
+            }
+            for (int i = 0; i < results.length; i++) {
+                projected[order[counts[height - 1] + i]] = results[i];
+            }
+        }
+        TokenBuffer tokens = new TokenBuffer();
+        addTokens(nodes, operands, heights, 0, last, projected, tokens);
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens after the given number of steps by performing them on a copy of the tree. Used if a step has to be
+     * performed on the tokens.
+     *
+     * @param steps the number of steps
+     *
+     * @return the tokens after the steps
+     */
+    private TokenBuffer peekByStepping(int steps) {
+        StepEvaluator copy = new StepEvaluator(root.clone(), identifiers, pool);
+        TokenBuffer tokens = null;
+        for (int i = 0; i < steps; i++) {
+            tokens = copy.nextStep();
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the number of steps until the expression with the given heights is a literal.
+     *
+     * @param root    the root of the expression
+     * @param heights the heights of the nodes of the expression in pre-order
+     *
+     * @return the number of steps
+     */
+    static int countSteps(ArithmeticExpressionNode root, int[] heights) {
+        if (root instanceof LiteralExpressionNode) {
+            return 0;
+        }
+        // An expression without operations only needs the step replacing the identifier
+        return Math.max(heights[0], 1);
+    }
+
+    /**
+     * Computes the height of every operation of the given nodes. Operands and reduced operations have the height 0.
+     *
+     * @param nodes    the nodes in pre-order
+     * @param operands the operand indices of the operations
+     *
+     * @return the heights of the nodes
+     */
+    static int[] heights(ArithmeticExpressionNode[] nodes, int[][] operands) {
+        int[] heights = new int[nodes.length];
+        // The operands of a node have greater indices in pre-order
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            if (nodes[i] instanceof OperationExpressionNode) {
+                int height = 0;
+                for (int operand : operands[i]) {
+                    height = Math.max(height, heights[operand]);
+                }
+                heights[i] = height + 1;
+            }
+        }
+        return heights;
+    }
+
+    /**
+     * Appends the tokens of the given node after the reduction of all operations up to the given height.
+     *
+     * @param nodes     the nodes in pre-order
+     * @param operands  the operand indices of the operations
+     * @param heights   the heights of the nodes
+     * @param index     the index of the node
+     * @param last      the greatest reduced height
+     * @param projected the values of the operands and the reduced operations
+     * @param tokens    the buffer to append the tokens to
+     */
+    static void addTokens(
+        ArithmeticExpressionNode[] nodes,
+        int[][] operands,
+        int[] heights,
+        int index,
+        int last,
+        MyNumber[] projected,
+        TokenBuffer tokens) {
+        if (!(nodes[index] instanceof OperationExpressionNode operationNode) || heights[index] <= last) {
+            tokens.addNumber(projected[index]);
+            return;
+        }
+        tokens.addLeftBracket();
+        tokens.addOperator(operationNode.getOperator());
+        for (int operand : operands[index]) {
+            addTokens(nodes, operands, heights, operand, last, projected, tokens);
+        }
+        tokens.addRightBracket();
+    }
+
+    /**
+     * Performs the next evaluation step on the tree.
+     *
+     * @param patches the list to add the patches of the step to or {@code null} if they are not needed
+     *
+     * @return {@code false} if the step has to be performed on the tokens, in this case the tree is not modified
+     */
+    private boolean step(@Nullable List<TokenPatch> patches) {
+        if (nodes == null) {
+            index();
+        }
+        try {
+            if (!resolved && !resolve(nodes, identifiers, values)) {
+                return false;
+            }
+            MyNumber[] results = reduce(frontier, 0, frontierSize, values);
+            if (results == null) {
+                return false;
+            }
+            if (patches != null) {
+                collectPatches(results, patches);
+            }
+            // Performing a step discards the undone steps
+            history.subList(performed, history.size()).clear();
+            history.add(new Step(Arrays.copyOf(frontier, frontierSize), results, resolved ? null : values.clone()));
+            performed++;
+            commit(results);
+        } catch (RuntimeException e) {
+            // The identifiers are looked up again by the next step
+            if (!resolved) {
+                nodes = null;
+            }
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Indexes the nodes of the tree in pre-order.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void index() {
+        List<ArithmeticExpressionNode> nodes = new ArrayList<>();
+        List<ListItem<ArithmeticExpressionNode>> slots = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        index(root, null, -1, nodes, slots, parents);
+
+        int size = nodes.size();
+        this.nodes = nodes.toArray(new ArithmeticExpressionNode[0]);
+        originals = this.nodes.clone();
+        this.slots = slots.toArray(new ListItem[0]);
+        this.parents = parents.stream().mapToInt(Integer::intValue).toArray();
+        operands = new int[size][];
+        pending = new int[size];
+        values = new MyNumber[size];
+        frontier = new int[size];
+        frontierSize = 0;
+        resolved = false;
+
+        int[] counts = new int[size];
+        for (int i = 1; i < size; i++) {
+            counts[this.parents[i]]++;
+            if (this.nodes[i] instanceof OperationExpressionNode) {
+                pending[this.parents[i]]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (this.nodes[i] instanceof OperationExpressionNode) {
+                operands[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            int parent = this.parents[i];
+            operands[parent][counts[parent]++] = i;
+        }
+        for (int i = 0; i < size; i++) {
+            if (operands[i] != null && pending[i] == 0) {
+                frontier[frontierSize++] = i;
+            }
+        }
+
+        starts = new int[size];
+        ends = new int[size];
+        int tokens = position(0, 0);
+        // Every token is live, node i of the Fenwick tree counts the positions (i - lowbit(i), i]
+        live = new int[tokens + 1];
+        for (int i = 1; i <= tokens; i++) {
+            live[i] = i & -i;
+        }
+    }
+
+    /**
+     * Computes the token positions of the given node and its descendants.
+     *
+     * @param index the index of the node
+     * @param start the position of the first token of the node
+     *
+     * @return the position after the last token of the node
+     */
+    private int position(int index, int start) {
+        starts[index] = start;
+        if (operands[index] == null) {
+            return start + 1;
+        }
+        // The left bracket and the operator precede the operands
+        int position = start + 2;
+        for (int operand : operands[index]) {
+            position = position(operand, position);
+        }
+        ends[index] = position;
+        return position + 1;
+    }
+
+    /**
+     * Returns the number of live tokens before the given position, i.e. the offset of the token in the current expression.
+     *
+     * @param position the position of the token in the tokens of the indexed tree
+     *
+     * @return the number of live tokens before the position
+     */
+    private int countLive(int position) {
+        int count = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            count += live[i];
+        }
+        return count;
+    }
+
+    /**
+     * Marks the token at the given position as removed.
+     *
+     * @param position the position of the token in the tokens of the indexed tree
+     */
+    private void removeToken(int position) {
+        for (int i = position + 1; i < live.length; i += i & -i) {
+            live[i]--;
+        }
+    }
+
+    /**
+     * Marks the token at the given position as live again.
+     *
+     * @param position the position of the token in the tokens of the indexed tree
+     */
+    private void restoreToken(int position) {
+        for (int i = position + 1; i < live.length; i += i & -i) {
+            live[i]++;
+        }
+    }
+
+    /**
+     * Appends the given node and its descendants in pre-order.
+     *
+     * @param node    the node to append
+     * @param slot    the operand slot holding the node or {@code null} for the root
+     * @param parent  the index of the parent or {@code -1} for the root
+     * @param nodes   the nodes in pre-order
+     * @param slots   the operand slots of the nodes
+     * @param parents the parent indices of the nodes
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private static void index(
+        ArithmeticExpressionNode node,
+        @Nullable ListItem<ArithmeticExpressionNode> slot,
+        int parent,
+        List<ArithmeticExpressionNode> nodes,
+        List<ListItem<ArithmeticExpressionNode>> slots,
+        List<Integer> parents) {
+        int index = nodes.size();
+        nodes.add(node);
+        slots.add(slot);
+        parents.add(parent);
+        if (node instanceof OperationExpressionNode operationNode) {
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                index(operand.key, operand, index, nodes, slots, parents);
+            }
+        } else if (!(node instanceof LiteralExpressionNode || node instanceof IdentifierExpressionNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+    }
+
+    /**
+     * Looks up the values of the operands of the given nodes and parses their string representations.
+     *
+     * @param nodes       the nodes in pre-order
+     * @param identifiers the map of variables and their values
+     * @param values      the array to store the values of the operands in
+     *
+     * @return {@code false} if an identifier has no value or a value cannot be represented as a number token
+     */
+    static boolean resolve(ArithmeticExpressionNode[] nodes, Map<String, MyNumber> identifiers, MyNumber[] values) {
+        for (int i = 0; i < nodes.length; i++) {
+            MyNumber value;
+            if (nodes[i] instanceof LiteralExpressionNode literalNode) {
+                value = literalNode.getValue();
+            } else if (nodes[i] instanceof IdentifierExpressionNode identifierNode) {
+                value = identifiers.get(identifierNode.getValue());
+                if (value == null) {
+                    return false;
+                }
+            } else {
+                continue;
+            }
+            values[i] = normalize(value);
+            if (values[i] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the values of the given operations whose operands have values. The operations are evaluated in parallel if
+     * there are enough of them and a pool is given, but the first exception in the given order is thrown like by the
+     * sequential evaluation.
+     *
+     * @param indices the indices of the operations
+     * @param from    the start index of the operations in the indices (inclusive)
+     * @param to      the end index of the operations in the indices (exclusive)
+     * @param values  the values of the operands
+     *
+     * @return the values of the operations parsed from their string representations or {@code null} if a value cannot be
+     *     represented as a number token
+     */
+    private MyNumber @Nullable [] reduce(int[] indices, int from, int to, MyNumber[] values) {
+        MyNumber[] results = new MyNumber[to - from];
+        if (pool == null || to - from <= THRESHOLD) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = normalize(apply(indices[from + i], values));
+                if (results[i] == null) {
+                    return null;
+                }
+            }
+            return results;
+        }
+        RuntimeException[] exceptions = new RuntimeException[results.length];
+        pool.invoke(new Reduction(indices, from, values, results, exceptions, 0, results.length));
+        for (int i = 0; i < results.length; i++) {
+            if (exceptions[i] != null) {
+                throw exceptions[i];
+            }
+            if (results[i] == null) {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Applies the operator of the given innermost operation to the values of its operands.
+     *
+     * @param index  the index of the operation
+     * @param values the values of the operands
+     *
+     * @return the value of the operation
+     */
+    private MyNumber apply(int index, MyNumber[] values) {
+        return apply(((OperationExpressionNode) nodes[index]).getOperator(), operands[index], values);
+    }
+
+    /**
+     * Applies the given operator to the values of the given operands.
+     *
+     * @param operator the operator to apply
+     * @param children the indices of the operands
+     * @param values   the values of the operands
+     *
+     * @return the value of the operation
+     */
+    static MyNumber apply(Operator operator, int[] children, MyNumber[] values) {
+        return OperationExpressionNode.apply(operator, children.length, i -> values[children[i]]);
+    }
+
+    /**
+     * Adds the patches of the current step. The first step additionally replaces the identifiers and the parsed literals
+     * outside of the innermost operations.
+     *
+     * @param results the values of the innermost operations
+     * @param patches the list to add the patches to
+     */
+    private void collectPatches(MyNumber[] results, List<TokenPatch> patches) {
+        if (resolved) {
+            for (int i = 0; i < frontierSize; i++) {
+                patches.add(reductionPatch(frontier[i], results[i]));
+            }
+            return;
+        }
+        int next = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (next < frontierSize && frontier[next] == i) {
+                patches.add(reductionPatch(i, results[next++]));
+            } else if (operands[i] == null && (parents[i] == -1 || pending[parents[i]] > 0)) {
+                // Integers are the only numbers which are not replaced by a parsed number
+                if (!(nodes[i] instanceof LiteralExpressionNode literalNode) || literalNode.getValue() != values[i]) {
+                    patches.add(new TokenPatch(countLive(starts[i]), 1, values[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the patch replacing the given innermost operation by its value.
+     *
+     * @param index the index of the operation
+     * @param value the value of the operation
+     *
+     * @return the patch replacing the operation
+     */
+    private TokenPatch reductionPatch(int index, MyNumber value) {
+        // The brackets, the operator and one token per operand
+        return new TokenPatch(countLive(starts[index]), operands[index].length + 3, value);
+    }
+
+    /**
+     * Replaces the operands and the innermost operations by literals and determines the next innermost operations.
+     *
+     * @param results the values of the innermost operations
+     */
+    private void commit(MyNumber[] results) {
+        if (!resolved) {
+            for (int i = 0; i < nodes.length; i++) {
+                if (operands[i] == null) {
+                    replace(i, values[i]);
+                }
+            }
+            resolved = true;
+        }
+        int size = 0;
+        for (int i = 0; i < frontierSize; i++) {
+            int index = frontier[i];
+            values[index] = results[i];
+            replace(index, results[i]);
+            // The literal takes the position of the left bracket
+            removeToken(starts[index] + 1);
+            for (int operand : operands[index]) {
+                removeToken(starts[operand]);
+            }
+            removeToken(ends[index]);
+            int parent = parents[index];
+            // The parents become innermost in pre-order since the reduced operations are visited in pre-order
+            if (parent != -1 && --pending[parent] == 0) {
+                frontier[size++] = parent;
+            }
+        }
+        frontierSize = size;
+    }
+
+    /**
+     * Replaces the node with the given index by a literal.
+     *
+     * @param index the index of the node
+     * @param value the value of the literal
+     */
+    private void replace(int index, MyNumber value) {
+        set(index, new LiteralExpressionNode(value));
+    }
+
+    /**
+     * Puts the given node into the slot of the node with the given index.
+     *
+     * @param index the index of the node
+     * @param node  the node to put into the slot
+     */
+    private void set(int index, ArithmeticExpressionNode node) {
+        nodes[index] = node;
+        if (slots[index] == null) {
+            root = node;
+        } else {
+            slots[index].key = node;
+        }
+    }
+
+    /**
+     * Undoes the last performed step.
+     *
+     * @return {@code false} if no step has been performed
+     *
+     * @see ArithmeticExpressionEvaluator#undo()
+     */
+    boolean undo() {
+        if (performed == 0) {
+            return false;
+        }
+        Step step = history.get(--performed);
+        for (int index : step.reduced) {
+            set(index, originals[index]);
+            restoreToken(starts[index] + 1);
+            for (int operand : operands[index]) {
+                restoreToken(starts[operand]);
+            }
+            restoreToken(ends[index]);
+            if (parents[index] != -1) {
+                pending[parents[index]]++;
+            }
+        }
+        System.arraycopy(step.reduced, 0, frontier, 0, step.reduced.length);
+        frontierSize = step.reduced.length;
+        if (step.operands != null) {
+            for (int i = 0; i < nodes.length; i++) {
+                if (operands[i] == null) {
+                    set(i, originals[i]);
+                }
+            }
+            // The identifiers are looked up again by the next step
+            resolved = false;
+        }
+        return true;
+    }
+
+    /**
+     * Redoes the last undone step.
+     *
+     * @return {@code false} if no step has been undone since the last performed step
+     *
+     * @see ArithmeticExpressionEvaluator#redo()
+     */
+    boolean redo() {
+        if (performed == history.size()) {
+            return false;
+        }
+        Step step = history.get(performed++);
+        if (step.operands != null) {
+            // A failed step may have indexed the same tree again
+            if (nodes == null) {
+                index();
+            }
+            System.arraycopy(step.operands, 0, values, 0, values.length);
+        }
+        System.arraycopy(step.reduced, 0, frontier, 0, step.reduced.length);
+        frontierSize = step.reduced.length;
+        commit(step.results);
+        return true;
+    }
+
+    /**
+     * Performs the next evaluation step on the tokens of the expression and rebuilds the tree.
+     *
+     * @return the tokens of the expression after the step
+     */
+    private TokenBuffer nextStepByTokens() {
+        TokenBuffer expression = ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+        TokenBuffer result = new TokenBuffer(expression.size());
+        // Start index of the open bracket of each unclosed expression in the result
+        int[] starts = new int[DEFAULT_DEPTH];
+        // Whether the unclosed expression contains no other expression
+        boolean[] inner = new boolean[DEFAULT_DEPTH];
+        int depth = 0;
+        // The top level has no bracket
+        inner[0] = true;
+
+        for (int i = 0; i < expression.size(); i++) {
+            switch (expression.getToken(i)) {
+                case LEFT_BRACKET -> {
+                    // If the expression contains an open bracket, it cannot be the innermost expression
+                    inner[depth] = false;
+                    if (++depth == starts.length) {
+                        starts = Arrays.copyOf(starts, 2 * starts.length);
+                        inner = Arrays.copyOf(inner, 2 * inner.length);
+                    }
+                    starts[depth] = result.size();
+                    inner[depth] = true;
+                    result.addLeftBracket();
+                }
+                case RIGHT_BRACKET -> {
+                    result.addRightBracket();
+                    if (inner[depth]) {
+                        // Evaluate only the innermost expression
+                        int start = depth > 0 ? starts[depth] : 0;
+                        ArithmeticExpressionNode node = ExpressionTreeHandler.buildRecursively(
+                            result.tokenizer(start, result.size()));
+                        MyNumber number = node.evaluate(identifiers);
+                        result.truncate(start);
+                        addNumber(result, number);
+                    }
+                    if (depth > 0) {
+                        depth--;
+                    }
+                }
+                case OPERATOR -> result.addOperator(expression.getOperator(i));
+                case NUMBER -> addNumber(result, expression.getNumber(i));
+                case IDENTIFIER -> {
+                    String token = expression.getIdentifier(i);
+                    if (!IdentifierExpressionNode.isIdentifier(token)) {
+                        result.addIdentifier(token);
+                    } else if (identifiers.containsKey(token)) {
+                        addNumber(result, identifiers.get(token));
+                    } else {
+                        result.addIdentifier(UNKNOWN_IDENTIFIER);
+                    }
+                }
+            }
+        }
+        root = ExpressionTreeHandler.buildRecursively(result.tokenizer());
+        // The rebuilt tree is indexed again by the next step, so the recorded steps cannot be undone anymore
+        nodes = null;
+        history.clear();
+        performed = 0;
+        return result;
+    }
+
+    /**
+     * Returns the number parsed from the string representation of the given number.
+     *
+     * @param number the number to parse
+     *
+     * @return the parsed number or {@code null} if the string representation is not a number
+     */
+    static @Nullable MyNumber normalize(MyNumber number) {
+        // The string representation of an integer is always parsed to the same integer
+        if (number instanceof MyInteger) {
+            return number;
+        }
+        String text = number.toString();
+        return NumberScanner.tryParseNumber(text, 0, text.length());
+    }
+
+    /**
+     * Appends a number to the tokens as if its string representation was parsed again, since the evaluation steps are defined
+     * on the string representation of the expression. For example, the real number 2.0 is represented as 2 and becomes an
+     * integer.
+     *
+     * @param tokens the tokens to append the number to
+     * @param number the number to append
+     */
+    private static void addNumber(TokenBuffer tokens, MyNumber number) {
+        // The string representation of an integer is always parsed to the same integer
+        if (number instanceof MyInteger) {
+            tokens.addNumber(number);
+            return;
+        }
+        String text = number.toString();
+        MyNumber parsed = NumberScanner.tryParseNumber(text, 0, text.length());
+        if (parsed != null) {
+            tokens.addNumber(parsed);
+        } else {
+            tokens.addIdentifier(text);
+        }
+    }
+
+    /**
+     * A performed step, i.e. the innermost operations reduced by the step and their values.
+     */
+    private static final class Step {
+
+        /**
+         * The indices of the reduced operations in pre-order.
+         */
+        private final int[] reduced;
+
+        /**
+         * The values of the reduced operations.
+         */
+        private final MyNumber[] results;
+
+        /**
+         * The values of the operands replacing the identifiers and literals or {@code null} if the operands have already been
+         * replaced before the step.
+         */
+        private final MyNumber @Nullable [] operands;
+
+        /**
+         * Constructs and initializes a performed step.
+         *
+         * @param reduced  the indices of the reduced operations in pre-order
+         * @param results  the values of the reduced operations
+         * @param operands the values of the operands replaced by the step or {@code null} if they have already been replaced
+         */
+        Step(int[] reduced, MyNumber[] results, MyNumber @Nullable [] operands) {
+            this.reduced = reduced;
+            this.results = results;
+            this.operands = operands;
+        }
+    }
+
+    /**
+     * Evaluates a range of independent operations.
+     */
+    private final class Reduction extends RecursiveAction {
+
+        /**
+         * The indices of the operations.
+         */
+        private final int[] indices;
+
+        /**
+         * The index of the first operation in the indices.
+         */
+        private final int offset;
+
+        /**
+         * The values of the operands.
+         */
+        private final MyNumber[] values;
+
+        /**
+         * The values of the operations relative to the offset.
+         */
+        private final @Nullable MyNumber[] results;
+
+        /**
+         * The exceptions thrown by the operations relative to the offset.
+         */
+        private final @Nullable RuntimeException[] exceptions;
+
+        /**
+         * The start index of the range relative to the offset (inclusive).
+         */
+        private final int start;
+
+        /**
+         * The end index of the range relative to the offset (exclusive).
+         */
+        private final int end;
+
+        /**
+         * Constructs and initializes a task evaluating the given range of operations.
+         *
+         * @param indices    the indices of the operations
+         * @param offset     the index of the first operation in the indices
+         * @param values     the values of the operands
+         * @param results    the values of the operations relative to the offset
+         * @param exceptions the exceptions thrown by the operations relative to the offset
+         * @param start      the start index of the range relative to the offset (inclusive)
+         * @param end        the end index of the range relative to the offset (exclusive)
+         */
+        Reduction(
+            int[] indices,
+            int offset,
+            MyNumber[] values,
+            @Nullable MyNumber[] results,
+            @Nullable RuntimeException[] exceptions,
+            int start,
+            int end) {
+            this.indices = indices;
+            this.offset = offset;
+            this.values = values;
+            this.results = results;
+            this.exceptions = exceptions;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    try {
+                        results[i] = normalize(apply(indices[offset + i], values));
+                    } catch (RuntimeException e) {
+                        exceptions[i] = e;
+                    }
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(
+                new Reduction(indices, offset, values, results, exceptions, start, middle),
+                new Reduction(indices, offset, values, results, exceptions, middle, end));
+        }
+    }
+}
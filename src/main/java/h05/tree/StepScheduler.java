@@ -0,0 +1,623 @@
+package h05.tree;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Advances many {@link ArithmeticExpressionEvaluator}s on a {@link ForkJoinPool} instead of one thread per evaluator. The
+ * evaluators are advanced in rounds: every round performs up to {@code quantum} steps of every running job, so a long
+ * evaluation cannot starve the others. The jobs of a round are split into tasks which are balanced by work stealing, a job is
+ * only advanced by one task at a time.
+ *
+ * <p>Every job has a step budget and stops when its expression is a literal, a step fails or the budget is used up. The tokens
+ * of its last steps are kept in a bounded buffer. The scheduler keeps its jobs until they are removed by
+ * {@link #drainStopped()}. The scheduler may only be used by one thread at a time, the parallelism is internal to
+ * {@link #run(Consumer)}, but the progress and the state of a job can be read by any thread.
+ *
+ * <p>Example:
+ * <pre>{@code
+ *    StepScheduler scheduler = new StepScheduler();
+ *    for (ArithmeticExpressionNode root : roots) {
+ *        scheduler.submit(new ArithmeticExpressionEvaluator(root, identifiers), 1000);
+ *    }
+ *    scheduler.run(progress -> System.out.println(progress));
+ * }</pre>
+ */
+public final class StepScheduler {
+
+    /**
+     * The default number of steps of a job per round.
+     */
+    public static final int DEFAULT_QUANTUM = 8;
+
+    /**
+     * The default number of steps kept in the trace of a job.
+     */
+    public static final int DEFAULT_TRACE_CAPACITY = 16;
+
+    /**
+     * The maximum number of jobs advanced sequentially by one task.
+     */
+    private static final int THRESHOLD = 64;
+
+    /**
+     * The pool advancing the jobs.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of steps of a job per round.
+     */
+    private final int quantum;
+
+    /**
+     * The number of steps kept in the trace of a job.
+     */
+    private final int traceCapacity;
+
+    /**
+     * The submitted jobs which have not been drained in submission order.
+     */
+    private final List<Job> jobs = new ArrayList<>();
+
+    /**
+     * The evaluators of the jobs, compared by identity since an evaluator must only be advanced by one job.
+     */
+    private final Set<ArithmeticExpressionEvaluator> evaluators = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The jobs which have not been stopped yet.
+     */
+    private final List<Job> active = new ArrayList<>();
+
+    /**
+     * The number of jobs per final state, indexed by {@link State#ordinal()}.
+     */
+    private final AtomicInteger[] stopped = new AtomicInteger[State.values().length];
+
+    /**
+     * The number of submitted jobs including the drained ones.
+     */
+    private volatile int submitted;
+
+    /**
+     * The number of performed steps of all jobs.
+     */
+    private final LongAdder steps = new LongAdder();
+
+    /**
+     * The number of performed rounds.
+     */
+    private volatile int rounds;
+
+    /**
+     * Constructs and initializes a scheduler using the common pool and the default quantum and trace capacity.
+     */
+    public StepScheduler() {
+        this(ForkJoinPool.commonPool(), DEFAULT_QUANTUM, DEFAULT_TRACE_CAPACITY);
+    }
+
+    /**
+     * Constructs and initializes a scheduler.
+     *
+     * @param pool          the pool advancing the jobs
+     * @param quantum       the number of steps of a job per round
+     * @param traceCapacity the number of steps kept in the trace of a job
+     *
+     * @throws IllegalArgumentException if the quantum is not positive or the trace capacity is negative
+     * @throws NullPointerException     if the pool is {@code null}
+     */
+    public StepScheduler(ForkJoinPool pool, int quantum, int traceCapacity) {
+        this.pool = Objects.requireNonNull(pool, "pool null");
+        if (quantum <= 0) {
+            throw new IllegalArgumentException("quantum <= 0");
+        }
+        if (traceCapacity < 0) {
+            throw new IllegalArgumentException("traceCapacity < 0");
+        }
+        this.quantum = quantum;
+        this.traceCapacity = traceCapacity;
+        for (int i = 0; i < stopped.length; i++) {
+            stopped[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Submits an evaluator which is advanced by the next call of {@link #run(Consumer)}.
+     *
+     * @param evaluator the evaluator to advance
+     * @param budget    the maximum number of steps of the evaluator
+     *
+     * @return the job advancing the evaluator
+     *
+     * @throws IllegalArgumentException if the budget is negative or the evaluator belongs to a job which has not been drained
+     * @throws NullPointerException     if the evaluator is {@code null}
+     */
+    public Job submit(ArithmeticExpressionEvaluator evaluator, int budget) {
+        Objects.requireNonNull(evaluator, "evaluator null");
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget < 0");
+        }
+        if (!evaluators.add(evaluator)) {
+            throw new IllegalArgumentException("Evaluator already submitted");
+        }
+        Job job = new Job(evaluator, budget);
+        jobs.add(job);
+        active.add(job);
+        submitted++;
+        return job;
+    }
+
+    /**
+     * Advances all submitted jobs until they are stopped.
+     *
+     * @return the progress after all jobs have been stopped
+     *
+     * @see #run(Consumer)
+     */
+    public Progress run() {
+        return run(null);
+    }
+
+    /**
+     * Advances all submitted jobs in rounds until they are stopped. The listener is notified after every round on the calling
+     * thread.
+     *
+     * @param listener the listener notified of the progress after every round or {@code null}
+     *
+     * @return the progress after all jobs have been stopped
+     */
+    public Progress run(@Nullable Consumer<Progress> listener) {
+        while (!active.isEmpty()) {
+            if (active.size() <= THRESHOLD) {
+                for (Job job : active) {
+                    job.advance();
+                }
+            } else {
+                pool.invoke(new Round(active, 0, active.size()));
+            }
+            active.removeIf(job -> job.state != State.RUNNING);
+            rounds++;
+            if (listener != null) {
+                listener.accept(getProgress());
+            }
+        }
+        return getProgress();
+    }
+
+    /**
+     * Returns the submitted jobs which have not been drained in submission order.
+     *
+     * @return the submitted jobs which have not been drained
+     */
+    public List<Job> getJobs() {
+        return List.copyOf(jobs);
+    }
+
+    /**
+     * Removes the stopped jobs, so the scheduler no longer references them and their evaluators. The progress still counts
+     * the removed jobs and their evaluators can be submitted again.
+     *
+     * @return the removed jobs in submission order
+     */
+    public List<Job> drainStopped() {
+        List<Job> running = new ArrayList<>();
+        List<Job> drained = new ArrayList<>();
+        for (Job job : jobs) {
+            if (job.state == State.RUNNING) {
+                running.add(job);
+            } else {
+                drained.add(job);
+                evaluators.remove(job.evaluator);
+            }
+        }
+        jobs.clear();
+        jobs.addAll(running);
+        return drained;
+    }
+
+    /**
+     * Returns the current progress of all submitted jobs.
+     *
+     * @return the current progress
+     */
+    public Progress getProgress() {
+        return new Progress(
+            submitted,
+            stopped[State.FINISHED.ordinal()].get(),
+            stopped[State.FAILED.ordinal()].get(),
+            stopped[State.EXHAUSTED.ordinal()].get(),
+            steps.sum(),
+            rounds
+        );
+    }
+
+    /**
+     * The state of a job.
+     */
+    public enum State {
+
+        /**
+         * The job is advanced by the next round.
+         */
+        RUNNING,
+
+        /**
+         * The expression is a literal.
+         */
+        FINISHED,
+
+        /**
+         * A step has failed, see {@link Job#getException()}.
+         */
+        FAILED,
+
+        /**
+         * The step budget has been used up before the expression became a literal.
+         */
+        EXHAUSTED
+    }
+
+    /**
+     * An evaluator advanced by the scheduler.
+     */
+    public final class Job {
+
+        /**
+         * The evaluator performing the steps.
+         */
+        private final ArithmeticExpressionEvaluator evaluator;
+
+        /**
+         * The maximum number of steps.
+         */
+        private final int budget;
+
+        /**
+         * The tokens of the last steps as a ring buffer.
+         */
+        private final TokenBuffer[] trace;
+
+        /**
+         * The number of performed steps.
+         */
+        private volatile int steps;
+
+        /**
+         * The current state.
+         */
+        private volatile State state = State.RUNNING;
+
+        /**
+         * The exception of the failed step or {@code null} if no step has failed.
+         */
+        private volatile @Nullable RuntimeException exception;
+
+        /**
+         * Constructs and initializes a job.
+         *
+         * @param evaluator the evaluator performing the steps
+         * @param budget    the maximum number of steps
+         */
+        private Job(ArithmeticExpressionEvaluator evaluator, int budget) {
+            this.evaluator = evaluator;
+            this.budget = budget;
+            this.trace = new TokenBuffer[traceCapacity];
+        }
+
+        /**
+         * Performs the steps of a round.
+         */
+        private void advance() {
+            for (int i = 0; i < quantum && update(); i++) {
+                TokenBuffer tokens;
+                try {
+                    tokens = evaluator.nextStepTokens();
+                } catch (RuntimeException e) {
+                    exception = e;
+                    stop(State.FAILED);
+                    return;
+                }
+                if (trace.length > 0) {
+                    synchronized (trace) {
+                        trace[steps % trace.length] = tokens;
+                        steps++;
+                    }
+                } else {
+                    steps++;
+                }
+                StepScheduler.this.steps.increment();
+            }
+            update();
+        }
+
+        /**
+         * Stops the job if its expression is a literal or its budget has been used up.
+         *
+         * @return {@code true} if the job is still running
+         */
+        private boolean update() {
+            if (state != State.RUNNING) {
+                return false;
+            }
+            if (evaluator.getRoot() instanceof LiteralExpressionNode) {
+                stop(State.FINISHED);
+                return false;
+            }
+            if (steps == budget) {
+                stop(State.EXHAUSTED);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Stops the job with the given state.
+         *
+         * @param state the final state
+         */
+        private void stop(State state) {
+            this.state = state;
+            stopped[state.ordinal()].incrementAndGet();
+        }
+
+        /**
+         * Returns the evaluator performing the steps. It must not be used while the scheduler is running.
+         *
+         * @return the evaluator performing the steps
+         */
+        public ArithmeticExpressionEvaluator getEvaluator() {
+            return evaluator;
+        }
+
+        /**
+         * Returns the maximum number of steps.
+         *
+         * @return the maximum number of steps
+         */
+        public int getBudget() {
+            return budget;
+        }
+
+        /**
+         * Returns the number of performed steps.
+         *
+         * @return the number of performed steps
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the current state.
+         *
+         * @return the current state
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Returns the exception of the failed step.
+         *
+         * @return the exception of the failed step or {@code null} if no step has failed
+         */
+        public @Nullable RuntimeException getException() {
+            return exception;
+        }
+
+        /**
+         * Returns the tokens of the last performed steps which are kept, starting with the oldest step.
+         *
+         * @return the tokens of the last performed steps
+         */
+        public List<TokenBuffer> getTrace() {
+            if (trace.length == 0) {
+                return List.of();
+            }
+            synchronized (trace) {
+                int size = Math.min(steps, trace.length);
+                List<TokenBuffer> tokens = new ArrayList<>(size);
+                for (int step = steps - size; step < steps; step++) {
+                    tokens.add(trace[step % trace.length]);
+                }
+                return tokens;
+            }
+        }
+
+        /**
+         * Returns the number of performed steps which are no longer kept in the trace.
+         *
+         * @return the number of dropped steps
+         */
+        public int getDroppedSteps() {
+            return Math.max(steps - trace.length, 0);
+        }
+
+        @Override
+        public String toString() {
+            return state + " after " + steps + " steps: " + evaluator.getRoot();
+        }
+    }
+
+    /**
+     * The progress of the submitted jobs.
+     */
+    public static final class Progress {
+
+        /**
+         * The number of submitted jobs.
+         */
+        private final int jobs;
+
+        /**
+         * The number of finished jobs.
+         */
+        private final int finished;
+
+        /**
+         * The number of failed jobs.
+         */
+        private final int failed;
+
+        /**
+         * The number of exhausted jobs.
+         */
+        private final int exhausted;
+
+        /**
+         * The number of performed steps of all jobs.
+         */
+        private final long steps;
+
+        /**
+         * The number of performed rounds.
+         */
+        private final int rounds;
+
+        /**
+         * Constructs and initializes a progress.
+         *
+         * @param jobs      the number of submitted jobs
+         * @param finished  the number of finished jobs
+         * @param failed    the number of failed jobs
+         * @param exhausted the number of exhausted jobs
+         * @param steps     the number of performed steps of all jobs
+         * @param rounds    the number of performed rounds
+         */
+        private Progress(int jobs, int finished, int failed, int exhausted, long steps, int rounds) {
+            this.jobs = jobs;
+            this.finished = finished;
+            this.failed = failed;
+            this.exhausted = exhausted;
+            this.steps = steps;
+            this.rounds = rounds;
+        }
+
+        /**
+         * Returns the number of submitted jobs.
+         *
+         * @return the number of submitted jobs
+         */
+        public int getJobs() {
+            return jobs;
+        }
+
+        /**
+         * Returns the number of finished jobs.
+         *
+         * @return the number of finished jobs
+         */
+        public int getFinished() {
+            return finished;
+        }
+
+        /**
+         * Returns the number of failed jobs.
+         *
+         * @return the number of failed jobs
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the number of exhausted jobs.
+         *
+         * @return the number of exhausted jobs
+         */
+        public int getExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * Returns the number of running jobs.
+         *
+         * @return the number of running jobs
+         */
+        public int getRunning() {
+            return jobs - finished - failed - exhausted;
+        }
+
+        /**
+         * Returns the number of performed steps of all jobs.
+         *
+         * @return the number of performed steps
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the number of performed rounds.
+         *
+         * @return the number of performed rounds
+         */
+        public int getRounds() {
+            return rounds;
+        }
+
+        @Override
+        public String toString() {
+            return "round " + rounds + ": " + steps + " steps, " + getRunning() + " running, " + finished + " finished, "
+                + failed + " failed, " + exhausted + " exhausted of " + jobs + " jobs";
+        }
+    }
+
+    /**
+     * Advances a range of the running jobs by one round.
+     */
+    private static final class Round extends RecursiveAction {
+
+        /**
+         * The running jobs.
+         */
+        private final List<Job> jobs;
+
+        /**
+         * The start index of the range (inclusive).
+         */
+        private final int start;
+
+        /**
+         * The end index of the range (exclusive).
+         */
+        private final int end;
+
+        /**
+         * Constructs and initializes a task advancing the given range of jobs.
+         *
+         * @param jobs  the running jobs
+         * @param start the start index of the range (inclusive)
+         * @param end   the end index of the range (exclusive)
+         */
+        Round(List<Job> jobs, int start, int end) {
+            this.jobs = jobs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    jobs.get(i).advance();
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new Round(jobs, start, middle), new Round(jobs, middle, end));
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An arithmetic expression tree which has been compiled once for stepping it by many cursors, see
+ * {@link ArithmeticExpressionEvaluator#nextStep()}. The session stores the operations in pre-order together with their
+ * height, i.e. the step which reduces them, so a cursor only stores its step and the values of the reduced operations instead
+ * of a copy of the tree.
+ *
+ * <p>A session is immutable and can be shared by multiple threads. A cursor is a cheap mutable object which must only be used
+ * by one thread at a time. It copies the values of the identifiers on creation, so later changes to the map do not affect it.
+ * The steps, their tokens and their exceptions are the same as for an {@link ArithmeticExpressionEvaluator} with the same
+ * identifiers.
+ *
+ * <p>Example:
+ * <pre>{@code
+ *    StepSession session = StepSession.compile(root);
+ *    // Per thread
+ *    StepSession.Cursor cursor = session.cursor(identifiers);
+ *    while (cursor.countSteps() > 0) {
+ *        List<String> tokens = cursor.nextStep();
+ *    }
+ * }</pre>
+ */
+public final class StepSession {
+
+    /**
+     * The root of the compiled arithmetic expression tree.
+     */
+    private final ArithmeticExpressionNode root;
+
+    /**
+     * The nodes of the tree in pre-order.
+     */
+    private final ArithmeticExpressionNode[] nodes;
+
+    /**
+     * The operand indices of each operation or {@code null} for operands.
+     */
+    private final int[][] operands;
+
+    /**
+     * The height of each operation or 0 for operands.
+     */
+    private final int[] heights;
+
+    /**
+     * The indices of the operations sorted by their height, in pre-order within a height.
+     */
+    private final int[] order;
+
+    /**
+     * The operations of height h are stored in {@code order[levels[h - 1]..levels[h])}.
+     */
+    private final int[] levels;
+
+    /**
+     * The number of steps until the expression is a literal.
+     */
+    private final int steps;
+
+    /**
+     * The names of the identifiers of the tree.
+     */
+    private final Set<String> identifiers;
+
+    /**
+     * Constructs and initializes a session of the given tree which is not modified afterwards.
+     *
+     * @param root the root of the arithmetic expression tree
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     */
+    private StepSession(ArithmeticExpressionNode root) {
+        this.root = root;
+        List<ArithmeticExpressionNode> nodes = new ArrayList<>();
+        List<int[]> operands = new ArrayList<>();
+        Set<String> identifiers = new LinkedHashSet<>();
+        index(root, nodes, operands, identifiers);
+        this.nodes = nodes.toArray(new ArithmeticExpressionNode[0]);
+        this.operands = operands.toArray(new int[0][]);
+        this.identifiers = Collections.unmodifiableSet(identifiers);
+
+        heights = StepEvaluator.heights(this.nodes, this.operands);
+        int height = heights[0];
+        levels = new int[height + 1];
+        for (int i = 0; i < this.nodes.length; i++) {
+            if (this.operands[i] != null) {
+                levels[heights[i]]++;
+            }
+        }
+        for (int h = 1; h <= height; h++) {
+            levels[h] += levels[h - 1];
+        }
+        order = new int[levels[height]];
+        int[] next = levels.clone();
+        for (int i = 0; i < this.nodes.length; i++) {
+            if (this.operands[i] != null) {
+                order[next[heights[i] - 1]++] = i;
+            }
+        }
+        steps = StepEvaluator.countSteps(root, heights);
+    }
+
+    /**
+     * Compiles the given arithmetic expression tree for stepping. Later changes to the tree are not reflected by the session.
+     *
+     * @param root the root of the arithmetic expression tree to compile
+     *
+     * @return the compiled session
+     *
+     * @throws IllegalArgumentException if the tree contains an unknown node type
+     * @throws NullPointerException     if the root is {@code null}
+     */
+    public static StepSession compile(ArithmeticExpressionNode root) {
+        Objects.requireNonNull(root, "root null");
+        return new StepSession(root.clone());
+    }
+
+    /**
+     * Appends the given node and its descendants in pre-order.
+     *
+     * @param node        the node to append
+     * @param nodes       the nodes in pre-order
+     * @param operands    the operand indices of the nodes
+     * @param identifiers the names of the identifiers
+     *
+     * @return the index of the node
+     *
+     * @throws IllegalArgumentException if the node type is unknown
+     */
+    private static int index(
+        ArithmeticExpressionNode node,
+        List<ArithmeticExpressionNode> nodes,
+        List<int[]> operands,
+        Set<String> identifiers) {
+        int index = nodes.size();
+        nodes.add(node);
+        operands.add(null);
+        if (node instanceof OperationExpressionNode operationNode) {
+            List<Integer> children = new ArrayList<>();
+            for (ListItem<ArithmeticExpressionNode> operand = operationNode.getOperands(); operand != null;
+                 operand = operand.next) {
+                children.add(index(operand.key, nodes, operands, identifiers));
+            }
+            operands.set(index, children.stream().mapToInt(Integer::intValue).toArray());
+        } else if (node instanceof IdentifierExpressionNode identifierNode) {
+            identifiers.add(identifierNode.getValue());
+        } else if (!(node instanceof LiteralExpressionNode)) {
+            throw new IllegalArgumentException("Unknown node type");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the names of the identifiers of the expression in the order of their first occurrence.
+     *
+     * @return the names of the identifiers
+     */
+    public Set<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    /**
+     * Returns the number of steps until the expression is a literal.
+     *
+     * @return the number of steps
+     */
+    public int countSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns a new cursor before the first step. Only the values of the identifiers of the expression are copied.
+     *
+     * @param identifiers the map of variables and their values
+     *
+     * @return a new cursor before the first step
+     *
+     * @throws NullPointerException if the map is {@code null}
+     */
+    public Cursor cursor(Map<String, MyNumber> identifiers) {
+        Objects.requireNonNull(identifiers, "identifiers null");
+        Map<String, MyNumber> values = new HashMap<>();
+        for (String identifier : this.identifiers) {
+            if (identifiers.containsKey(identifier)) {
+                values.put(identifier, identifiers.get(identifier));
+            }
+        }
+        return new Cursor(values);
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * The stepping state of one user of a session. A cursor must only be used by one thread at a time.
+     */
+    public final class Cursor {
+
+        /**
+         * The values of the identifiers of the expression.
+         */
+        private final Map<String, MyNumber> identifiers;
+
+        /**
+         * The values of the operands and the reduced operations or {@code null} before the first step.
+         */
+        private MyNumber @Nullable [] values;
+
+        /**
+         * The number of performed steps.
+         */
+        private int step;
+
+        /**
+         * Constructs and initializes a cursor before the first step.
+         *
+         * @param identifiers the values of the identifiers of the expression
+         */
+        private Cursor(Map<String, MyNumber> identifiers) {
+            this.identifiers = identifiers;
+        }
+
+        /**
+         * Returns the session of this cursor.
+         *
+         * @return the session of this cursor
+         */
+        public StepSession getSession() {
+            return StepSession.this;
+        }
+
+        /**
+         * Returns the number of performed steps.
+         *
+         * @return the number of performed steps
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * Returns the number of steps until the expression is a literal.
+         *
+         * @return the number of remaining steps
+         */
+        public int countSteps() {
+            return steps - step;
+        }
+
+        /**
+         * Returns the tokens of the expression after the performed steps.
+         *
+         * @return the tokens of the expression after the performed steps
+         */
+        public TokenBuffer getTokens() {
+            if (step == 0) {
+                return ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+            }
+            assert values != null;
+            TokenBuffer tokens = new TokenBuffer();
+            StepEvaluator.addTokens(nodes, operands, heights, 0, step, values, tokens);
+            return tokens;
+        }
+
+        /**
+         * Performs the next evaluation step.
+         *
+         * @return the list of tokens after the step
+         *
+         * @see #nextStepTokens()
+         */
+        public List<String> nextStep() {
+            return nextStepTokens().toList();
+        }
+
+        /**
+         * Performs the next evaluation step like {@link ArithmeticExpressionEvaluator#nextStepTokens()}. If the step fails,
+         * the cursor is not changed.
+         *
+         * @return the tokens after the step
+         *
+         * @throws IllegalStateException if the step could only be performed on the tokens of the expression
+         */
+        public TokenBuffer nextStepTokens() {
+            if (step == steps) {
+                return getTokens();
+            }
+            MyNumber[] current = values;
+            if (current == null) {
+                current = new MyNumber[nodes.length];
+                if (!StepEvaluator.resolve(nodes, identifiers, current)) {
+                    return nextStepByTokens();
+                }
+            }
+            if (step < levels.length - 1) {
+                for (int i = levels[step]; i < levels[step + 1]; i++) {
+                    int index = order[i];
+                    current[index] = StepEvaluator.normalize(StepEvaluator.apply(
+                        ((OperationExpressionNode) nodes[index]).getOperator(), operands[index], current));
+                    if (current[index] == null) {
+                        return nextStepByTokens();
+                    }
+                }
+            }
+            values = current;
+            step++;
+            return getTokens();
+        }
+
+        /**
+         * Performs the next evaluation step on the tokens of the expression to reproduce its exception.
+         *
+         * @return never
+         *
+         * @throws IllegalStateException if the step succeeds, since its result cannot be represented by the cursor
+         */
+        private TokenBuffer nextStepByTokens() {
+            ArithmeticExpressionNode tree = ExpressionTreeHandler.buildRecursively(getTokens().tokenizer());
+            throw new StepEvaluator(tree, identifiers, null).failByTokens("Step cannot be represented by the cursor");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package h05.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The evaluation steps of an {@link ArithmeticExpressionEvaluator} stored as {@link TokenPatch}es. Only the tokens of every
+ * {@value #CHECKPOINT_INTERVAL}th step are stored completely, any other step is materialized on demand by applying the patches
+ * since the last of these checkpoints.
+ *
+ * <p>Example:
+ * <pre>{@code
+ *    StepTrace trace = StepTrace.record(new ArithmeticExpressionEvaluator(root, identifiers));
+ *    List<TokenPatch> patches = trace.getPatches(1);
+ *    TokenBuffer tokens = trace.materialize(trace.getStepCount() / 2);
+ * }</pre>
+ */
+public final class StepTrace {
+
+    /**
+     * The number of steps between two completely stored steps.
+     */
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * The evaluator performing the steps.
+     */
+    private final ArithmeticExpressionEvaluator evaluator;
+
+    /**
+     * The patches of every step.
+     */
+    private final List<List<TokenPatch>> steps = new ArrayList<>();
+
+    /**
+     * The tokens after every {@value #CHECKPOINT_INTERVAL}th step, starting with the tokens before the first step.
+     */
+    private final List<TokenBuffer> checkpoints = new ArrayList<>();
+
+    /**
+     * Constructs and initializes an empty trace of the given evaluator. The steps are recorded by {@link #advance()}.
+     *
+     * @param evaluator the evaluator performing the steps
+     *
+     * @throws NullPointerException if the evaluator is {@code null}
+     */
+    public StepTrace(ArithmeticExpressionEvaluator evaluator) {
+        this.evaluator = Objects.requireNonNull(evaluator, "evaluator null");
+        checkpoints.add(evaluator.getTokens());
+    }
+
+    /**
+     * Records all steps of the given evaluator until the expression is a literal.
+     *
+     * @param evaluator the evaluator performing the steps
+     *
+     * @return the trace of all steps
+     *
+     * @throws NullPointerException if the evaluator is {@code null}
+     * @throws RuntimeException     if a step fails
+     */
+    public static StepTrace record(ArithmeticExpressionEvaluator evaluator) {
+        StepTrace trace = new StepTrace(evaluator);
+        while (trace.advance()) {
+            // Record the next step
+        }
+        return trace;
+    }
+
+    /**
+     * Performs and records the next step unless the expression is already a literal.
+     *
+     * @return {@code true} if a step has been recorded
+     *
+     * @throws RuntimeException if the step fails, the trace is not changed in this case
+     */
+    public boolean advance() {
+        if (isFinished()) {
+            return false;
+        }
+        steps.add(List.copyOf(evaluator.nextStepPatches()));
+        if (steps.size() % CHECKPOINT_INTERVAL == 0) {
+            checkpoints.add(evaluator.getTokens());
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the expression is a literal, i.e. no further step changes it.
+     *
+     * @return {@code true} if the expression is a literal
+     */
+    public boolean isFinished() {
+        return evaluator.getRoot() instanceof LiteralExpressionNode;
+    }
+
+    /**
+     * Returns the number of recorded steps.
+     *
+     * @return the number of recorded steps
+     */
+    public int getStepCount() {
+        return steps.size();
+    }
+
+    /**
+     * Returns the patches of the given step.
+     *
+     * @param step the step, starting with 1
+     *
+     * @return the patches transforming the tokens of the previous step to the tokens of the given step
+     *
+     * @throws IndexOutOfBoundsException if the step has not been recorded
+     */
+    public List<TokenPatch> getPatches(int step) {
+        return steps.get(Objects.checkIndex(step - 1, steps.size()));
+    }
+
+    /**
+     * Returns the tokens after the given step. The tokens of step 0 are the tokens before the first step.
+     *
+     * @param step the step
+     *
+     * @return the tokens after the given step
+     *
+     * @throws IndexOutOfBoundsException if the step has not been recorded
+     */
+    public TokenBuffer materialize(int step) {
+        Objects.checkIndex(step, steps.size() + 1);
+        int checkpoint = step / CHECKPOINT_INTERVAL;
+        TokenBuffer tokens = checkpoints.get(checkpoint);
+        if (checkpoint * CHECKPOINT_INTERVAL == step) {
+            // Checkpoints are shared, so they must not be modified by the caller
+            TokenBuffer copy = new TokenBuffer(tokens.size());
+            copy.addAll(tokens, 0, tokens.size());
+            return copy;
+        }
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < step; i++) {
+            tokens = TokenPatch.apply(tokens, steps.get(i));
+        }
+        return tokens;
+    }
+}
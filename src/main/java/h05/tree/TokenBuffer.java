@@ -0,0 +1,482 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import h05.tree.ExpressionTokenizer.Token;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A compact sequence of tokens of an arithmetic expression. Every token is stored as a single {@code int} which encodes the
+ * {@link Token} type and, depending on the type, the {@link Operator} or the index of the number or identifier in a side pool.
+ * Brackets and operators therefore need no object at all and numbers are stored without their string representation.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Racket notation: (+ 1 a)</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    TokenBuffer tokens = new TokenBuffer();
+ *    tokens.addLeftBracket();
+ *    tokens.addOperator(Operator.ADD);
+ *    tokens.addNumber(new MyInteger(1));
+ *    tokens.addIdentifier("a");
+ *    tokens.addRightBracket();
+ *    ArithmeticExpressionNode root = ExpressionTreeHandler.buildRecursively(tokens.tokenizer());
+ * }</pre>
+ */
+public final class TokenBuffer {
+
+    /**
+     * The number of bits used to encode the token type.
+     */
+    private static final int TYPE_BITS = 3;
+
+    /**
+     * The mask of the bits used to encode the token type.
+     */
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    /**
+     * The cached token types to avoid copying {@link Token#values()} on every lookup.
+     */
+    private static final Token[] TOKENS = Token.values();
+
+    /**
+     * The cached operators to avoid copying {@link Operator#values()} on every lookup.
+     */
+    private static final Operator[] OPERATORS = Operator.values();
+
+    /**
+     * The default initial capacity of the buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The encoded tokens.
+     */
+    private int[] tokens;
+
+    /**
+     * The number of tokens.
+     */
+    private int size;
+
+    /**
+     * The pool of numbers referenced by the number tokens.
+     */
+    private MyNumber[] numbers = new MyNumber[0];
+
+    /**
+     * The number of used entries in the number pool.
+     */
+    private int numberCount;
+
+    /**
+     * The pool of identifiers referenced by the identifier tokens.
+     */
+    private String[] identifiers = new String[0];
+
+    /**
+     * The number of used entries in the identifier pool.
+     */
+    private int identifierCount;
+
+    /**
+     * Constructs and initializes an empty token buffer.
+     */
+    public TokenBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs and initializes an empty token buffer with the given initial capacity.
+     *
+     * @param capacity the initial capacity
+     *
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public TokenBuffer(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity < 0");
+        }
+        this.tokens = new int[capacity];
+    }
+
+    /**
+     * Returns the number of tokens in this buffer.
+     *
+     * @return the number of tokens in this buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this buffer contains no tokens.
+     *
+     * @return {@code true} if this buffer contains no tokens
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Appends a left bracket.
+     */
+    public void addLeftBracket() {
+        add(Token.LEFT_BRACKET, 0);
+    }
+
+    /**
+     * Appends a right bracket.
+     */
+    public void addRightBracket() {
+        add(Token.RIGHT_BRACKET, 0);
+    }
+
+    /**
+     * Appends an operator.
+     *
+     * @param operator the operator to append
+     *
+     * @throws NullPointerException if the operator is {@code null}
+     */
+    public void addOperator(Operator operator) {
+        add(Token.OPERATOR, operator.ordinal());
+    }
+
+    /**
+     * Appends a number.
+     *
+     * @param number the number to append
+     *
+     * @throws NullPointerException if the number is {@code null}
+     */
+    public void addNumber(MyNumber number) {
+        Objects.requireNonNull(number, "number null");
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, grow(numbers.length));
+        }
+        numbers[numberCount] = number;
+        add(Token.NUMBER, numberCount++);
+    }
+
+    /**
+     * Appends an identifier. The identifier is not validated, so any other token which is neither a bracket, an operator nor a
+     * number can be stored as an identifier.
+     *
+     * @param identifier the identifier to append
+     *
+     * @throws NullPointerException if the identifier is {@code null}
+     */
+    public void addIdentifier(String identifier) {
+        Objects.requireNonNull(identifier, "identifier null");
+        if (identifierCount == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, grow(identifiers.length));
+        }
+        identifiers[identifierCount] = identifier;
+        add(Token.IDENTIFIER, identifierCount++);
+    }
+
+    /**
+     * Appends the tokens of the given range of another buffer.
+     *
+     * @param other the buffer to copy the tokens from
+     * @param from  the index of the first token to copy (inclusive)
+     * @param to    the index of the last token to copy (exclusive)
+     *
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public void addAll(TokenBuffer other, int from, int to) {
+        Objects.checkFromToIndex(from, to, other.size);
+        for (int i = from; i < to; i++) {
+            switch (other.getToken(i)) {
+                case LEFT_BRACKET -> addLeftBracket();
+                case RIGHT_BRACKET -> addRightBracket();
+                case OPERATOR -> addOperator(other.getOperator(i));
+                case NUMBER -> addNumber(other.getNumber(i));
+                case IDENTIFIER -> addIdentifier(other.getIdentifier(i));
+            }
+        }
+    }
+
+    /**
+     * Removes all tokens after the given size. Pool entries which are only referenced by the removed tokens are released.
+     *
+     * @param newSize the number of tokens to keep
+     *
+     * @throws IndexOutOfBoundsException if the new size is negative or greater than the current size
+     */
+    public void truncate(int newSize) {
+        Objects.checkIndex(newSize, size + 1);
+        // Pool entries are appended in token order, so the first removed entry determines the new pool sizes
+        int newNumberCount = -1;
+        int newIdentifierCount = -1;
+        for (int i = newSize; i < size && (newNumberCount < 0 || newIdentifierCount < 0); i++) {
+            Token token = getToken(i);
+            if (token == Token.NUMBER && newNumberCount < 0) {
+                newNumberCount = payload(i);
+            } else if (token == Token.IDENTIFIER && newIdentifierCount < 0) {
+                newIdentifierCount = payload(i);
+            }
+        }
+        if (newNumberCount >= 0) {
+            Arrays.fill(numbers, newNumberCount, numberCount, null);
+            numberCount = newNumberCount;
+        }
+        if (newIdentifierCount >= 0) {
+            Arrays.fill(identifiers, newIdentifierCount, identifierCount, null);
+            identifierCount = newIdentifierCount;
+        }
+        size = newSize;
+    }
+
+    /**
+     * Removes all tokens.
+     */
+    public void clear() {
+        truncate(0);
+    }
+
+    /**
+     * Returns the type of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the type of the token at the given index
+     *
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public Token getToken(int index) {
+        return TOKENS[tokens[Objects.checkIndex(index, size)] & TYPE_MASK];
+    }
+
+    /**
+     * Returns the operator of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the operator of the token at the given index
+     *
+     * @throws IllegalStateException     if the token is not an operator
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public Operator getOperator(int index) {
+        checkToken(index, Token.OPERATOR);
+        return OPERATORS[payload(index)];
+    }
+
+    /**
+     * Returns the number of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the number of the token at the given index
+     *
+     * @throws IllegalStateException     if the token is not a number
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public MyNumber getNumber(int index) {
+        checkToken(index, Token.NUMBER);
+        return numbers[payload(index)];
+    }
+
+    /**
+     * Returns the identifier of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the identifier of the token at the given index
+     *
+     * @throws IllegalStateException     if the token is not an identifier
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public String getIdentifier(int index) {
+        checkToken(index, Token.IDENTIFIER);
+        return identifiers[payload(index)];
+    }
+
+    /**
+     * Returns the string representation of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the string representation of the token at the given index
+     *
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public String getText(int index) {
+        return switch (getToken(index)) {
+            case LEFT_BRACKET -> ArithmeticExpressionNode.LEFT_BRACKET;
+            case RIGHT_BRACKET -> ArithmeticExpressionNode.RIGHT_BRACKET;
+            case OPERATOR -> getOperator(index).toString();
+            case NUMBER -> getNumber(index).toString();
+            case IDENTIFIER -> getIdentifier(index);
+        };
+    }
+
+    /**
+     * Returns a tokenizer over all tokens of this buffer, e.g. for {@link ExpressionTreeHandler#buildRecursively(ExpressionTokenizer)}.
+     * The buffer must not be modified while the tokenizer is used.
+     *
+     * @return a tokenizer over all tokens of this buffer
+     */
+    public ExpressionTokenizer tokenizer() {
+        return tokenizer(0, size);
+    }
+
+    /**
+     * Returns a tokenizer over the tokens of the given range of this buffer. The buffer must not be modified while the tokenizer
+     * is used.
+     *
+     * @param from the index of the first token (inclusive)
+     * @param to   the index of the last token (exclusive)
+     *
+     * @return a tokenizer over the tokens of the given range of this buffer
+     *
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public ExpressionTokenizer tokenizer(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        return new BufferTokenizer(from, to);
+    }
+
+    /**
+     * Returns the string representations of all tokens of this buffer.
+     *
+     * @return the string representations of all tokens of this buffer
+     */
+    public List<String> toList() {
+        List<String> texts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            texts.add(getText(i));
+        }
+        return texts;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toList());
+    }
+
+    /**
+     * Appends an encoded token.
+     *
+     * @param token   the type of the token
+     * @param payload the operator ordinal or the pool index of the token
+     */
+    private void add(Token token, int payload) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, grow(tokens.length));
+        }
+        tokens[size++] = payload << TYPE_BITS | token.ordinal();
+    }
+
+    /**
+     * Returns the payload of the token at the given index.
+     *
+     * @param index the index of the token
+     *
+     * @return the payload of the token at the given index
+     */
+    private int payload(int index) {
+        return tokens[index] >>> TYPE_BITS;
+    }
+
+    /**
+     * Checks that the token at the given index has the given type.
+     *
+     * @param index    the index of the token
+     * @param expected the expected type of the token
+     *
+     * @throws IllegalStateException     if the token has another type
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    private void checkToken(int index, Token expected) {
+        Token actual = getToken(index);
+        if (actual != expected) {
+            throw new IllegalStateException(String.format("token %d is %s, not %s", index, actual, expected));
+        }
+    }
+
+    /**
+     * Returns the new capacity of an array which is full.
+     *
+     * @param capacity the current capacity
+     *
+     * @return the new capacity
+     */
+    private static int grow(int capacity) {
+        return Math.max(DEFAULT_CAPACITY, capacity + (capacity >> 1));
+    }
+
+    /**
+     * A tokenizer over a range of the buffer.
+     */
+    private final class BufferTokenizer implements ExpressionTokenizer {
+
+        /**
+         * The index of the next token.
+         */
+        private int index;
+
+        /**
+         * The index after the last token of the range.
+         */
+        private final int end;
+
+        /**
+         * The index of the current token or {@code -1} if {@link #next()} has not been called yet.
+         */
+        private int current = -1;
+
+        /**
+         * Constructs and initializes a tokenizer over the given range.
+         *
+         * @param from the index of the first token (inclusive)
+         * @param to   the index of the last token (exclusive)
+         */
+        BufferTokenizer(int from, int to) {
+            this.index = from;
+            this.end = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public Token next() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+            current = index++;
+            return getToken(current);
+        }
+
+        @Override
+        public @Nullable Operator getOperator() {
+            return current >= 0 && getToken(current) == Token.OPERATOR ? TokenBuffer.this.getOperator(current) : null;
+        }
+
+        @Override
+        public @Nullable MyNumber getNumber() {
+            return current >= 0 && getToken(current) == Token.NUMBER ? TokenBuffer.this.getNumber(current) : null;
+        }
+
+        @Override
+        public String getText() {
+            if (current < 0) {
+                throw new IllegalStateException("no current token");
+            }
+            return TokenBuffer.this.getText(current);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A change of the tokens of an expression by an evaluation step: the tokens starting at an offset are replaced by a single
+ * number, see {@link ArithmeticExpressionEvaluator#nextStepPatches()}. The offsets of all patches of a step refer to the tokens
+ * before the step, the patches are sorted by their offsets and do not overlap.
+ *
+ * <p>Example:
+ * <ul>
+ *     <li>Tokens before the step: ( + 1 ( * 2 3 ) )</li>
+ *     <li>Patch: offset 3, 5 removed tokens, replacement 6</li>
+ *     <li>Tokens after the step: ( + 1 6 )</li>
+ * </ul>
+ *
+ * <pre>{@code
+ *    TokenBuffer tokens = evaluator.getTokens();
+ *    tokens = TokenPatch.apply(tokens, evaluator.nextStepPatches());
+ * }</pre>
+ */
+public final class TokenPatch {
+
+    /**
+     * The index of the first replaced token.
+     */
+    private final int offset;
+
+    /**
+     * The number of replaced tokens.
+     */
+    private final int removed;
+
+    /**
+     * The number replacing the tokens.
+     */
+    private final MyNumber replacement;
+
+    /**
+     * Constructs and initializes a token patch.
+     *
+     * @param offset      the index of the first replaced token
+     * @param removed     the number of replaced tokens
+     * @param replacement the number replacing the tokens
+     */
+    TokenPatch(int offset, int removed, MyNumber replacement) {
+        this.offset = offset;
+        this.removed = removed;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Returns the index of the first replaced token.
+     *
+     * @return the index of the first replaced token
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of replaced tokens.
+     *
+     * @return the number of replaced tokens
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the number replacing the tokens.
+     *
+     * @return the number replacing the tokens
+     */
+    public MyNumber getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * Applies the patches of a step to the given tokens. The given tokens are not modified.
+     *
+     * @param tokens  the tokens before the step
+     * @param patches the patches of the step sorted by their offsets
+     *
+     * @return the tokens after the step
+     *
+     * @throws IndexOutOfBoundsException if a patch is out of bounds or the patches overlap
+     * @throws NullPointerException      if the tokens or the patches are {@code null}
+     */
+    public static TokenBuffer apply(TokenBuffer tokens, List<TokenPatch> patches) {
+        Objects.requireNonNull(tokens, "tokens null");
+        TokenBuffer result = new TokenBuffer(tokens.size());
+        int position = 0;
+        for (TokenPatch patch : patches) {
+            result.addAll(tokens, position, patch.offset);
+            result.addNumber(patch.replacement);
+            position = patch.offset + patch.removed;
+        }
+        result.addAll(tokens, position, tokens.size());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return offset + "+" + removed + " -> " + replacement;
+    }
+}
@@ -0,0 +1,75 @@
+package h05.math;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MyIntegerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "                   1,                    2",
+        "                  -7,                   13",
+        " 9223372036854775807,                    1",
+        "-9223372036854775808,                   -1",
+        " 9223372036854775807,  9223372036854775807",
+        "-9223372036854775808, -9223372036854775808",
+        "          4294967296,           4294967296",
+        "          3037000500,          -3037000500",
+    })
+    public void testThat_longArithmeticPromotesOnOverflow(long x, long y) {
+        var bigX = BigInteger.valueOf(x);
+        var bigY = BigInteger.valueOf(y);
+
+        assertIsInteger(bigX.add(bigY), new MyInteger(x).plus(new MyInteger(y)));
+        assertIsInteger(bigX.subtract(bigY), new MyInteger(x).minus(new MyInteger(y)));
+        assertIsInteger(bigX.multiply(bigY), new MyInteger(x).times(new MyInteger(y)));
+        assertIsInteger(bigX.negate(), new MyInteger(x).negate());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        " 2, 62",
+        " 2, 63",
+        "-2, 63",
+        " 3, 40",
+        "10, 19",
+        "10, 25",
+    })
+    public void testThat_exptPromotesOnOverflow(long base, int exponent) {
+        assertIsInteger(
+            BigInteger.valueOf(base).pow(exponent),
+            new MyInteger(base).expt(new MyInteger(exponent)));
+    }
+
+    @Test
+    public void testThat_longAndBigIntegerRepresentationsAreEqual() {
+        var small = new MyInteger(42);
+        var big = new MyInteger(BigInteger.valueOf(42));
+        assertEquals(small, big);
+        assertEquals(big, small);
+        assertEquals(small.hashCode(), big.hashCode());
+        assertEquals(BigInteger.valueOf(42), small.toInteger());
+        assertTrue(new MyInteger(0).isZero());
+    }
+
+    @Test
+    public void testThat_valueFieldIsAlwaysPopulated() throws ReflectiveOperationException {
+        var field = MyInteger.class.getDeclaredField("value");
+        field.setAccessible(true);
+        assertEquals(BigInteger.valueOf(42), field.get(new MyInteger(42)));
+        assertEquals(BigInteger.valueOf(5), field.get(new MyInteger(2).plus(new MyInteger(3))));
+        assertEquals(BigInteger.valueOf(-8), field.get(new MyInteger(-2).expt(new MyInteger(3))));
+    }
+
+    private static void assertIsInteger(BigInteger expected, MyNumber actual) {
+        assertInstanceOf(MyInteger.class, actual);
+        assertEquals(new MyInteger(expected), actual);
+        assertEquals(expected, actual.toInteger());
+        assertEquals(expected.toString(), actual.toString());
+    }
+}
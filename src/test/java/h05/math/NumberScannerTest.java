@@ -0,0 +1,72 @@
+package h05.math;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NumberScannerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "int,   0,                                      0",
+        "int,   -0,                                     0",
+        "int,   123,                                    123",
+        "int,   -9223372036854775808,                   -9223372036854775808",
+        "int,   123456789012345678901234567890,         123456789012345678901234567890",
+        "real,  2.5,                                    2.5",
+        "real,  -0.125,                                 -0.125",
+        "real,  12345678901234567890.5,                 12345678901234567890.5",
+        "ratio, -3/6,                                   -1/2",
+        "ratio, 123456789012345678901/3,                123456789012345678901/3",
+    })
+    public void testThat_parseNumberWorks(String type, String token, String expected) {
+        var actual = NumberScanner.parseNumber(token, 0, token.length());
+        assertTrue(NumberScanner.isNumber(token, 0, token.length()));
+
+        switch (type) {
+            case "int" -> assertEquals(new MyInteger(new BigInteger(expected)), actual);
+            case "real" -> assertEquals(new MyReal(new BigDecimal(expected)), actual);
+            case "ratio" -> {
+                var parts = expected.split("/");
+                assertEquals(new MyRational(new Rational(new BigInteger(parts[0]), new BigInteger(parts[1]))), actual);
+            }
+            default -> throw new IllegalArgumentException(type);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "''",
+        "-",
+        "a",
+        "1a",
+        "1.",
+        ".5",
+        "1/",
+        "/2",
+        "1.2.3",
+        "1/2/3",
+        "--1",
+        "1-",
+        "+1",
+    })
+    public void testThat_invalidNumbersAreRejected(String token) {
+        assertFalse(NumberScanner.isNumber(token, 0, token.length()));
+        assertNull(NumberScanner.tryParseNumber(token, 0, token.length()));
+        assertThrows(NumberFormatException.class, () -> NumberScanner.parseNumber(token, 0, token.length()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "(+ 12 x),  3, 5,  12",
+        "(+ 1/4 x), 3, 6,  1/4",
+        "(- -2.5),  3, 7,  -2.5",
+    })
+    public void testThat_rangesAreParsed(String expression, int start, int end, String expected) {
+        assertEquals(MyNumber.parseNumber(expected), NumberScanner.parseNumber(expression, start, end));
+    }
+}
@@ -0,0 +1,81 @@
+package h05.math;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RationalTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "                  10,                  -15",
+        "                  -3,                    4",
+        "                   0,                    7",
+        " 9223372036854775807,                    3",
+        "-9223372036854775808,                    6",
+        "                   6, -9223372036854775808",
+    })
+    public void testThat_longConstructorMatchesBigIntegerConstructor(long numerator, long denominator) {
+        var expected = new Rational(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+        var actual = new Rational(numerator, denominator);
+        assertEquals(expected.getNumerator(), actual.getNumerator());
+        assertEquals(expected.getDenominator(), actual.getDenominator());
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "                  1,  3,                   1,  7",
+        "                 -2,  9,                   5, 12",
+        "9223372036854775807,  2, 9223372036854775807,  3",
+        "         4294967296,  5,          4294967296, 11",
+    })
+    public void testThat_arithmeticPromotesOnOverflow(long a, long b, long c, long d) {
+        var x = new Rational(a, b);
+        var y = new Rational(c, d);
+        var bigA = BigInteger.valueOf(a);
+        var bigB = BigInteger.valueOf(b);
+        var bigC = BigInteger.valueOf(c);
+        var bigD = BigInteger.valueOf(d);
+
+        assertEquals(new Rational(bigA.multiply(bigD).add(bigB.multiply(bigC)), bigB.multiply(bigD)), x.plus(y));
+        assertEquals(new Rational(bigA.multiply(bigD).subtract(bigB.multiply(bigC)), bigB.multiply(bigD)), x.minus(y));
+        assertEquals(new Rational(bigA.multiply(bigC), bigB.multiply(bigD)), x.times(y));
+        assertEquals(new Rational(bigA.multiply(bigD), bigB.multiply(bigC)), x.divide(y));
+    }
+
+    @Test
+    public void testThat_divisionByZeroThrows() {
+        assertThrows(ArithmeticException.class, () -> new Rational(1, 0));
+        assertThrows(ArithmeticException.class, () -> new Rational(3, 4).divide(Rational.ZERO));
+        assertThrows(ArithmeticException.class, () -> Rational.ZERO.inverse());
+    }
+
+    @Test
+    public void testThat_gcdIsComputed() {
+        assertEquals(6, Rational.gcd(48, 18));
+        assertEquals(7, Rational.gcd(0, 7));
+        assertEquals(1, Rational.gcd(17, 5));
+        assertEquals(1L << 40, Rational.gcd(1L << 40, 3L << 41));
+    }
+
+    @Test
+    public void testThat_fractionFieldsAreAlwaysPopulated() throws ReflectiveOperationException {
+        var numerator = Rational.class.getDeclaredField("numerator");
+        var denominator = Rational.class.getDeclaredField("denominator");
+        numerator.setAccessible(true);
+        denominator.setAccessible(true);
+        var rational = new Rational(6, -4);
+        assertEquals(BigInteger.valueOf(-3), numerator.get(rational));
+        assertEquals(BigInteger.valueOf(2), denominator.get(rational));
+        var sum = new Rational(1, 2).plus(new Rational(1, 3));
+        assertEquals(BigInteger.valueOf(5), numerator.get(sum));
+        assertEquals(BigInteger.valueOf(6), denominator.get(sum));
+    }
+}
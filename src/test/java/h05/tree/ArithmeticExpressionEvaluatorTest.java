@@ -0,0 +1,232 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.WrongOperandException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.MyReal;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static h05.tree.TestExpressions.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArithmeticExpressionEvaluatorTest {
+
+    @Test
+    public void testThat_stepsReduceAllInnermostExpressions() {
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(+ x (* 2 (- 3 y)) (+) (sqrt 4.0))"), Map.of(
+            "x", new MyReal(new BigDecimal("1.50")),
+            "y", MyNumber.parseNumber("4/2")));
+
+        assertEquals(List.of("(", "+", "1.5", "(", "*", "2", "1", ")", "0", "2", ")"), evaluator.nextStep());
+        assertEquals("(+ 1.5 (* 2 1) 0 2)", evaluator.getRoot().toString());
+        assertEquals(List.of("(", "+", "1.5", "2", "0", "2", ")"), evaluator.nextStep());
+        assertEquals(List.of("5.5"), evaluator.nextStep());
+        assertEquals(List.of("5.5"), evaluator.nextStep());
+        assertInstanceOf(LiteralExpressionNode.class, evaluator.getRoot());
+    }
+
+    @Test
+    public void testThat_failedStepsKeepTheTree() {
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(- (* x 2) (/ 1 (- x 3)))"), Map.of("x", new MyInteger(3)));
+
+        assertEquals(List.of("(", "-", "6", "(", "/", "1", "0", ")", ")"), evaluator.nextStep());
+        assertThrows(WrongOperandException.class, evaluator::nextStep);
+        assertEquals("(- 6 (/ 1 0))", evaluator.getRoot().toString());
+        assertThrows(WrongOperandException.class, evaluator::nextStep);
+    }
+
+    @Test
+    public void testThat_unknownIdentifiersAreLookedUpAgain() {
+        Map<String, MyNumber> identifiers = new HashMap<>();
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(+ x (* 2 3))"), identifiers);
+
+        assertThrows(IllegalIdentifierExceptions.class, evaluator::nextStep);
+        assertEquals("(+ x (* 2 3))", evaluator.getRoot().toString());
+        identifiers.put("x", new MyInteger(4));
+        assertEquals(List.of("(", "+", "4", "6", ")"), evaluator.nextStep());
+        assertEquals(List.of("10"), evaluator.nextStep());
+    }
+
+    @Test
+    public void testThat_patchesDescribeTheChangedTokens() {
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(+ x (* 2 (- 3 y)) 4.0 (* 1 2))"), Map.of(
+            "x", new MyInteger(5),
+            "y", new MyInteger(1)));
+        var tokens = evaluator.getTokens();
+
+        var patches = evaluator.nextStepPatches();
+        assertEquals("[2+1 -> 5, 6+5 -> 2, 12+1 -> 4, 13+5 -> 2]", patches.toString());
+        tokens = TokenPatch.apply(tokens, patches);
+        assertEquals("( + 5 ( * 2 2 ) 4 2 )", tokens.toString());
+
+        patches = evaluator.nextStepPatches();
+        assertEquals("[3+5 -> 4]", patches.toString());
+        assertEquals("( + 5 4 4 2 )", TokenPatch.apply(tokens, patches).toString());
+        assertEquals("[0+7 -> 15]", evaluator.nextStepPatches().toString());
+        assertEquals(List.of(), evaluator.nextStepPatches());
+    }
+
+    @Test
+    public void testThat_traceMaterializesEveryStep() {
+        var expression = new StringBuilder("x");
+        for (int i = 0; i < 150; i++) {
+            expression.insert(0, "(+ 1 (* 2 ").append("))");
+        }
+        var root = parse(expression.toString());
+        Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(1));
+        var trace = StepTrace.record(new ArithmeticExpressionEvaluator(root, identifiers));
+
+        assertTrue(trace.isFinished());
+        assertEquals(300, trace.getStepCount());
+        var evaluator = new ArithmeticExpressionEvaluator(root, identifiers);
+        assertEquals(evaluator.getTokens().toString(), trace.materialize(0).toString());
+        for (int step = 1; step <= trace.getStepCount(); step++) {
+            assertEquals(evaluator.nextStepTokens().toString(), trace.materialize(step).toString());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> trace.materialize(301));
+        assertThrows(IndexOutOfBoundsException.class, () -> trace.getPatches(0));
+    }
+
+    @Test
+    public void testThat_peekedStepsEqualPerformedSteps() {
+        var root = parse("(+ x (* 2 (- 3 y)) (/ (expt 2 3) (sqrt (* x 4))) 4.0)");
+        Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(4), "y", MyNumber.parseNumber("1/2"));
+        var evaluator = new ArithmeticExpressionEvaluator(root, identifiers);
+
+        assertEquals(4, evaluator.countSteps());
+        var peeked = new ArrayList<List<String>>();
+        for (int step = 0; step <= 5; step++) {
+            peeked.add(evaluator.peekStep(step));
+        }
+        assertEquals(root.toString(), evaluator.getRoot().toString());
+        assertEquals(evaluator.getTokens().toList(), peeked.get(0));
+        for (int step = 1; step <= 5; step++) {
+            assertEquals(evaluator.nextStep(), peeked.get(step));
+            assertEquals(Math.max(4 - step, 0), evaluator.countSteps());
+        }
+        assertEquals(List.of("15"), evaluator.peekStep(1));
+    }
+
+    @Test
+    public void testThat_countedStepsCoverIdentifiersAndLiterals() {
+        assertEquals(0, new ArithmeticExpressionEvaluator(parse("2.5"), Map.of()).countSteps());
+        assertEquals(1, new ArithmeticExpressionEvaluator(parse("x"), Map.of("x", new MyInteger(1))).countSteps());
+        assertEquals(1, new ArithmeticExpressionEvaluator(parse("(+ x 1)"), Map.of("x", new MyInteger(1))).countSteps());
+        assertEquals(List.of("1"), new ArithmeticExpressionEvaluator(parse("x"), Map.of("x", new MyInteger(1))).peekStep(1));
+    }
+
+    @Test
+    public void testThat_peekingFailingStepsThrows() {
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(- (* x 2) (/ 1 (- x 3)))"), Map.of("x", new MyInteger(3)));
+
+        assertEquals(List.of("(", "-", "6", "(", "/", "1", "0", ")", ")"), evaluator.peekStep(1));
+        assertThrows(WrongOperandException.class, () -> evaluator.peekStep(2));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.peekStep(-1));
+        assertThrows(IllegalIdentifierExceptions.class, () -> new ArithmeticExpressionEvaluator(parse("(+ x 1)"), Map.of()).peekStep(1));
+        assertEquals("(- (* x 2) (/ 1 (- x 3)))", evaluator.getRoot().toString());
+    }
+
+    @Test
+    public void testThat_undoneStepsRestoreTheTree() {
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(+ x (* 2 (- 3 y)) 4.0)"), Map.of(
+            "x", new MyInteger(5),
+            "y", new MyInteger(1)));
+        var root = evaluator.getRoot();
+        var expression = root.toString();
+
+        assertFalse(evaluator.undo());
+        var first = evaluator.nextStep();
+        var second = evaluator.nextStep();
+        assertEquals(List.of("13"), evaluator.nextStep());
+
+        assertTrue(evaluator.undo());
+        assertEquals(second, evaluator.getTokens().toList());
+        assertTrue(evaluator.undo());
+        assertEquals(first, evaluator.getTokens().toList());
+        assertTrue(evaluator.undo());
+        assertEquals(expression, evaluator.getRoot().toString());
+        assertSame(root, evaluator.getRoot());
+        assertFalse(evaluator.undo());
+
+        assertTrue(evaluator.redo());
+        assertEquals(first, evaluator.getTokens().toList());
+        assertEquals(2, evaluator.countSteps());
+        assertEquals("[3+5 -> 4]", evaluator.nextStepPatches().toString());
+        assertFalse(evaluator.redo());
+        assertTrue(evaluator.undo());
+        assertTrue(evaluator.redo());
+        assertEquals(List.of("13"), evaluator.nextStep());
+    }
+
+    @Test
+    public void testThat_undoneFirstStepLooksUpIdentifiersAgain() {
+        Map<String, MyNumber> identifiers = new HashMap<>(Map.of("x", new MyInteger(1)));
+        var evaluator = new ArithmeticExpressionEvaluator(parse("(* x (+ x 1))"), identifiers);
+
+        assertEquals(List.of("(", "*", "1", "2", ")"), evaluator.nextStep());
+        assertTrue(evaluator.undo());
+        identifiers.put("x", new MyInteger(3));
+        assertTrue(evaluator.redo());
+        assertEquals(List.of("(", "*", "1", "2", ")"), evaluator.getTokens().toList());
+        assertTrue(evaluator.undo());
+        assertEquals(List.of("(", "*", "3", "4", ")"), evaluator.nextStep());
+        assertFalse(evaluator.redo());
+    }
+
+    @Test
+    public void testThat_parallelStepsMatchSequentialSteps() {
+        var expression = new StringBuilder("(+");
+        for (int i = 0; i < 2000; i++) {
+            expression.append(" (* (- x ").append(i).append(") (/ ").append(i + 1).append(" 3))");
+        }
+        var root = parse(expression.append(")").toString());
+        Map<String, MyNumber> identifiers = Map.of("x", MyNumber.parseNumber("1/2"));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            var parallel = new ArithmeticExpressionEvaluator(root, identifiers, pool);
+            var sequential = new ArithmeticExpressionEvaluator(root, identifiers);
+            assertEquals(sequential.peekStep(2), parallel.peekStep(2));
+            assertEquals(sequential.nextStepPatches().toString(), parallel.nextStepPatches().toString());
+            assertEquals(sequential.nextStep(), parallel.nextStep());
+            assertEquals(sequential.nextStep(), parallel.nextStep());
+            assertInstanceOf(LiteralExpressionNode.class, parallel.getRoot());
+
+            expression.insert(expression.length() - 1, " (/ 1 (- x x)) (/ 1 0)");
+            var failing = new ArithmeticExpressionEvaluator(parse(expression.toString()), identifiers, pool);
+            var expected = assertThrows(WrongOperandException.class, () -> new ArithmeticExpressionEvaluator(
+                parse(expression.toString()), identifiers).nextStep());
+            assertEquals(expected.getMessage(), assertThrows(WrongOperandException.class, failing::nextStep).getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testThat_nextStepTokensWorks() {
+        var root = parse("(+ x (* 1.5 (- 1/2 y)) (/ 8 (* 1 2.5)))");
+        Map<String, MyNumber> identifiers = Map.of(
+            "x", new MyReal(new BigDecimal("2.0")),
+            "y", MyNumber.parseNumber("1/3"));
+        var evaluator = new ArithmeticExpressionEvaluator(root, identifiers);
+
+        // The real 2.0 is represented as 2 and becomes an integer like in the string based steps
+        assertNextStep(evaluator, "( + 2 ( * 1.5 1/6 ) ( / 8 2.5 ) )", "(+ 2 (* 1.5 1/6) (/ 8 2.5))");
+        assertNextStep(evaluator, "( + 2 0.250000000000001 3.2 )", "(+ 2 0.250000000000001 3.2)");
+        assertNextStep(evaluator, "5.450000000000001", "5.450000000000001");
+        assertNextStep(evaluator, "5.450000000000001", "5.450000000000001");
+    }
+
+    private static void assertNextStep(ArithmeticExpressionEvaluator evaluator, String expected, String expectedRoot) {
+        var tokens = evaluator.nextStepTokens();
+        assertEquals(expected, tokens.toString());
+        assertEquals(expectedRoot, evaluator.getRoot().toString());
+    }
+}
@@ -0,0 +1,90 @@
+package h05.tree;
+
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionDagTest {
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    public void testThat_dagMatchesTree(String expected, String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var dag = ExpressionDag.of(root);
+
+        assertEquals(root.evaluate(Map.of()), dag.evaluate(Map.of()));
+        assertEquals(root.evaluate(Map.of()), dag.getRoot().evaluate(Map.of()));
+        assertEquals(root.toString(), dag.toString());
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/bad_expressions.csv", numLinesToSkip = 1)
+    public void testThat_dagThrowsLikeTree(String exception, String message, String expression) {
+        ArithmeticExpressionNode root;
+        try {
+            root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        } catch (RuntimeException e) {
+            // Only evaluation errors are relevant
+            return;
+        }
+        var dag = ExpressionDag.of(root);
+        var expected = assertThrows(RuntimeException.class, () -> root.evaluate(Map.of()));
+        var actual = assertThrows(RuntimeException.class, () -> dag.evaluate(Map.of()));
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    public void testThat_equalSubtreesAreShared() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(
+            "(+ (sqrt (+ (* x x) (* y y))) (* 2 (sqrt (+ (* x x) (* y y)))) 2.0)"));
+        var dag = ExpressionDag.of(root);
+
+        // x, y, 2, 2.0, (* x x), (* y y), (+ ...), (sqrt ...), (* 2 ...) and the root
+        assertEquals(10, dag.getNodeCount());
+        var operands = ((OperationExpressionNode) dag.getRoot()).getOperands();
+        var scaled = ((OperationExpressionNode) operands.next.key).getOperands();
+        assertSame(operands.key, scaled.next.key);
+        assertNotSame(scaled.key, operands.next.next.key);
+    }
+
+    @Test
+    public void testThat_sharedNodesAreEvaluatedOnce() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(
+            "(+ (sqrt (+ (* x x) (* y y))) (* 2 (sqrt (+ (* x x) (* y y)))))"));
+        var dag = ExpressionDag.of(root);
+        var lookups = new HashMap<String, Integer>();
+        Map<String, MyNumber> identifiers = new HashMap<>(Map.of("x", new MyInteger(3), "y", new MyInteger(4))) {
+            @Override
+            public MyNumber get(Object key) {
+                lookups.merge((String) key, 1, Integer::sum);
+                return super.get(key);
+            }
+        };
+
+        assertEquals(new MyInteger(15), root.evaluate(identifiers));
+        assertEquals(Map.of("x", 4, "y", 4), lookups);
+        lookups.clear();
+        assertEquals(new MyInteger(15), dag.evaluate(identifiers));
+        assertEquals(Map.of("x", 1, "y", 1), lookups);
+    }
+
+    @Test
+    public void testThat_internerSharesNodesBetweenTrees() {
+        var interner = new ExpressionInterner();
+        var first = interner.intern(ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(* (+ a 1) b)")));
+        var second = interner.intern(ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(- (+ a 1))")));
+
+        assertEquals(6, interner.size());
+        assertSame(((OperationExpressionNode) first).getOperands().key, ((OperationExpressionNode) second).getOperands().key);
+        assertSame(first, interner.intern(first));
+        assertEquals(6, interner.size());
+    }
+}
@@ -0,0 +1,163 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.MyRational;
+import h05.math.MyReal;
+import h05.math.Rational;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionOptimizerTest {
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    public void testThat_constantExpressionsAreFoldedToLiterals(String expected, String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var result = ExpressionOptimizer.foldConstants(root);
+
+        assertInstanceOf(LiteralExpressionNode.class, result.getRoot());
+        var value = ((LiteralExpressionNode) result.getRoot()).getValue();
+        assertEquals(root.evaluate(Map.of()), value);
+        assertEquals(root.evaluate(Map.of()).getClass(), value.getClass());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(* 2 (+ 3 4) x)',                   '(* 2 7 x)',                     2",
+        "'(+ x (* 2 pi))',                    '(+ x 6.283185307179586)',       2",
+        "'(- (/ 1 3) (+ x (/ 1 6)) (sqrt 4))', '(- 1/3 (+ x 1/6) 2)',          5",
+        "'(+ x (/ 1 0) (* 2 3))',             '(+ x (/ 1 0) 6)',               2",
+        "'(+ x y)',                           '(+ x y)',                       0",
+    })
+    public void testThat_onlyConstantSubtreesAreFolded(String expression, String expected, int eliminated) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var result = ExpressionOptimizer.foldConstants(root);
+
+        assertEquals(expected, result.getRoot().toString());
+        assertEquals(eliminated, result.getEliminatedNodes());
+        assertEquals(expression, root.toString());
+    }
+
+    @Test
+    public void testThat_foldedTreeEvaluatesLikeOriginal() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (* 1/2 x) (* 1/4 2) (- 0.5 1/2))"));
+        var folded = ExpressionOptimizer.foldConstants(root).getRoot();
+
+        for (int i = -3; i <= 3; i++) {
+            Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(i));
+            MyNumber expected = root.evaluate(identifiers);
+            MyNumber actual = folded.evaluate(identifiers);
+            assertEquals(expected, actual);
+            assertEquals(expected.getClass(), actual.getClass());
+        }
+        assertEquals(new MyRational(new Rational(BigInteger.ONE, BigInteger.TWO)),
+            ((LiteralExpressionNode) ((OperationExpressionNode) folded).getOperands().next.key).getValue());
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/bad_expressions.csv", numLinesToSkip = 1)
+    public void testThat_foldedTreeThrowsLikeOriginal(String exception, String message, String expression) {
+        ArithmeticExpressionNode root;
+        try {
+            root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        } catch (RuntimeException e) {
+            // Only evaluation errors are relevant
+            return;
+        }
+        var folded = ExpressionOptimizer.foldConstants(root).getRoot();
+        var expected = assertThrows(RuntimeException.class, () -> root.evaluate(Map.of()));
+        var actual = assertThrows(RuntimeException.class, () -> folded.evaluate(Map.of()));
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ (+ (+ a b) c) d)',               '(+ a b c d)',                   2",
+        "'(* (* (* x)) y)',                   '(* x y)',                       2",
+        "'(* x)',                             'x',                             1",
+        "'(+ 0 1/2 x)',                       '(+ 1/2 x)',                     1",
+        "'(* 2 1 x 1)',                       '(* 2 x 1)',                     1",
+        "'(* 1 x)',                           '(* 1 x)',                       0",
+        "'(+ x 0)',                           '(+ x 0)',                       0",
+        "'(* x (+ y z) 0)',                   '0',                             5",
+        "'(* x (/ y 2) 0)',                   '(* x (/ y 2) 0)',               0",
+        "'(+ a (+ b c))',                     '(+ a (+ b c))',                 0",
+        "'(- (+ (+ a) 0 1) (* (* 1 2) x))',   '(- (+ a 0 1) (* 2 x))',         3",
+    })
+    public void testThat_simplifyFlattensAndRemovesIdentities(String expression, String expected, int eliminated) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var result = ExpressionOptimizer.simplify(root);
+
+        assertEquals(expected, result.getRoot().toString());
+        assertEquals(eliminated, result.getEliminatedNodes());
+        assertEquals(expression, root.toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ (+ (+ a b) c) d)'",
+        "'(/ (* 1 b) 3)'",
+        "'(* (+ 0 a) (* 1 b) (+ c 0) (* 2 1))'",
+        "'(* 0 (/ 0 -3) c)'",
+        "'(+ (* (* a b) c) (* a 0 0.5) (+ 0 1/2 c))'",
+    })
+    public void testThat_simplifiedTreeEvaluatesLikeOriginal(String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var simplified = ExpressionOptimizer.simplify(root).getRoot();
+        Map<String, MyNumber> identifiers = Map.of(
+            "a", MyNumber.parseNumber("3/4"),
+            "b", new MyReal(new BigDecimal("2.0")),
+            "c", MyNumber.parseNumber("2.50"),
+            "d", new MyInteger(-7));
+
+        MyNumber expected = root.evaluate(identifiers);
+        MyNumber actual = simplified.evaluate(identifiers);
+        assertEquals(expected, actual);
+        assertEquals(expected.getClass(), actual.getClass());
+    }
+
+    @Test
+    public void testThat_partialEvaluationLeavesResidualTree() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(
+            "(+ (* rate (+ base 1/2)) (/ x (* rate pi)) (sqrt base))"));
+        Map<String, MyNumber> bound = Map.of("rate", MyNumber.parseNumber("3/4"), "base", new MyInteger(4));
+        var result = ExpressionOptimizer.partiallyEvaluate(root, bound);
+
+        assertEquals("(+ 27/8 (/ x 2.356194490192345) 2)", result.getRoot().toString());
+        assertEquals(7, result.getEliminatedNodes());
+        for (int i = -3; i <= 3; i++) {
+            Map<String, MyNumber> all = new HashMap<>(bound);
+            all.put("x", new MyInteger(i));
+            MyNumber expected = root.evaluate(all);
+            MyNumber actual = result.getRoot().evaluate(Map.of("x", new MyInteger(i)));
+            assertEquals(expected, actual);
+            assertEquals(expected.getClass(), actual.getClass());
+        }
+    }
+
+    @Test
+    public void testThat_partialEvaluationReportsErrorsLikeEvaluation() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (/ a 0) (* e b))"));
+        var residual = ExpressionOptimizer.partiallyEvaluate(root, Map.of("a", new MyInteger(1))).getRoot();
+
+        assertEquals("(+ (/ 1 0) (* 2.718281828459045 b))", residual.toString());
+        var expected = assertThrows(RuntimeException.class, () -> root.evaluate(Map.of("a", new MyInteger(1))));
+        var actual = assertThrows(RuntimeException.class, () -> residual.evaluate(Map.of()));
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertThrows(IllegalIdentifierExceptions.class,
+            () -> ExpressionOptimizer.partiallyEvaluate(root, Map.of("e", new MyInteger(3))));
+    }
+}
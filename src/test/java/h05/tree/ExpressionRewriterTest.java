@@ -0,0 +1,153 @@
+package h05.tree;
+
+import h05.exception.WrongOperandException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionRewriterTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ (expt 3 2) (expt 2.5 2))',       '(+ (* 3 3) (* 2.5 2.5))'",
+        "'(+ (expt x 2) (expt (+ x 1) 2))',   '(+ (expt x 2) (expt (+ x 1) 2))'",
+        "'(+ (expt -5/2 2) (expt 1/2 2))',    '(+ (expt -5/2 2) (expt 1/2 2))'",
+        "'(+ (expt -2.5 2) (expt x 2))',      '(+ (expt -2.5 2) (expt x 2))'",
+        "'(expt (sqrt x) 2)',                 '(* (sqrt x) (sqrt x))'",
+        "'(exp (* 2 (ln 5)))',                '(* 5 5)'",
+        "'(exp (* 2 (ln 5/2)))',              '(expt 5/2 2)'",
+        "'(exp (* (ln (exp x)) 3))',          '(expt (exp x) 3)'",
+        "'(exp (* 1/2 (ln (sqrt 3))))',       '(expt (sqrt 3) 1/2)'",
+        "'(exp (* 2 (ln x)))',                '(exp (* 2 (ln x)))'",
+        "'(exp (* 2 (ln (sqrt x))))',         '(exp (* 2 (ln (sqrt x))))'",
+        "'(exp (* -1 (ln 2)))',               '(exp (* -1 (ln 2)))'",
+        "'(exp (* k (ln 2)))',                '(exp (* k (ln 2)))'",
+        "'(/ x 3)',                           '(* x 1/3)'",
+        "'(/ x 3/4)',                         '(* x 4/3)'",
+        "'(/ x -3/4)',                        '(/ x -3/4)'",
+        "'(/ x 0)',                           '(/ x 0)'",
+        "'(/ x 2.5)',                         '(/ x 2.5)'",
+        "'(sqrt (* (sqrt y) (sqrt y)))',      '(sqrt y)'",
+        "'(sqrt (expt (exp y) 2))',           '(exp y)'",
+        "'(sqrt (expt 0 2))',                 '0'",
+        "'(sqrt (expt -3 2))',                '(sqrt (* -3 -3))'",
+        "'(sqrt (expt x 2))',                 '(sqrt (expt x 2))'",
+        "'(sqrt (* x x))',                    '(sqrt (* x x))'",
+    })
+    public void testThat_strengthReductionRewritesIdioms(String expression, String expected) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var rewritten = new ExpressionRewriter(ExpressionRewriter.STRENGTH_REDUCTION).rewrite(root).getRoot();
+
+        assertEquals(expected, rewritten.toString());
+        assertEquals(expression, root.toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ (expt x 2) (/ x 3) (/ y -2))'",
+        "'(- (/ (expt y 2) 7) (/ 1 x))'",
+        "'(+ (expt 3 2) (sqrt (expt 4 2)) (sqrt (expt y 2)) (/ (expt -5/2 2) x))'",
+    })
+    public void testThat_exactOperandsKeepTheirResult(String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var rewritten = new ExpressionRewriter(ExpressionRewriter.STRENGTH_REDUCTION).rewrite(root).getRoot();
+
+        List<String> values = List.of("-3", "-5/2", "0", "1/2", "2", "7/3");
+        for (String x : values) {
+            for (String y : values) {
+                Map<String, MyNumber> identifiers = Map.of("x", MyNumber.parseNumber(x), "y", MyNumber.parseNumber(y));
+                assertSameResult(() -> root.evaluate(identifiers), () -> rewritten.evaluate(identifiers));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(expt %s 2)'",
+        "'(sqrt (expt %s 2))'",
+    })
+    public void testThat_squaresOfLiteralsKeepTheirResult(String pattern) {
+        for (String value : List.of("-3", "0", "3", "-5/2", "1/2", "-2.5", "0.0")) {
+            var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(pattern.formatted(value)));
+            var rewritten = new ExpressionRewriter(ExpressionRewriter.STRENGTH_REDUCTION).rewrite(root).getRoot();
+
+            assertSameResult(() -> root.evaluate(Map.of()), () -> rewritten.evaluate(Map.of()));
+        }
+    }
+
+    private static void assertSameResult(Supplier<MyNumber> expected, Supplier<MyNumber> actual) {
+        MyNumber expectedValue;
+        try {
+            expectedValue = expected.get();
+        } catch (RuntimeException e) {
+            assertThrows(e.getClass(), actual::get);
+            return;
+        }
+        MyNumber actualValue = actual.get();
+        assertEquals(expectedValue, actualValue);
+        assertEquals(expectedValue.getClass(), actualValue.getClass());
+    }
+
+    @Test
+    public void testThat_customRulesAreAppliedUntilFixpoint() {
+        var rules = List.of(
+            RewriteRule.of("double", "(+ x x)", "(* 2 x)"),
+            RewriteRule.of("quadruple", "(* 2 (* 2 x))", "(* 4 x)", bindings -> bindings.get("x").isOperand())
+        );
+        var rewriter = new ExpressionRewriter(rules);
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (+ a a) (+ a a) (+ a b))"));
+        var result = rewriter.rewrite(root);
+
+        assertEquals("(+ (* 2 a) (* 2 a) (+ a b))", result.getRoot().toString());
+        assertEquals(0, result.getEliminatedNodes());
+        assertEquals("(* 4 a)", rewriter.rewrite(ExpressionTreeHandler.buildRecursively(
+            ExpressionTokenizer.of("(+ (+ a a) (+ a a))"))).getRoot().toString());
+        assertEquals("(* 2 (* 2 (+ a b)))", rewriter.rewrite(ExpressionTreeHandler.buildRecursively(
+            ExpressionTokenizer.of("(+ (+ (+ a b) (+ a b)) (+ (+ a b) (+ a b)))"))).getRoot().toString());
+    }
+
+    @Test
+    public void testThat_iterationsAreBounded() {
+        var rules = List.of(RewriteRule.of("grow", "(+ x)", "(+ (+ x))"));
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ a)"));
+        var result = new ExpressionRewriter(rules, 3).rewrite(root);
+
+        // The rule never reaches a fixpoint, so the rewriter stops after three passes with 9 instead of 2 nodes
+        assertEquals("(+ (+ (+ (+ (+ (+ (+ (+ a))))))))", result.getRoot().toString());
+        assertEquals(-7, result.getEliminatedNodes());
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionRewriter(rules, 0));
+    }
+
+    @Test
+    public void testThat_unboundVariablesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RewriteRule.of("bad", "(+ x)", "(+ x y)"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(exp (* -1 (ln 2)))',  0",
+        "'(exp (* -2 (ln 3)))',  0",
+        "'(exp (* 2 (ln y)))',   -4",
+        "'(exp (* (ln y) 2))',   0",
+    })
+    public void testThat_exponentialsOfLogarithmsKeepTheirResult(String expression, int y) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var rewritten = new ExpressionRewriter(ExpressionRewriter.STRENGTH_REDUCTION).rewrite(root).getRoot();
+        Map<String, MyNumber> identifiers = Map.of("y", new MyInteger(y));
+
+        assertEquals(expression, rewritten.toString());
+        if (expression.contains("y")) {
+            assertThrows(WrongOperandException.class, () -> rewritten.evaluate(identifiers));
+        } else {
+            assertEquals(root.evaluate(identifiers), rewritten.evaluate(identifiers));
+        }
+    }
+}
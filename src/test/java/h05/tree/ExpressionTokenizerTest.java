@@ -0,0 +1,89 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionTokenizerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ 1 (* 2 a))',           '( + 1 ( * 2 a ) )'",
+        "'(+ 1(* 2 a))',            '( + 1 ( * 2 a ) )'",
+        "'  (expt\t2\n\r 10)  ',    '( expt 2 10 )'",
+        "'(- -2.5 1/3 abc-def)',    '( - -2.5 1/3 abc-def )'",
+        "'((',                      '( ('",
+        "'',                        ''",
+    })
+    public void testThat_textIsSplitIntoTokens(String expression, String expected) {
+        assertEquals(expected, join(ExpressionTokenizer.of(expression)));
+        for (int bufferSize = 1; bufferSize <= 4; bufferSize++) {
+            assertEquals(expected, join(new ReadableTokenizer(new StringReader(expression), bufferSize)));
+        }
+        assertEquals(expected, join(ExpressionTokenizer.of(ByteBuffer.wrap(expression.getBytes(StandardCharsets.UTF_8)),
+            StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testThat_tokensAreTyped() {
+        var tokens = ExpressionTokenizer.of("(log x 1/2)");
+        assertEquals(ExpressionTokenizer.Token.LEFT_BRACKET, tokens.next());
+        assertEquals(ExpressionTokenizer.Token.OPERATOR, tokens.next());
+        assertEquals(Operator.LOG, tokens.getOperator());
+        assertEquals(ExpressionTokenizer.Token.IDENTIFIER, tokens.next());
+        assertEquals("x", tokens.getText());
+        assertNull(tokens.getNumber());
+        assertEquals(ExpressionTokenizer.Token.NUMBER, tokens.next());
+        assertEquals(MyNumber.parseNumber("1/2"), tokens.getNumber());
+        assertNull(tokens.getOperator());
+        assertTrue(tokens.hasNext());
+        assertEquals("1/2", tokens.getText());
+        assertEquals(ExpressionTokenizer.Token.RIGHT_BRACKET, tokens.next());
+        assertFalse(tokens.hasNext());
+        assertThrows(NoSuchElementException.class, tokens::next);
+    }
+
+    @Test
+    public void testThat_inputIsNotModified() {
+        var chars = CharBuffer.wrap("(+ 1 2)");
+        var bytes = ByteBuffer.wrap("(+ 1 2)".getBytes(StandardCharsets.UTF_8));
+        assertEquals("( + 1 2 )", join(ExpressionTokenizer.of(chars)));
+        assertEquals("( + 1 2 )", join(ExpressionTokenizer.of(bytes, StandardCharsets.UTF_8)));
+        assertEquals(0, chars.position());
+        assertEquals(0, bytes.position());
+    }
+
+    @Test
+    public void testThat_largeExpressionsAreParsed() {
+        var expression = new StringBuilder("(+");
+        int count = 200_000;
+        for (int i = 1; i <= count; i++) {
+            expression.append(' ').append(i);
+        }
+        expression.append(')');
+
+        var root = ExpressionTreeHandler.buildIteratively(new ReadableTokenizer(CharBuffer.wrap(expression), 16));
+        assertEquals(MyNumber.parseNumber(Long.toString((long) count * (count + 1) / 2)), root.evaluate(Map.of()));
+    }
+
+    private static String join(ExpressionTokenizer tokens) {
+        List<String> texts = new ArrayList<>();
+        while (tokens.hasNext()) {
+            tokens.next();
+            texts.add(tokens.getText());
+        }
+        return String.join(" ", texts);
+    }
+}
@@ -0,0 +1,92 @@
+package h05.tree;
+
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionTreeHandlerConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private static final int EXPRESSIONS = 2_000;
+
+    private static final int ROUNDS = 20;
+
+    private static final Map<String, MyNumber> IDENTIFIERS = Map.of("x", MyNumber.parseNumber("3/7"));
+
+    @Test
+    void testThat_buildRecursivelyIsThreadSafe() throws Exception {
+        assertParsesConcurrently(ExpressionTreeHandler::buildRecursively);
+    }
+
+    @Test
+    void testThat_buildIterativelyIsThreadSafe() throws Exception {
+        assertParsesConcurrently(ExpressionTreeHandler::buildIteratively);
+    }
+
+    private static void assertParsesConcurrently(Function<Iterator<String>, ArithmeticExpressionNode> parser)
+        throws Exception {
+        Random random = new Random(0);
+        List<List<String>> expressions = new ArrayList<>();
+        List<String> expectedTrees = new ArrayList<>();
+        List<MyNumber> expectedValues = new ArrayList<>();
+        for (int i = 0; i < EXPRESSIONS; i++) {
+            List<String> tokens = new ArrayList<>();
+            randomExpression(random, 3, tokens);
+            ArithmeticExpressionNode root = parser.apply(tokens.iterator());
+            expressions.add(tokens);
+            expectedTrees.add(root.toString());
+            expectedValues.add(root.evaluate(IDENTIFIERS));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS * ROUNDS; i++) {
+                int offset = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < EXPRESSIONS; j++) {
+                        int index = (offset + j) % EXPRESSIONS;
+                        ArithmeticExpressionNode root = parser.apply(expressions.get(index).iterator());
+                        assertEquals(expectedTrees.get(index), root.toString());
+                        assertEquals(expectedValues.get(index), root.evaluate(IDENTIFIERS));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static void randomExpression(Random random, int depth, List<String> tokens) {
+        switch (depth == 0 ? random.nextInt(4) : random.nextInt(6)) {
+            case 0 -> tokens.add(Integer.toString(random.nextInt(2000) - 1000));
+            case 1 -> tokens.add(random.nextInt(100) + 1 + "/" + (random.nextInt(100) + 2));
+            case 2 -> tokens.add(random.nextInt(100) + "." + (random.nextInt(9) + 1));
+            case 3 -> tokens.add("x");
+            default -> {
+                tokens.add(ArithmeticExpressionNode.LEFT_BRACKET);
+                tokens.add(random.nextBoolean() ? Operator.ADD.getSymbol() : Operator.MUL.getSymbol());
+                int operands = random.nextInt(4) + 1;
+                for (int i = 0; i < operands; i++) {
+                    randomExpression(random, depth - 1, tokens);
+                }
+                tokens.add(ArithmeticExpressionNode.RIGHT_BRACKET);
+            }
+        }
+    }
+}
@@ -55,6 +55,40 @@ class ExpressionTreeHandlerTest {
         });
     }
 
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    void testThat_buildIterativelyFromTextAndEvaluateWorks(String expected, String expression) {
+        root = ExpressionTreeHandler.buildIteratively(ExpressionTokenizer.of(expression));
+        whenEvaluatingWithNoIdentifiers();
+        thenItShouldBe(expected);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    void testThat_buildRecursivelyFromTextAndEvaluateWorks(String expected, String expression) {
+        root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        whenEvaluatingWithNoIdentifiers();
+        thenItShouldBe(expected);
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/bad_expressions.csv", numLinesToSkip = 1)
+    void testThat_buildRecursivelyFromTextThrowsOnBadExpressions(String exception, String message, String expression) throws ClassNotFoundException {
+        itShouldThrow(exception, message, () -> {
+            root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+            whenEvaluatingWithNoIdentifiers();
+        });
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/bad_expressions.csv", numLinesToSkip = 1)
+    void testThat_buildIterativelyFromTextThrowsOnBadExpressions(String exception, String message, String expression) throws ClassNotFoundException {
+        itShouldThrow(exception, message, () -> {
+            root = ExpressionTreeHandler.buildIteratively(ExpressionTokenizer.of(expression));
+            whenEvaluatingWithNoIdentifiers();
+        });
+    }
+
     private void itShouldThrow(String exception, String message, Executable executable) throws ClassNotFoundException {
         var e = assertThrows(getException(exception), executable);
         assertEquals(message, e.getMessage());
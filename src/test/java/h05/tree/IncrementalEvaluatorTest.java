@@ -0,0 +1,93 @@
+package h05.tree;
+
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import h05.math.MyReal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalEvaluatorTest {
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    public void testThat_evaluationMatchesTree(String expected, String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var evaluator = new IncrementalEvaluator(root);
+
+        assertEquals(root.evaluate(Map.of()), evaluator.evaluate());
+        assertEquals(root.evaluate(Map.of()), evaluator.evaluate());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'(+ (* a b) (- c (/ a 3)) (sqrt (* b b)))'",
+        "'(* (+ a 1/2) (+ b 0.5) (- c))'",
+        "'(/ (- a b c) (+ (* a a) 1))'",
+        "'a'",
+    })
+    public void testThat_rebindingMatchesFullEvaluation(String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        Map<String, MyNumber> identifiers = new HashMap<>(Map.of(
+            "a", new MyInteger(2),
+            "b", MyNumber.parseNumber("3/4"),
+            "c", new MyReal(new BigDecimal("1.5"))));
+        var evaluator = new IncrementalEvaluator(root, identifiers);
+        assertEquals(root.evaluate(identifiers), evaluator.evaluate());
+
+        String[] names = {"a", "b", "c"};
+        for (int i = 0; i < 12; i++) {
+            String name = names[i % names.length];
+            MyNumber value = i % 2 == 0 ? new MyInteger(i - 5) : MyNumber.parseNumber((i + 1) + "/3");
+            identifiers.put(name, value);
+            MyNumber expected = root.evaluate(identifiers);
+            MyNumber actual = evaluator.set(name, value).evaluate();
+            assertEquals(expected, actual);
+            assertEquals(expected.getClass(), actual.getClass());
+        }
+    }
+
+    @Test
+    public void testThat_onlyThePathToTheRootIsRecomputed() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (* a b) (* c (- d 1)) (* f g))"));
+        var evaluator = new IncrementalEvaluator(root);
+        for (String name : new String[]{"a", "b", "c", "d", "f", "g"}) {
+            evaluator.set(name, new MyInteger(name.charAt(0) - 'a' + 1));
+        }
+        assertEquals(new MyInteger(53), evaluator.evaluate());
+        assertEquals(5, evaluator.getRecomputed());
+
+        // Only (* a b) and the root are recomputed, the other products are cached
+        assertEquals(new MyInteger(59), evaluator.set("a", new MyInteger(4)).evaluate());
+        assertEquals(2, evaluator.getRecomputed());
+        assertEquals(new MyInteger(65), evaluator.set("d", new MyInteger(6)).evaluate());
+        assertEquals(3, evaluator.getRecomputed());
+        assertEquals(new MyInteger(65), evaluator.set("z", new MyInteger(0)).evaluate());
+        assertEquals(0, evaluator.getRecomputed());
+    }
+
+    @Test
+    public void testThat_failedEvaluationsAreRetried() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (/ 1 x) (* y 2))"));
+        var evaluator = new IncrementalEvaluator(root, Map.of("x", new MyInteger(0)));
+
+        var expected = assertThrows(RuntimeException.class, () -> root.evaluate(Map.of("x", new MyInteger(0))));
+        var actual = assertThrows(RuntimeException.class, evaluator::evaluate);
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+
+        evaluator.set("x", new MyInteger(2));
+        assertThrows(UndefinedIdentifierException.class, evaluator::evaluate);
+        assertEquals(MyNumber.parseNumber("13/2"), evaluator.set("y", new MyInteger(3)).evaluate());
+        assertThrows(UndefinedIdentifierException.class, () -> evaluator.remove("y").evaluate());
+        assertNull(evaluator.get("y"));
+    }
+}
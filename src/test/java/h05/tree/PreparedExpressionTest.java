@@ -0,0 +1,149 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.UndefinedIdentifierException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedExpressionTest {
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/evaluate_expressions.csv", numLinesToSkip = 1)
+    public void testThat_preparedExpressionMatchesTree(String expected, String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var prepared = PreparedExpression.prepare(root);
+
+        assertEquals(root.evaluate(Map.of()), prepared.evaluate(Map.of()));
+        assertEquals(root.evaluate(Map.of()), prepared.evaluate());
+        assertEquals(root.evaluate(Map.of()), prepared.specialize().evaluate());
+        assertEquals(root.evaluate(Map.of()), prepared.compile().evaluate());
+        assertEquals(root.toString(), prepared.toString());
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/ExpressionTreeHandlerTest/bad_expressions.csv", numLinesToSkip = 1)
+    public void testThat_compiledExpressionThrowsLikeTree(String exception, String message, String expression) {
+        ArithmeticExpressionNode root;
+        try {
+            root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        } catch (RuntimeException e) {
+            // Only evaluation errors are relevant
+            return;
+        }
+        var prepared = PreparedExpression.prepare(root);
+        var expected = assertThrows(RuntimeException.class, () -> root.evaluate(Map.of()));
+        for (var compiled : List.of(prepared.specialize(), prepared.compile())) {
+            var actual = assertThrows(RuntimeException.class, () -> compiled.evaluate(Map.of()));
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    @Test
+    public void testThat_compiledExpressionUsesSlots() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (* a pi) (- b) (/ a 2 b) (expt a 2) (log b 2))"));
+        var prepared = PreparedExpression.prepare(root);
+
+        for (var compiled : List.of(prepared.specialize(), prepared.compile())) {
+            for (int i = 1; i < 10; i++) {
+                Map<String, MyNumber> identifiers = Map.of("a", new MyInteger(i), "b", new MyInteger(2 * i));
+                assertEquals(root.evaluate(identifiers), compiled.evaluate(new MyInteger(i), new MyInteger(2 * i)));
+                assertEquals(root.evaluate(identifiers), compiled.bind().set("a", new MyInteger(i)).set("b", new MyInteger(2 * i)).evaluate());
+            }
+            assertEquals("b", assertThrows(UndefinedIdentifierException.class,
+                () -> compiled.evaluate(new MyInteger(1), null)).getMessage());
+        }
+    }
+
+    @Test
+    public void testThat_specializedExpressionCanBeCompiled() {
+        var prepared = PreparedExpression.prepare(ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(* x (+ x 1))")));
+        var specialized = prepared.specialize();
+        var compiled = specialized.compile();
+
+        assertNotSame(prepared, specialized);
+        assertSame(specialized, specialized.specialize());
+        assertNotSame(specialized, compiled);
+        assertSame(compiled, compiled.compile());
+        assertSame(compiled, compiled.specialize());
+        assertEquals(new MyInteger(12), compiled.evaluate(new MyInteger(3)));
+        assertEquals(List.of("x"), specialized.getIdentifiers());
+    }
+
+    @Test
+    public void testThat_largeExpressionsAreNotCompiled() {
+        var expression = new StringBuilder("(+");
+        for (int i = 0; i < 20_000; i++) {
+            expression.append(" x");
+        }
+        expression.append(')');
+        var prepared = PreparedExpression.prepare(ExpressionTreeHandler.buildIteratively(ExpressionTokenizer.of(expression)));
+
+        assertSame(prepared, prepared.compile());
+        assertEquals(new MyInteger(20_000), prepared.compile().evaluate(new MyInteger(1)));
+        assertEquals(new MyInteger(20_000), prepared.specialize().evaluate(new MyInteger(1)));
+    }
+
+    @Test
+    public void testThat_identifiersAreResolvedToSlots() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ (* a pi) b (- a) e)"));
+        var prepared = PreparedExpression.prepare(root);
+
+        assertEquals(List.of("a", "b"), prepared.getIdentifiers());
+        assertEquals(2, prepared.getSlotCount());
+        assertEquals(0, prepared.getSlot("a"));
+        assertEquals(1, prepared.getSlot("b"));
+        assertEquals(-1, prepared.getSlot("pi"));
+        assertEquals(-1, prepared.getSlot("c"));
+
+        for (int i = 0; i < 10; i++) {
+            Map<String, MyNumber> identifiers = Map.of("a", new MyInteger(i), "b", new MyInteger(2 * i));
+            var expected = root.evaluate(identifiers);
+            assertEquals(expected, prepared.evaluate(new MyInteger(i), new MyInteger(2 * i)));
+            assertEquals(expected, prepared.evaluate(identifiers));
+            assertEquals(expected, prepared.bind().set("a", new MyInteger(i)).set(1, new MyInteger(2 * i)).set("c", null).evaluate());
+        }
+    }
+
+    @Test
+    public void testThat_nullValuesAreLikeTheTree() {
+        Map<String, MyNumber> identifiers = new HashMap<>();
+        identifiers.put("a", null);
+        identifiers.put("b", new MyInteger(2));
+        var identifier = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("a"));
+        var operation = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ b (* 1 a) pi)"));
+
+        assertNull(identifier.evaluate(identifiers));
+        assertNull(PreparedExpression.prepare(identifier).evaluate(identifiers));
+        for (var prepared : List.of(PreparedExpression.prepare(operation), PreparedExpression.prepare(operation).compile())) {
+            assertEquals(assertThrows(RuntimeException.class, () -> operation.evaluate(identifiers)).getClass(),
+                assertThrows(RuntimeException.class, () -> prepared.evaluate(identifiers)).getClass());
+        }
+        identifiers.remove("a");
+        assertThrows(UndefinedIdentifierException.class, () -> PreparedExpression.prepare(operation).evaluate(identifiers));
+    }
+
+    @Test
+    public void testThat_identifierErrorsAreReported() {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of("(+ a pi)"));
+        var prepared = PreparedExpression.prepare(root);
+
+        assertEquals("a", assertThrows(UndefinedIdentifierException.class, () -> prepared.evaluate(Map.of())).getMessage());
+        assertThrows(UndefinedIdentifierException.class, () -> prepared.evaluate(new MyNumber[] {null}));
+        assertThrows(UndefinedIdentifierException.class, () -> prepared.bind().evaluate());
+        assertThrows(IllegalArgumentException.class, () -> prepared.evaluate());
+        assertThrows(IllegalIdentifierExceptions.class,
+            () -> prepared.evaluate(Map.of("a", new MyInteger(1), "pi", new MyInteger(3))));
+        assertThrows(IllegalIdentifierExceptions.class, () -> prepared.bind().set("pi", new MyInteger(3)));
+        prepared.bind().set("e", new MyInteger(3));
+    }
+}
@@ -0,0 +1,172 @@
+package h05.tree;
+
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static h05.tree.TestExpressions.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveExpressionTest {
+
+    private static final class Recorder implements Flow.Subscriber<MyNumber> {
+
+        private final List<MyNumber> results = new ArrayList<>();
+
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        private Flow.Subscription subscription;
+
+        private Throwable error;
+
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(MyNumber item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+
+    private static final class Upstream implements Flow.Subscription {
+
+        private long requested;
+
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    @Test
+    public void testThat_burstsAreCoalescedUntilDemand() {
+        var expression = new ReactiveExpression(parse("(+ (* a b) c)"),
+            Map.of("a", new MyInteger(1), "b", new MyInteger(2), "c", new MyInteger(3)));
+        var upstream = new Upstream();
+        var recorder = new Recorder();
+        expression.onSubscribe(upstream);
+        expression.subscribe(recorder);
+        assertEquals(Long.MAX_VALUE, upstream.requested);
+
+        recorder.subscription.request(1);
+        assertEquals(List.of(new MyInteger(5)), recorder.results);
+
+        for (int i = 0; i < 100; i++) {
+            expression.onNext(Map.of("a", new MyInteger(i)));
+        }
+        expression.onNext(Map.of("c", new MyInteger(10)));
+        assertEquals(1, recorder.results.size());
+
+        recorder.subscription.request(5);
+        assertEquals(List.of(new MyInteger(5), new MyInteger(208)), recorder.results);
+
+        // Unchanged bindings are not re-evaluated
+        MyNumber b = new MyInteger(7);
+        expression.onNext(Map.of("b", b));
+        expression.onNext(Map.of("b", b));
+        assertEquals(List.of(new MyInteger(5), new MyInteger(208), new MyInteger(703)), recorder.results);
+
+        expression.onComplete();
+        assertTrue(recorder.completed);
+        assertEquals(3, recorder.results.size());
+    }
+
+    @Test
+    public void testThat_completionWaitsForPendingResult() {
+        var expression = new ReactiveExpression(parse("(- x)"), Map.of("x", new MyInteger(1)));
+        var recorder = new Recorder();
+        expression.onSubscribe(new Upstream());
+        expression.subscribe(recorder);
+        expression.onNext(Map.of("x", new MyInteger(4)));
+        expression.onComplete();
+        assertFalse(recorder.completed);
+
+        recorder.subscription.request(1);
+        assertEquals(List.of(new MyInteger(-4)), recorder.results);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testThat_evaluationErrorsTerminateTheStream() {
+        var expression = new ReactiveExpression(parse("(/ 1 x)"), Map.of("x", new MyInteger(2)));
+        var upstream = new Upstream();
+        var recorder = new Recorder();
+        expression.onSubscribe(upstream);
+        expression.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        expression.onNext(Map.of("x", new MyInteger(0)));
+
+        var expected = assertThrows(RuntimeException.class, () -> parse("(/ 1 0)").evaluate(Map.of()));
+        assertEquals(1, recorder.results.size());
+        assertEquals(expected.getClass(), recorder.error.getClass());
+        assertTrue(upstream.cancelled);
+
+        expression.onNext(Map.of("x", new MyInteger(1)));
+        assertEquals(1, recorder.results.size());
+    }
+
+    @Test
+    public void testThat_invalidRequestsAndSecondSubscribersAreRejected() {
+        var expression = new ReactiveExpression(parse("x"), Map.of("x", new MyInteger(2)));
+        var first = new Recorder();
+        var second = new Recorder();
+        expression.subscribe(first);
+        expression.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error);
+
+        first.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, first.error);
+        assertTrue(first.results.isEmpty());
+    }
+
+    @Test
+    public void testThat_asynchronousPublisherDeliversLatestResult() throws InterruptedException {
+        var expression = new ReactiveExpression(parse("(* x x)"), Map.of("x", new MyInteger(0)));
+        var recorder = new Recorder();
+        try (var publisher = new SubmissionPublisher<Map<String, MyNumber>>()) {
+            publisher.subscribe(expression);
+            expression.subscribe(recorder);
+            for (int i = 1; i <= 1000; i++) {
+                publisher.submit(Map.of("x", new MyInteger(i)));
+            }
+        }
+        recorder.subscription.request(Long.MAX_VALUE);
+
+        // The latch orders all signals before the assertions
+        assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+        assertTrue(recorder.completed);
+        assertEquals(new MyInteger(1_000_000), recorder.results.get(recorder.results.size() - 1));
+        assertTrue(recorder.results.size() <= 1001);
+    }
+}
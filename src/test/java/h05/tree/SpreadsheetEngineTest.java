@@ -0,0 +1,164 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.UndefinedIdentifierException;
+import h05.exception.WrongOperandException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static h05.tree.TestExpressions.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpreadsheetEngineTest {
+
+    private static String cell(int index) {
+        return "c" + (char) ('a' + index / 676) + (char) ('a' + index / 26 % 26) + (char) ('a' + index % 26);
+    }
+
+    @Test
+    public void testThat_formulasAreEvaluatedInTopologicalOrder() {
+        var engine = new SpreadsheetEngine()
+            .define("total", parse("(+ net tax)"))
+            .define("tax", parse("(* net rate)"))
+            .define("net", parse("(* price count)"))
+            .set("price", new MyInteger(20))
+            .set("count", new MyInteger(3))
+            .set("rate", MyNumber.parseNumber("1/4"));
+
+        assertEquals(3, engine.recalculate());
+        assertEquals(new MyInteger(75), engine.get("total"));
+        assertEquals(new MyInteger(15), engine.get("tax"));
+        assertEquals(0, engine.recalculate());
+        assertEquals(Set.of("net", "tax", "total"), engine.getFormulas());
+    }
+
+    @Test
+    public void testThat_onlyAffectedFormulasAreRecomputed() {
+        var engine = new SpreadsheetEngine()
+            .set("a", new MyInteger(1))
+            .set("b", new MyInteger(2))
+            .define("x", parse("(* a 10)"))
+            .define("y", parse("(* b 10)"))
+            .define("z", parse("(+ x y)"))
+            .define("w", parse("(- y)"));
+        assertEquals(4, engine.recalculate());
+
+        assertEquals(2, engine.set("a", new MyInteger(5)).recalculate());
+        assertEquals(new MyInteger(70), engine.get("z"));
+        assertEquals(3, engine.set("b", new MyInteger(0)).recalculate());
+        assertEquals(new MyInteger(0), engine.get("w"));
+        assertEquals(2, engine.define("x", parse("(* a 100)")).recalculate());
+        assertEquals(new MyInteger(500), engine.get("z"));
+    }
+
+    @Test
+    public void testThat_cyclesAreRejected() {
+        var engine = new SpreadsheetEngine()
+            .define("a", parse("(+ b 1)"))
+            .define("b", parse("(* c 2)"));
+
+        var exception = assertThrows(IllegalArgumentException.class, () -> engine.define("c", parse("(- a)")));
+        assertEquals("Cyclic dependency: c -> a -> b -> c", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> engine.define("d", parse("(+ d 1)")));
+        assertThrows(IllegalArgumentException.class, () -> engine.define("b", parse("(* a 2)")));
+        assertThrows(IllegalArgumentException.class, () -> engine.set("a", new MyInteger(1)));
+        assertThrows(IllegalIdentifierExceptions.class, () -> engine.set("pi", new MyInteger(3)));
+
+        engine.set("c", new MyInteger(4));
+        assertEquals(new MyInteger(9), engine.get("a"));
+    }
+
+    @Test
+    public void testThat_longChainsAreChecked() {
+        var engine = new SpreadsheetEngine().set("x", new MyInteger(0));
+        engine.define(cell(0), parse("(+ x 1)"));
+        for (int i = 1; i < 10_000; i++) {
+            engine.define(cell(i), parse("(+ " + cell(i - 1) + " 1)"));
+        }
+        assertEquals(10_000, engine.recalculate());
+        assertEquals(new MyInteger(10_000), engine.get(cell(9_999)));
+
+        var exception = assertThrows(IllegalArgumentException.class,
+            () -> engine.define(cell(0), parse("(+ " + cell(9_999) + " 1)")));
+        assertTrue(exception.getMessage().startsWith(
+            "Cyclic dependency: " + cell(0) + " -> " + cell(9_999) + " -> " + cell(9_998) + " -> "));
+        assertTrue(exception.getMessage().endsWith(" -> " + cell(1) + " -> " + cell(0)));
+        engine.define(cell(0), parse("(+ x 2)"));
+        assertEquals(10_000, engine.recalculate());
+        assertEquals(new MyInteger(10_001), engine.get(cell(9_999)));
+    }
+
+    @Test
+    public void testThat_errorsPropagateToDependents() {
+        var engine = new SpreadsheetEngine()
+            .set("x", new MyInteger(0))
+            .define("inverse", parse("(/ 1 x)"))
+            .define("scaled", parse("(* 2 inverse pi)"))
+            .define("missing", parse("(+ y 1)"));
+
+        var expected = assertThrows(RuntimeException.class, () -> parse("(/ 1 0)").evaluate(Map.of()));
+        var actual = assertThrows(RuntimeException.class, () -> engine.get("scaled"));
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertThrows(UndefinedIdentifierException.class, () -> engine.get("missing"));
+        assertThrows(UndefinedIdentifierException.class, () -> engine.get("unknown"));
+
+        engine.set("x", new MyInteger(2)).set("y", new MyInteger(1));
+        assertEquals(parse("(* 2 1/2 pi)").evaluate(Map.of()), engine.get("scaled"));
+        assertEquals(new MyInteger(2), engine.get("missing"));
+        assertThrows(UndefinedIdentifierException.class, () -> engine.remove("y").get("missing"));
+    }
+
+    @Test
+    public void testThat_wideWavefrontsMatchSequentialEvaluation() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            var engine = new SpreadsheetEngine(pool).set("x", MyNumber.parseNumber("3/7"));
+            Map<String, MyNumber> values = new HashMap<>(Map.of("x", MyNumber.parseNumber("3/7")));
+            for (int i = 0; i < 200; i++) {
+                String expression = i < 100 ? "(+ x " + i + ")" : "(* " + cell(i - 100) + " " + cell(199 - i) + " x)";
+                engine.define(cell(i), parse(expression));
+                values.put(cell(i), parse(expression).evaluate(values));
+            }
+            assertEquals(200, engine.recalculate());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(values.get(cell(i)), engine.get(cell(i)));
+            }
+            assertEquals(200, engine.set("x", new MyInteger(1)).recalculate());
+            assertEquals(new MyInteger(100), engine.get(cell(199)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testThat_scopeIsAMapOfAllValues() {
+        Map<String, String> seen = new HashMap<>();
+        var engine = new SpreadsheetEngine()
+            .set("x", new MyInteger(2))
+            .define("double", parse("(* 2 x)"))
+            .define("broken", parse("(/ x 0)"));
+        engine.recalculate();
+        engine.define("probe", new LiteralExpressionNode(new MyInteger(0)) {
+            @Override
+            public MyNumber evaluate(Map<String, MyNumber> identifiers) {
+                seen.put("size", Integer.toString(identifiers.size()));
+                seen.put("values", new TreeMap<>(Map.of("x", identifiers.get("x"), "double", identifiers.get("double")))
+                    .toString());
+                assertThrows(WrongOperandException.class, () -> identifiers.entrySet().forEach(Map.Entry::getValue));
+                return new MyInteger(identifiers.entrySet().size());
+            }
+        });
+
+        assertEquals(new MyInteger(4), engine.get("probe"));
+        assertEquals("4", seen.get("size"));
+        assertEquals("{double=4, x=2}", seen.get("values"));
+    }
+}
@@ -0,0 +1,135 @@
+package h05.tree;
+
+import h05.exception.WrongOperandException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static h05.tree.TestExpressions.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StepSchedulerTest {
+
+    private static ArithmeticExpressionNode chain(int depth) {
+        var expression = new StringBuilder("x");
+        for (int i = 0; i < depth; i++) {
+            expression.insert(0, "(+ 1 ").append(")");
+        }
+        return parse(expression.toString());
+    }
+
+    @Test
+    public void testThat_jobsStopWithTheirState() {
+        var scheduler = new StepScheduler(ForkJoinPool.commonPool(), 2, 3);
+        Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(1));
+        var finished = scheduler.submit(new ArithmeticExpressionEvaluator(chain(5), identifiers), 100);
+        var exhausted = scheduler.submit(new ArithmeticExpressionEvaluator(chain(5), identifiers), 3);
+        var failed = scheduler.submit(new ArithmeticExpressionEvaluator(parse("(+ 1 (/ x (- x 1)))"), identifiers), 100);
+        var literal = scheduler.submit(new ArithmeticExpressionEvaluator(parse("2"), identifiers), 0);
+
+        var progress = scheduler.run();
+        assertEquals(StepScheduler.State.FINISHED, finished.getState());
+        assertEquals(5, finished.getSteps());
+        assertEquals(List.of("(+ 1 (+ 1 4))", "(+ 1 5)", "6"),
+            finished.getTrace().stream().map(tokens -> ExpressionTreeHandler.buildRecursively(tokens.tokenizer()).toString())
+                .toList());
+        assertEquals(2, finished.getDroppedSteps());
+
+        assertEquals(StepScheduler.State.EXHAUSTED, exhausted.getState());
+        assertEquals(3, exhausted.getSteps());
+        assertEquals(2, exhausted.getEvaluator().countSteps());
+
+        assertEquals(StepScheduler.State.FAILED, failed.getState());
+        assertEquals(1, failed.getSteps());
+        assertInstanceOf(WrongOperandException.class, failed.getException());
+
+        assertEquals(StepScheduler.State.FINISHED, literal.getState());
+        assertEquals(List.of(), literal.getTrace());
+
+        assertEquals(4, progress.getJobs());
+        assertEquals(2, progress.getFinished());
+        assertEquals(1, progress.getExhausted());
+        assertEquals(1, progress.getFailed());
+        assertEquals(0, progress.getRunning());
+        assertEquals(9, progress.getSteps());
+        assertEquals(3, progress.getRounds());
+    }
+
+    @Test
+    public void testThat_roundsAreFair() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            var scheduler = new StepScheduler(pool, 4, 0);
+            Map<String, MyNumber> identifiers = Map.of("x", MyNumber.parseNumber("1/3"));
+            List<ArithmeticExpressionNode> roots = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                roots.add(chain(i % 50 + 1));
+                scheduler.submit(new ArithmeticExpressionEvaluator(roots.get(i), identifiers), 1000);
+            }
+            List<StepScheduler.Progress> rounds = new ArrayList<>();
+            scheduler.run(progress -> {
+                rounds.add(progress);
+                var jobs = scheduler.getJobs();
+                for (int i = 0; i < jobs.size(); i++) {
+                    assertEquals(Math.min(4 * progress.getRounds(), i % 50 + 1), jobs.get(i).getSteps());
+                }
+            });
+
+            assertEquals(13, rounds.size());
+            assertEquals(1000, rounds.get(rounds.size() - 1).getFinished());
+            for (int i = 1; i < rounds.size(); i++) {
+                assertTrue(rounds.get(i - 1).getSteps() < rounds.get(i).getSteps());
+            }
+            var jobs = scheduler.getJobs();
+            for (int i = 0; i < jobs.size(); i++) {
+                assertEquals(i % 50 + 1, jobs.get(i).getSteps());
+                assertEquals(roots.get(i).evaluate(identifiers), ((LiteralExpressionNode) jobs.get(i).getEvaluator().getRoot())
+                    .getValue());
+                assertEquals(List.of(), jobs.get(i).getTrace());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testThat_stoppedJobsAreDrained() {
+        var scheduler = new StepScheduler(ForkJoinPool.commonPool(), 1, 1);
+        Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(1));
+        var evaluator = new ArithmeticExpressionEvaluator(chain(1), identifiers);
+        var first = scheduler.submit(evaluator, 100);
+        var second = scheduler.submit(new ArithmeticExpressionEvaluator(chain(3), identifiers), 100);
+        List<List<StepScheduler.Job>> drained = new ArrayList<>();
+
+        scheduler.run(progress -> drained.add(scheduler.drainStopped()));
+        assertEquals(List.of(List.of(first), List.of(), List.of(second)), drained);
+        assertEquals(List.of(), scheduler.getJobs());
+        assertEquals(2, scheduler.getProgress().getJobs());
+        assertEquals(2, scheduler.getProgress().getFinished());
+
+        var again = scheduler.submit(evaluator, 100);
+        assertEquals(List.of(again), scheduler.getJobs());
+        assertEquals(3, scheduler.run().getFinished());
+        assertEquals(StepScheduler.State.FINISHED, again.getState());
+    }
+
+    @Test
+    public void testThat_invalidArgumentsAreRejected() {
+        var scheduler = new StepScheduler();
+        var evaluator = new ArithmeticExpressionEvaluator(parse("1"), Map.of());
+        assertThrows(IllegalArgumentException.class, () -> scheduler.submit(evaluator, -1));
+        assertThrows(NullPointerException.class, () -> scheduler.submit(null, 1));
+        scheduler.submit(evaluator, 1);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.submit(evaluator, 2));
+        assertEquals(1, scheduler.getJobs().size());
+        scheduler.submit(new ArithmeticExpressionEvaluator(parse("1"), Map.of()), 1);
+        assertEquals(2, scheduler.getJobs().size());
+        assertThrows(IllegalArgumentException.class, () -> new StepScheduler(ForkJoinPool.commonPool(), 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new StepScheduler(ForkJoinPool.commonPool(), 1, -1));
+    }
+}
@@ -0,0 +1,116 @@
+package h05.tree;
+
+import h05.exception.IllegalIdentifierExceptions;
+import h05.exception.WrongOperandException;
+import h05.math.MyInteger;
+import h05.math.MyNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static h05.tree.TestExpressions.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StepSessionTest {
+
+    @Test
+    public void testThat_cursorsStepLikeTheEvaluator() {
+        var root = parse("(+ x (* 2 (- 3 y)) (/ (expt 2 3) (sqrt (* x 4))) 4.0 (+))");
+        Map<String, MyNumber> identifiers = Map.of("x", new MyInteger(4), "y", MyNumber.parseNumber("1/2"));
+        var session = StepSession.compile(root);
+        var cursor = session.cursor(identifiers);
+        var evaluator = new ArithmeticExpressionEvaluator(root, identifiers);
+
+        assertEquals(Set.of("x", "y"), session.getIdentifiers());
+        assertEquals(4, session.countSteps());
+        assertEquals(evaluator.getTokens().toList(), cursor.getTokens().toList());
+        for (int step = 1; step <= 5; step++) {
+            assertEquals(evaluator.nextStep(), cursor.nextStep());
+            assertEquals(Math.min(step, 4), cursor.getStep());
+            assertEquals(evaluator.countSteps(), cursor.countSteps());
+        }
+        assertEquals(List.of("15"), cursor.getTokens().toList());
+        assertEquals(List.of("(", "+", "x", "(", "*", "2", "(", "-", "3", "y", ")", ")", ")"),
+            StepSession.compile(parse("(+ x (* 2 (- 3 y)))")).cursor(Map.of()).getTokens().toList());
+    }
+
+    @Test
+    public void testThat_cursorsAreIndependentSnapshots() {
+        Map<String, MyNumber> identifiers = new HashMap<>(Map.of("x", new MyInteger(1)));
+        var session = StepSession.compile(parse("(* x (+ x 1))"));
+        var first = session.cursor(identifiers);
+        identifiers.put("x", new MyInteger(3));
+        var second = session.cursor(identifiers);
+        identifiers.clear();
+
+        assertEquals(List.of("(", "*", "1", "2", ")"), first.nextStep());
+        assertEquals(List.of("(", "*", "3", "4", ")"), second.nextStep());
+        assertEquals(List.of("2"), first.nextStep());
+        assertEquals(1, second.getStep());
+        assertEquals(List.of("12"), second.nextStep());
+        assertSame(session, first.getSession());
+    }
+
+    @Test
+    public void testThat_failedStepsKeepTheCursor() {
+        var session = StepSession.compile(parse("(- (* x 2) (/ 1 (- x 3)))"));
+        var cursor = session.cursor(Map.of("x", new MyInteger(3)));
+
+        assertEquals(List.of("(", "-", "6", "(", "/", "1", "0", ")", ")"), cursor.nextStep());
+        assertThrows(WrongOperandException.class, cursor::nextStep);
+        assertEquals(1, cursor.getStep());
+        assertEquals(List.of("(", "-", "6", "(", "/", "1", "0", ")", ")"), cursor.getTokens().toList());
+
+        var unknown = session.cursor(Map.of());
+        assertThrows(IllegalIdentifierExceptions.class, unknown::nextStep);
+        assertEquals(0, unknown.getStep());
+        assertEquals(0, StepSession.compile(parse("2.5")).countSteps());
+        assertEquals(List.of("1"), StepSession.compile(parse("x")).cursor(Map.of("x", new MyInteger(1))).nextStep());
+    }
+
+    @Test
+    public void testThat_sessionsAreSharedByThreads() throws Exception {
+        Random random = new Random(0);
+        List<String> tokens = new ArrayList<>();
+        ExpressionTreeHandlerConcurrencyTest.randomExpression(random, 8, tokens);
+        var root = ExpressionTreeHandler.buildRecursively(tokens.iterator());
+        var session = StepSession.compile(root);
+        List<List<List<String>>> expected = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            var evaluator = new ArithmeticExpressionEvaluator(root, Map.of("x", new MyInteger(i)));
+            List<List<String>> steps = new ArrayList<>();
+            for (int step = 0; step < session.countSteps(); step++) {
+                steps.add(evaluator.nextStep());
+            }
+            expected.add(steps);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int value = i % 4;
+                futures.add(executor.submit(() -> {
+                    var cursor = session.cursor(Map.of("x", new MyInteger(value)));
+                    for (List<String> step : expected.get(value)) {
+                        assertEquals(step, cursor.nextStep());
+                    }
+                    assertEquals(0, cursor.countSteps());
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
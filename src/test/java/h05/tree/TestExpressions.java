@@ -0,0 +1,24 @@
+package h05.tree;
+
+/**
+ * Shared fixtures for the tests of the expression trees.
+ */
+final class TestExpressions {
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private TestExpressions() {
+    }
+
+    /**
+     * Parses the given expression in Racket notation.
+     *
+     * @param expression the expression to parse
+     *
+     * @return the root of the arithmetic expression tree
+     */
+    static ArithmeticExpressionNode parse(String expression) {
+        return ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+    }
+}
@@ -0,0 +1,60 @@
+package h05.tree;
+
+import h05.math.MyInteger;
+import h05.math.MyReal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBufferTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "'( + a ( / ( expt 2 b ) ( * ( ln e ) c ) ) )'",
+        "'( - 1/2 -2.5 x )'",
+        "'42'",
+    })
+    public void testThat_reconstructRoundTrips(String expression) {
+        var root = ExpressionTreeHandler.buildRecursively(ExpressionTokenizer.of(expression));
+        var tokens = ExpressionTreeHandler.reconstruct(root, new TokenBuffer());
+
+        assertEquals(expression, tokens.toString());
+        assertEquals(ExpressionTreeHandler.reconstruct(root), tokens.toList());
+        assertEquals(root.toString(), ExpressionTreeHandler.buildIteratively(tokens.tokenizer()).toString());
+        assertEquals(root.toString(), ExpressionTreeHandler.buildRecursively(tokens.tokenizer()).toString());
+    }
+
+    @Test
+    public void testThat_tokensAreStoredWithPools() {
+        var tokens = new TokenBuffer(0);
+        tokens.addLeftBracket();
+        tokens.addOperator(Operator.MUL);
+        tokens.addNumber(new MyInteger(3));
+        tokens.addIdentifier("a");
+        tokens.addNumber(new MyReal(new BigDecimal("0.5")));
+        tokens.addRightBracket();
+
+        assertEquals(6, tokens.size());
+        assertEquals(ExpressionTokenizer.Token.OPERATOR, tokens.getToken(1));
+        assertEquals(Operator.MUL, tokens.getOperator(1));
+        assertEquals(new MyInteger(3), tokens.getNumber(2));
+        assertEquals("a", tokens.getIdentifier(3));
+        assertEquals("0.5", tokens.getText(4));
+        assertThrows(IllegalStateException.class, () -> tokens.getNumber(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.getToken(6));
+
+        tokens.truncate(3);
+        assertEquals("( * 3", tokens.toString());
+        tokens.addIdentifier("b");
+        assertEquals("( * 3 b", tokens.toString());
+
+        var copy = new TokenBuffer();
+        copy.addAll(tokens, 1, 4);
+        assertEquals(List.of("*", "3", "b"), copy.toList());
+    }
+}